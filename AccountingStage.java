@@ -0,0 +1,172 @@
+package org.cloudbus.cloudsim.examples;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.DatacenterCharacteristics;
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.core.CloudSim;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Comptabilité incrémentale d'une simulation : utilisation par VM et par hôte, et coût CPU,
+ * RAM, stockage et bande passante.
+ *
+ * Les tarifs sont ceux des DatacenterCharacteristics, comme pour la facturation de CloudSim :
+ * RAM et stockage sont facturés une fois à la création de chaque VM, CPU et bande passante à la
+ * fin de chaque cloudlet. Tout est mis à jour au fil des événements du broker, sans second passage.
+ *
+ * Les VM-heures courent de la demande de la VM (démarrage compris, comme la facturation des
+ * fournisseurs) ou, pour les VMs initiales, de leur création, jusqu'à leur destruction.
+ */
+public class AccountingStage implements StreamingDatacenterBroker.CompletionListener,
+        StreamingDatacenterBroker.VmListener {
+
+    private static final class VmAccount {
+        final Vm vm;
+        final int hostId;
+        double busyMi;
+
+        VmAccount(Vm vm, int hostId) {
+            this.vm = vm;
+            this.hostId = hostId;
+        }
+    }
+
+    private final DatacenterCharacteristics characteristics;
+    private final Map<Integer, VmAccount> vmAccounts = new HashMap<>();
+    private final Map<Integer, Double> hostBusyMi = new HashMap<>();
+    private final Map<Integer, Host> hostsById = new HashMap<>();
+
+    private double cpuCost;
+    private double ramCost;
+    private double storageCost;
+    private double bwCost;
+    private double firstSubmission = Double.MAX_VALUE;
+    private double lastFinish;
+
+    // Début de facturation des VMs vivantes (demandées ou créées, pas encore détruites)
+    private final Map<Integer, Double> vmStarts = new HashMap<>();
+    private double vmSeconds;
+    private int peakVms;
+
+    public AccountingStage(DatacenterCharacteristics characteristics) {
+        this.characteristics = characteristics;
+        for (Host host : characteristics.getHostList()) {
+            hostsById.put(host.getId(), host);
+        }
+    }
+
+    @Override
+    public void vmRequested(Vm vm) {
+        startBilling(vm);
+    }
+
+    @Override
+    public void vmCreated(Vm vm) {
+        startBilling(vm);
+        int hostId = vm.getHost() == null ? -1 : vm.getHost().getId();
+        vmAccounts.put(vm.getId(), new VmAccount(vm, hostId));
+        ramCost += vm.getRam() * characteristics.getCostPerMem();
+        storageCost += vm.getSize() * characteristics.getCostPerStorage();
+    }
+
+    @Override
+    public void vmDestroyed(Vm vm) {
+        // Le compte de la VM est conservé pour le calcul final de l'utilisation
+        Double start = vmStarts.remove(vm.getId());
+        if (start != null) {
+            vmSeconds += CloudSim.clock() - start;
+        }
+    }
+
+    @Override
+    public void cloudletCompleted(Cloudlet cloudlet) {
+        cpuCost += cloudlet.getActualCPUTime() * characteristics.getCostPerSecond();
+        bwCost += (cloudlet.getCloudletFileSize() + cloudlet.getCloudletOutputSize()) * characteristics.getCostPerBw();
+
+        firstSubmission = Math.min(firstSubmission, cloudlet.getSubmissionTime());
+        lastFinish = Math.max(lastFinish, cloudlet.getFinishTime());
+
+        VmAccount account = vmAccounts.get(cloudlet.getVmId());
+        if (account != null) {
+            double mi = cloudlet.getCloudletTotalLength();
+            account.busyMi += mi;
+            hostBusyMi.merge(account.hostId, mi, Double::sum);
+        }
+    }
+
+    public double getVmUtilization(int vmId) {
+        VmAccount account = vmAccounts.get(vmId);
+        if (account == null) {
+            return 0.0;
+        }
+        return ratio(account.busyMi, account.vm.getMips() * account.vm.getNumberOfPes());
+    }
+
+    public double getHostUtilization(int hostId) {
+        Host host = hostsById.get(hostId);
+        if (host == null) {
+            return 0.0;
+        }
+        return ratio(hostBusyMi.getOrDefault(hostId, 0.0), host.getTotalMips());
+    }
+
+    // Utilisation moyenne de la capacité de tous les hôtes du datacenter
+    public double getUtilization() {
+        double busyMi = 0;
+        for (double mi : hostBusyMi.values()) {
+            busyMi += mi;
+        }
+        double totalMips = 0;
+        for (Host host : hostsById.values()) {
+            totalMips += host.getTotalMips();
+        }
+        return ratio(busyMi, totalMips);
+    }
+
+    public double getCpuCost() {
+        return cpuCost;
+    }
+
+    public double getRamCost() {
+        return ramCost;
+    }
+
+    public double getStorageCost() {
+        return storageCost;
+    }
+
+    public double getBwCost() {
+        return bwCost;
+    }
+
+    public double getTotalCost() {
+        return cpuCost + ramCost + storageCost + bwCost;
+    }
+
+    // VM-heures des VMs détruites ; toutes le sont à la fin de la simulation
+    public double getVmHours() {
+        return vmSeconds / 3600.0;
+    }
+
+    // Nombre maximal de VMs facturées en même temps
+    public int getPeakVms() {
+        return peakVms;
+    }
+
+    private void startBilling(Vm vm) {
+        if (vmStarts.putIfAbsent(vm.getId(), CloudSim.clock()) == null) {
+            peakVms = Math.max(peakVms, vmStarts.size());
+        }
+    }
+
+    private double ratio(double busyMi, double mips) {
+        double elapsed = lastFinish - firstSubmission;
+        if (elapsed <= 0 || mips <= 0) {
+            return 0.0;
+        }
+        return Math.min(1.0, busyMi / (mips * elapsed));
+    }
+}
@@ -0,0 +1,181 @@
+package org.cloudbus.cloudsim.examples;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.UtilizationModel;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Générateur de requêtes selon un processus d'arrivée : chaque cloudlet est créé à la demande,
+ * avec sa date d'arrivée, pour être soumis en différé par StreamingDatacenterBroker.
+ *
+ * La longueur des cloudlets est fixe ou exponentielle de moyenne donnée ; les sous-classes ne
+ * décrivent que l'écart entre deux arrivées.
+ */
+public abstract class ArrivalProcess implements CloudletStream {
+    protected final Random random;
+
+    private final int count;
+    private final long meanLength;
+    private final boolean exponentialLength;
+    private final int pes;
+    private final long fileSize;
+    private final long outputSize;
+    private final UtilizationModel utilizationModel = new UtilizationModelFull();
+
+    private int nextId;
+    private double nextArrival = Double.NaN;
+
+    protected ArrivalProcess(Random random, int count, long meanLength, boolean exponentialLength,
+                             int pes, long fileSize, long outputSize) {
+        this.random = random;
+        this.count = count;
+        this.meanLength = meanLength;
+        this.exponentialLength = exponentialLength;
+        this.pes = pes;
+        this.fileSize = fileSize;
+        this.outputSize = outputSize;
+    }
+
+    // Écart (en secondes simulées) entre l'arrivée à 'now' et la suivante
+    protected abstract double nextInterArrival(double now);
+
+    @Override
+    public boolean hasNext() {
+        return nextId < count;
+    }
+
+    @Override
+    public double peekArrivalTime() {
+        if (Double.isNaN(nextArrival)) {
+            nextArrival = nextInterArrival(0.0);
+        }
+        return nextArrival;
+    }
+
+    @Override
+    public Cloudlet next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        double arrival = peekArrivalTime();
+        long length = exponentialLength
+                ? Math.max(1L, Math.round(exponential(1.0 / meanLength)))
+                : meanLength;
+
+        Cloudlet cloudlet = new Cloudlet(
+                nextId++, length, pes,
+                fileSize, outputSize,
+                utilizationModel,
+                utilizationModel,
+                utilizationModel
+        );
+        nextArrival = arrival + nextInterArrival(arrival);
+        return cloudlet;
+    }
+
+    protected double exponential(double rate) {
+        return -Math.log(1.0 - random.nextDouble()) / rate;
+    }
+
+    // Processus de Poisson homogène de taux 'rate' requêtes par seconde
+    public static class Poisson extends ArrivalProcess {
+        private final double rate;
+
+        public Poisson(Random random, int count, double rate, long meanLength, boolean exponentialLength,
+                       int pes, long fileSize, long outputSize) {
+            super(random, count, meanLength, exponentialLength, pes, fileSize, outputSize);
+            if (rate <= 0) {
+                throw new IllegalArgumentException("Le taux d'arrivée doit être strictement positif");
+            }
+            this.rate = rate;
+        }
+
+        @Override
+        protected double nextInterArrival(double now) {
+            return exponential(rate);
+        }
+    }
+
+    // MMPP à deux états : un régime calme et un régime de rafales, de durées exponentielles
+    public static class Mmpp extends ArrivalProcess {
+        private final double[] rates;
+        private final double[] meanSojourns;
+        private int state;
+        private double remainingSojourn = Double.NaN;
+
+        public Mmpp(Random random, int count, double calmRate, double burstRate,
+                    double calmSojourn, double burstSojourn, long meanLength, boolean exponentialLength,
+                    int pes, long fileSize, long outputSize) {
+            super(random, count, meanLength, exponentialLength, pes, fileSize, outputSize);
+            // Un régime peut être silencieux, pas les deux
+            if (calmRate < 0 || burstRate < 0 || calmRate + burstRate <= 0) {
+                throw new IllegalArgumentException("Les taux d'arrivée doivent être positifs, dont au moins un non nul");
+            }
+            if (calmSojourn <= 0 || burstSojourn <= 0) {
+                throw new IllegalArgumentException("Les durées de séjour doivent être strictement positives");
+            }
+            this.rates = new double[]{calmRate, burstRate};
+            this.meanSojourns = new double[]{calmSojourn, burstSojourn};
+        }
+
+        @Override
+        protected double nextInterArrival(double now) {
+            if (Double.isNaN(remainingSojourn)) {
+                remainingSojourn = exponential(1.0 / meanSojourns[state]);
+            }
+
+            double gap = 0.0;
+            while (true) {
+                double candidate = rates[state] > 0 ? exponential(rates[state]) : Double.MAX_VALUE;
+                if (candidate < remainingSojourn) {
+                    remainingSojourn -= candidate;
+                    return gap + candidate;
+                }
+                // Changement de régime avant la prochaine arrivée (sans mémoire)
+                gap += remainingSojourn;
+                state = 1 - state;
+                remainingSojourn = exponential(1.0 / meanSojourns[state]);
+            }
+        }
+    }
+
+    // Poisson non homogène de taux rate * (1 + amplitude * sin(2πt / période)), par amincissement
+    public static class Diurnal extends ArrivalProcess {
+        private final double rate;
+        private final double amplitude;
+        private final double period;
+
+        public Diurnal(Random random, int count, double rate, double amplitude, double period,
+                       long meanLength, boolean exponentialLength, int pes, long fileSize, long outputSize) {
+            super(random, count, meanLength, exponentialLength, pes, fileSize, outputSize);
+            if (amplitude < 0 || amplitude > 1) {
+                throw new IllegalArgumentException("L'amplitude diurne doit être entre 0 et 1");
+            }
+            if (rate <= 0) {
+                throw new IllegalArgumentException("Le taux d'arrivée doit être strictement positif");
+            }
+            if (period <= 0) {
+                throw new IllegalArgumentException("La période diurne doit être strictement positive");
+            }
+            this.rate = rate;
+            this.amplitude = amplitude;
+            this.period = period;
+        }
+
+        @Override
+        protected double nextInterArrival(double now) {
+            double maxRate = rate * (1 + amplitude);
+            double t = now;
+            while (true) {
+                t += exponential(maxRate);
+                double rateAtT = rate * (1 + amplitude * Math.sin(2 * Math.PI * t / period));
+                if (random.nextDouble() * maxRate <= rateAtT) {
+                    return t - now;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.cloudbus.cloudsim.examples;
+
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimEvent;
+
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Autoscaling à suivi de cible, évalué périodiquement comme une entité CloudSim, à la manière
+ * des target-tracking policies d'AWS :
+ *
+ *   capacité voulue = ceil(capacité * métrique / cible), bornée par [minVms, maxVms]
+ *
+ * La capacité compte les VMs actives et celles en cours de provisionnement, pour ne pas
+ * redemander à chaque période les VMs qui démarrent encore. La métrique est :
+ * <ul>
+ *     <li>queue : cloudlets en cours par VM active (envoyés et pas encore revenus) ;</li>
+ *     <li>utilization : part des VMs actives qui ont au moins un cloudlet en cours.</li>
+ * </ul>
+ * Chaque sens a son propre délai de stabilisation (cooldown) ; une réduction attend aussi la
+ * fin de celui de la dernière augmentation, pour ne pas retirer des VMs à peine demandées.
+ */
+public class AutoscalingController extends SimEntity {
+    private static final int EVALUATE = 74_101;
+
+    public enum Metric {
+        QUEUE, UTILIZATION;
+
+        public static Metric forName(String name) {
+            switch (name) {
+                case "queue":
+                    return QUEUE;
+                case "utilization":
+                    return UTILIZATION;
+                default:
+                    throw new IllegalArgumentException("Métrique d'autoscaling inconnue : " + name);
+            }
+        }
+    }
+
+    private final StreamingDatacenterBroker broker;
+    // Fabrique des VMs ajoutées, à partir de leur identifiant
+    private final IntFunction<Vm> vmFactory;
+    private final Metric metric;
+    private final double target;
+    private final int minVms;
+    private final int maxVms;
+    private final double period;
+    private final double provisioningDelay;
+    private final double scaleOutCooldown;
+    private final double scaleInCooldown;
+
+    private int nextVmId;
+    private double lastScaleOut = Double.NEGATIVE_INFINITY;
+    private double lastScaleIn = Double.NEGATIVE_INFINITY;
+    private int scaleOuts;
+    private int scaleIns;
+
+    public AutoscalingController(String name, StreamingDatacenterBroker broker, IntFunction<Vm> vmFactory,
+                                 int firstVmId, Metric metric, double target, int minVms, int maxVms,
+                                 double period, double provisioningDelay,
+                                 double scaleOutCooldown, double scaleInCooldown) {
+        super(name);
+        if (target <= 0 || minVms < 1 || maxVms < minVms || period <= 0) {
+            throw new IllegalArgumentException("Paramètres d'autoscaling invalides : cible " + target
+                    + ", VMs [" + minVms + ", " + maxVms + "], période " + period);
+        }
+        // Sans VM initiale, le broker ne démarre jamais le flux et rien ne serait à mettre à l'échelle
+        if (broker.getVmList().isEmpty()) {
+            throw new IllegalArgumentException("Aucune VM initiale soumise au broker " + broker.getName()
+                    + " : soumettre les VMs avant de créer le contrôleur");
+        }
+        this.broker = broker;
+        this.vmFactory = vmFactory;
+        this.nextVmId = firstVmId;
+        this.metric = metric;
+        this.target = target;
+        this.minVms = minVms;
+        this.maxVms = maxVms;
+        this.period = period;
+        this.provisioningDelay = provisioningDelay;
+        this.scaleOutCooldown = scaleOutCooldown;
+        this.scaleInCooldown = scaleInCooldown;
+    }
+
+    @Override
+    public void startEntity() {
+        schedule(getId(), period, EVALUATE);
+    }
+
+    @Override
+    public void processEvent(SimEvent ev) {
+        if (ev.getTag() != EVALUATE) {
+            return;
+        }
+        // Plus d'évaluation une fois le broker terminé ou arrêté : la simulation peut s'arrêter
+        if (broker.isFinished()) {
+            return;
+        }
+        evaluate(CloudSim.clock());
+        schedule(getId(), period, EVALUATE);
+    }
+
+    @Override
+    public void shutdownEntity() {
+    }
+
+    public int getScaleOuts() {
+        return scaleOuts;
+    }
+
+    public int getScaleIns() {
+        return scaleIns;
+    }
+
+    private void evaluate(double now) {
+        List<Vm> active = broker.getActiveVms();
+        if (active.isEmpty()) {
+            return;
+        }
+        int capacity = active.size() + broker.getPendingVmCount();
+        int desired = (int) Math.ceil(capacity * measure(active) / target);
+        desired = Math.max(minVms, Math.min(maxVms, desired));
+
+        if (desired > capacity && now - lastScaleOut >= scaleOutCooldown) {
+            for (int i = capacity; i < desired; i++) {
+                broker.provisionVm(vmFactory.apply(nextVmId++), provisioningDelay);
+            }
+            lastScaleOut = now;
+            scaleOuts++;
+        } else if (desired < active.size()
+                && now - lastScaleIn >= scaleInCooldown
+                && now - lastScaleOut >= scaleOutCooldown) {
+            // Seules les VMs actives sont retirées ; les demandes en vol vont à leur terme
+            int removed = 0;
+            for (int i = desired; i < active.size() && broker.decommissionVm(); i++) {
+                removed++;
+            }
+            if (removed > 0) {
+                lastScaleIn = now;
+                scaleIns++;
+            }
+        }
+    }
+
+    private double measure(List<Vm> active) {
+        int outstanding = 0;
+        int busy = 0;
+        for (Vm vm : active) {
+            int vmOutstanding = broker.getLoad(vm.getId()).getOutstanding();
+            outstanding += vmOutstanding;
+            if (vmOutstanding > 0) {
+                busy++;
+            }
+        }
+        return metric == Metric.QUEUE
+                ? (double) outstanding / active.size()
+                : (double) busy / active.size();
+    }
+}
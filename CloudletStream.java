@@ -0,0 +1,89 @@
+package org.cloudbus.cloudsim.examples;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.UtilizationModel;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Source paresseuse de cloudlets, ordonnée par date d'arrivée.
+ *
+ * Les cloudlets sont créés à la demande par StreamingDatacenterBroker : seule la fenêtre
+ * en cours est matérialisée, quelle que soit la taille du scénario.
+ */
+public interface CloudletStream extends AutoCloseable {
+
+    boolean hasNext();
+
+    // Date d'arrivée (temps simulé) du prochain cloudlet, sans le consommer
+    double peekArrivalTime();
+
+    Cloudlet next();
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    // Toutes les requêtes arrivent à t=0, comme l'ancien createCloudlets
+    static CloudletStream atTimeZero(int count, long length, int pes, long fileSize, long outputSize) {
+        return new CloudletStream() {
+            private final UtilizationModel utilizationModel = new UtilizationModelFull();
+            private int nextId;
+
+            @Override
+            public boolean hasNext() {
+                return nextId < count;
+            }
+
+            @Override
+            public double peekArrivalTime() {
+                return 0.0;
+            }
+
+            @Override
+            public Cloudlet next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new Cloudlet(
+                        nextId++, length, pes,
+                        fileSize, outputSize,
+                        utilizationModel,
+                        utilizationModel,
+                        utilizationModel
+                );
+            }
+        };
+    }
+
+    // Classe de priorité (Cloudlet.setClassType) tirée pour chaque cloudlet : 1 pour une part
+    // 'highShare' des requêtes, 0 pour les autres
+    static CloudletStream withPriorityClasses(CloudletStream source, Random random, double highShare) {
+        return new CloudletStream() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public double peekArrivalTime() {
+                return source.peekArrivalTime();
+            }
+
+            @Override
+            public Cloudlet next() {
+                Cloudlet cloudlet = source.next();
+                cloudlet.setClassType(random.nextDouble() < highShare ? 1 : 0);
+                return cloudlet;
+            }
+
+            @Override
+            public void close() throws IOException {
+                source.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,346 @@
+package org.cloudbus.cloudsim.examples;
+
+import org.cloudbus.cloudsim.Log;
+
+import java.text.DecimalFormat;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Recherche de la configuration la moins chère qui tient un objectif de p99, sur le nombre de
+ * VMs, les MIPS des VMs, le nombre d'hôtes et la discipline d'ordonnancement.
+ *
+ * Trois stratégies (search=...) :
+ * <ul>
+ *     <li>grid : toutes les combinaisons, à la charge complète ;</li>
+ *     <li>lhs : 'samples' combinaisons tirées par hypercube latin (chaque niveau de chaque
+ *     dimension couvert à parts égales), à la charge complète ;</li>
+ *     <li>halving (défaut) : successive halving sur la charge. Tous les candidats (grille, ou
+ *     échantillon lhs si 'samples' est donné) tournent d'abord sur une fraction de la charge ;
+ *     ceux dont le p99 dépasse déjà l'objectif de 'prune-slack' fois sont écartés, puis seul le
+ *     meilleur tiers (1/eta) passe à l'échelon suivant, avec eta fois plus de requêtes.</li>
+ * </ul>
+ * Les candidats d'un échelon sont classés d'abord par respect de l'objectif, puis par coût
+ * pour ceux qui le tiennent et par p99 pour les autres. Tous partagent la même graine : les
+ * écarts mesurés viennent de la configuration, pas du tirage des requêtes.
+ *
+ * Le coût d'une configuration est celui de sa capacité réservée : VM-heures au prorata des
+ * MIPS (vm-price pour une VM de 1000 MIPS pendant une heure) et heures d'hôtes (host-price).
+ *
+ * Exemple : slo=5 search=halving vms=2,4,8,16 vm-mips=500,1000,2000 hosts=2,4 arrival=poisson rate=8
+ * Les autres clés sont transmises telles quelles aux scénarios (voir ResponseTimeSimulation).
+ */
+public class ConfigurationSearch {
+    private static final double REFERENCE_MIPS = 1000.0;
+
+    // Clés propres à la recherche, non transmises aux scénarios
+    private static final Set<String> SEARCH_KEYS = new HashSet<>(Arrays.asList(
+            "search", "slo", "samples", "eta", "prune-slack", "min-workload",
+            "vm-price", "host-price", "parallelism",
+            "vms", "vm-mips", "hosts", "scheduler"));
+
+    private static final class Candidate {
+        final int vms;
+        final int vmMips;
+        final int hosts;
+        final String scheduler;
+        ResponseTimeSimulation.SimulationMetrics metrics;
+        int workload;
+        double cost;
+
+        Candidate(int vms, int vmMips, int hosts, String scheduler) {
+            this.vms = vms;
+            this.vmMips = vmMips;
+            this.hosts = hosts;
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public String toString() {
+            return "vms=" + vms + " vm-mips=" + vmMips + " hosts=" + hosts + " scheduler=" + scheduler;
+        }
+    }
+
+    private final Properties base;
+    private final double slo;
+    private final double vmPrice;
+    private final double hostPrice;
+    private final ParallelSweepEngine engine;
+
+    private int simulations;
+    private long simulatedRequests;
+
+    private ConfigurationSearch(Properties base, double slo, double vmPrice, double hostPrice, int parallelism) {
+        this.base = base;
+        this.slo = slo;
+        this.vmPrice = vmPrice;
+        this.hostPrice = hostPrice;
+        this.engine = new ParallelSweepEngine(parallelism);
+    }
+
+    public static void main(String[] args) {
+        try {
+            Properties options = new Properties();
+            Properties base = new Properties();
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                if (separator <= 0) {
+                    throw new IllegalArgumentException("Paramètre attendu sous la forme clé=valeur : " + arg);
+                }
+                String key = arg.substring(0, separator);
+                (SEARCH_KEYS.contains(key) ? options : base).setProperty(key, arg.substring(separator + 1));
+            }
+            if (options.getProperty("slo") == null) {
+                throw new IllegalArgumentException("Objectif de p99 attendu : slo=<secondes>");
+            }
+            base.putIfAbsent("workload", "2000");
+            base.putIfAbsent("pes", "4");
+
+            ConfigurationSearch search = new ConfigurationSearch(base,
+                    Double.parseDouble(options.getProperty("slo")),
+                    Double.parseDouble(options.getProperty("vm-price", "0.10")),
+                    Double.parseDouble(options.getProperty("host-price", "0.05")),
+                    Integer.parseInt(options.getProperty("parallelism",
+                            String.valueOf(Runtime.getRuntime().availableProcessors()))));
+
+            List<Candidate> space = search.space(
+                    parseInts(options.getProperty("vms", "2,4,8,16")),
+                    parseInts(options.getProperty("vm-mips", "500,1000,2000")),
+                    parseInts(options.getProperty("hosts", "1,2,4")),
+                    options.getProperty("scheduler", "time-shared,fifo,sjf").split(","));
+            if (space.isEmpty()) {
+                throw new IllegalArgumentException("Aucune combinaison ne tient sur les hôtes (vms <= hosts * pes)");
+            }
+            int samples = Integer.parseInt(options.getProperty("samples", "0"));
+            int workload = Integer.parseInt(base.getProperty("workload"));
+            Random random = new Random(Long.parseLong(base.getProperty("seed", "42")));
+
+            long start = System.nanoTime();
+            List<Candidate> finalists;
+            String strategy = options.getProperty("search", "halving");
+            switch (strategy) {
+                case "grid":
+                    finalists = search.evaluate(space, workload);
+                    break;
+                case "lhs":
+                    finalists = search.evaluate(latinHypercube(space, samples > 0 ? samples : 20, random), workload);
+                    break;
+                case "halving":
+                    finalists = search.successiveHalving(samples > 0 ? latinHypercube(space, samples, random) : space,
+                            workload,
+                            Integer.parseInt(options.getProperty("eta", "3")),
+                            Integer.parseInt(options.getProperty("min-workload", "50")),
+                            Double.parseDouble(options.getProperty("prune-slack", "2")));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Stratégie de recherche inconnue : " + strategy);
+            }
+            Log.printLine("Recherche " + strategy + " terminée en " + (System.nanoTime() - start) / 1_000_000
+                    + " ms : " + search.simulations + " simulations, " + search.simulatedRequests
+                    + " requêtes simulées (grille complète : " + space.size() + " simulations, "
+                    + (long) space.size() * workload + " requêtes)");
+
+            search.printResults(finalists, workload);
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            Log.printLine("Erreur pendant la recherche : " + e.getMessage());
+        }
+    }
+
+    // Produit cartésien des dimensions, sans les combinaisons dont les VMs ne tiennent pas sur les hôtes
+    private List<Candidate> space(int[] vmCounts, int[] vmMips, int[] hostCounts, String[] schedulers) {
+        int pes = Integer.parseInt(base.getProperty("pes"));
+        List<Candidate> space = new ArrayList<>();
+        for (int vms : vmCounts) {
+            for (int mips : vmMips) {
+                for (int hosts : hostCounts) {
+                    if (base.getProperty("topology") == null && vms > hosts * pes) {
+                        continue;
+                    }
+                    for (String scheduler : schedulers) {
+                        space.add(new Candidate(vms, mips, hosts, scheduler.trim()));
+                    }
+                }
+            }
+        }
+        return space;
+    }
+
+    // Échantillon stratifié : n points, chaque dimension découpée en n strates visitées une fois
+    // chacune. Les points hors de l'espace (VMs trop nombreuses pour les hôtes) et les doublons
+    // sont écartés
+    private static List<Candidate> latinHypercube(List<Candidate> space, int n, Random random) {
+        List<Integer> vms = levels(space, c -> c.vms);
+        List<Integer> mips = levels(space, c -> c.vmMips);
+        List<Integer> hosts = levels(space, c -> c.hosts);
+        List<String> schedulers = levels(space, c -> c.scheduler);
+        int[][] strata = {permutation(n, random), permutation(n, random), permutation(n, random), permutation(n, random)};
+
+        Map<String, Candidate> byKey = new HashMap<>();
+        for (Candidate candidate : space) {
+            byKey.put(candidate.toString(), candidate);
+        }
+        Map<String, Candidate> sample = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            String key = new Candidate(
+                    vms.get(level(strata[0][i], n, vms.size(), random)),
+                    mips.get(level(strata[1][i], n, mips.size(), random)),
+                    hosts.get(level(strata[2][i], n, hosts.size(), random)),
+                    schedulers.get(level(strata[3][i], n, schedulers.size(), random))).toString();
+            Candidate candidate = byKey.get(key);
+            if (candidate != null) {
+                sample.putIfAbsent(key, candidate);
+            }
+        }
+        return new ArrayList<>(sample.values());
+    }
+
+    private List<Candidate> successiveHalving(List<Candidate> candidates, int workload, int eta,
+                                              int minWorkload, double pruneSlack) throws Exception {
+        if (eta < 2) {
+            throw new IllegalArgumentException("eta >= 2 attendu : " + eta);
+        }
+        // Autant d'échelons qu'il faut pour réduire les candidats à quelques-uns, sans descendre
+        // sous 'minWorkload' requêtes : en deçà, le p99 ne dit plus rien
+        int rungs = 1;
+        while (Math.pow(eta, rungs) < candidates.size() && workload / Math.pow(eta, rungs) >= minWorkload) {
+            rungs++;
+        }
+
+        List<Candidate> survivors = candidates;
+        for (int rung = 0; rung < rungs; rung++) {
+            int rungWorkload = (int) Math.max(1, Math.round(workload / Math.pow(eta, rungs - 1 - rung)));
+            List<Candidate> ranked = evaluate(survivors, rungWorkload);
+            if (rung == rungs - 1) {
+                return ranked;
+            }
+
+            List<Candidate> kept = new ArrayList<>();
+            int keep = (int) Math.ceil((double) ranked.size() / eta);
+            for (Candidate candidate : ranked) {
+                if (kept.size() < keep && candidate.metrics.p99ResponseTime <= slo * pruneSlack) {
+                    kept.add(candidate);
+                }
+            }
+            Log.printLine(String.format("Échelon %d : %d candidats sur %d requêtes, %d retenus",
+                    rung, ranked.size(), rungWorkload, kept.size()));
+            // Aucun candidat près du SLO : arrêt sur des résultats partiels, signalés par printResults
+            if (kept.isEmpty()) {
+                return ranked;
+            }
+            survivors = kept;
+        }
+        throw new AssertionError("Dernier échelon non atteint");
+    }
+
+    // Simule les candidats sur 'workload' requêtes et les retourne classés
+    private List<Candidate> evaluate(List<Candidate> candidates, int workload) throws Exception {
+        Map<Integer, Properties> scenarios = new LinkedHashMap<>();
+        for (Candidate candidate : candidates) {
+            Properties scenario = new Properties();
+            scenario.putAll(base);
+            scenario.setProperty("workload", String.valueOf(workload));
+            scenario.setProperty("vms", String.valueOf(candidate.vms));
+            scenario.setProperty("vm-mips", String.valueOf(candidate.vmMips));
+            scenario.setProperty("hosts", String.valueOf(candidate.hosts));
+            scenario.setProperty("scheduler", candidate.scheduler);
+            scenarios.put(scenarios.size(), scenario);
+        }
+
+        for (Map.Entry<Integer, double[]> entry : engine.sweep(scenarios).entrySet()) {
+            Candidate candidate = candidates.get(entry.getKey());
+            candidate.metrics = ResponseTimeSimulation.SimulationMetrics.fromArray(entry.getValue());
+            candidate.workload = workload;
+            candidate.cost = cost(candidate);
+        }
+        simulations += candidates.size();
+        simulatedRequests += (long) candidates.size() * workload;
+
+        List<Candidate> ranked = new ArrayList<>(candidates);
+        ranked.sort(Comparator.comparing((Candidate c) -> !meetsSlo(c))
+                .thenComparingDouble(c -> meetsSlo(c) ? c.cost : c.metrics.p99ResponseTime));
+        return ranked;
+    }
+
+    private double cost(Candidate candidate) {
+        return candidate.metrics.vmHours * candidate.vmMips / REFERENCE_MIPS * vmPrice
+                + candidate.hosts * candidate.metrics.makespan / 3600.0 * hostPrice;
+    }
+
+    private boolean meetsSlo(Candidate candidate) {
+        return candidate.metrics.p99ResponseTime <= slo;
+    }
+
+    // Un classement sur une charge partielle (halving arrêté avant le dernier échelon) ne désigne
+    // aucune configuration : son p99 ne vaut pas pour 'workload' requêtes
+    private void printResults(List<Candidate> ranked, int workload) {
+        DecimalFormat df = new DecimalFormat("#.####");
+        boolean fullLoad = true;
+        for (Candidate candidate : ranked) {
+            fullLoad &= candidate.workload == workload;
+        }
+
+        Log.printLine(fullLoad
+                ? "\n========== CONFIGURATIONS ÉVALUÉES À PLEINE CHARGE =========="
+                : "\n========== CONFIGURATIONS ÉVALUÉES À CHARGE PARTIELLE (sur " + workload + " requêtes) ==========");
+        Log.printLine("  VMs | MIPS VM | Hôtes | Scheduler   | Requêtes |      p99 |     VM-h |       Coût | SLO");
+        Log.printLine("-------------------------------------------------------------------------------------------");
+        for (Candidate candidate : ranked) {
+            Log.printLine(String.format("%5d | %7d | %5d | %-11s | %8d | %8s | %8s | %10s | %s",
+                    candidate.vms,
+                    candidate.vmMips,
+                    candidate.hosts,
+                    candidate.scheduler,
+                    candidate.workload,
+                    df.format(candidate.metrics.p99ResponseTime),
+                    df.format(candidate.metrics.vmHours),
+                    df.format(candidate.cost),
+                    meetsSlo(candidate) ? "ok" : "non"));
+        }
+
+        if (!fullLoad) {
+            Log.printLine("\nAucune configuration ne respecte le SLO p99 <= " + slo + " s : tous les candidats ont été "
+                    + "écartés avant la pleine charge, résultats partiels ci-dessus");
+            return;
+        }
+        if (ranked.isEmpty() || !meetsSlo(ranked.get(0))) {
+            Log.printLine("\nAucune configuration ne tient p99 <= " + slo + " s");
+            return;
+        }
+        Candidate best = ranked.get(0);
+        Log.printLine("\nConfiguration la moins chère pour p99 <= " + slo + " s : " + best
+                + " (p99 " + df.format(best.metrics.p99ResponseTime) + " s, coût " + df.format(best.cost) + ")");
+    }
+
+    private static int[] parseInts(String values) {
+        return Arrays.stream(values.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static <T extends Comparable<T>> List<T> levels(List<Candidate> space, Function<Candidate, T> dimension) {
+        SortedSet<T> levels = new TreeSet<>();
+        for (Candidate candidate : space) {
+            levels.add(dimension.apply(candidate));
+        }
+        return new ArrayList<>(levels);
+    }
+
+    private static int[] permutation(int n, Random random) {
+        int[] permutation = new int[n];
+        for (int i = 0; i < n; i++) {
+            permutation[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = swap;
+        }
+        return permutation;
+    }
+
+    // Niveau discret d'un point tiré uniformément dans la strate
+    private static int level(int stratum, int strata, int levels, Random random) {
+        return Math.min(levels - 1, (int) ((stratum + random.nextDouble()) * levels / strata));
+    }
+}
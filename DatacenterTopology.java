@@ -0,0 +1,159 @@
+package org.cloudbus.cloudsim.examples;
+
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Pe;
+import org.cloudbus.cloudsim.VmAllocationPolicy;
+import org.cloudbus.cloudsim.VmSchedulerTimeShared;
+import org.cloudbus.cloudsim.provisioners.BwProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.PeProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Description d'un datacenter hétérogène : des groupes d'hôtes identiques (nombre, PEs, MIPS,
+ * RAM, bande passante, stockage) et une politique de placement des VMs.
+ *
+ * Se construit par builder ou depuis un fichier texte compact :
+ * <pre>
+ * # host &lt;nombre&gt; &lt;pes&gt; &lt;mips&gt; &lt;ram&gt; &lt;bw&gt; &lt;stockage&gt;
+ * host 8000 16 2500 65536 10000 1000000
+ * host 2000 32 3000 131072 10000 2000000
+ * allocation best-fit
+ * </pre>
+ */
+public class DatacenterTopology {
+
+    private static final class HostGroup {
+        final int count;
+        final int pes;
+        final int mips;
+        final int ram;
+        final long bw;
+        final long storage;
+
+        HostGroup(int count, int pes, int mips, int ram, long bw, long storage) {
+            this.count = count;
+            this.pes = pes;
+            this.mips = mips;
+            this.ram = ram;
+            this.bw = bw;
+            this.storage = storage;
+        }
+    }
+
+    private final List<HostGroup> groups;
+    private final FitVmAllocationPolicy.Fit allocation;
+
+    private DatacenterTopology(List<HostGroup> groups, FitVmAllocationPolicy.Fit allocation) {
+        this.groups = Collections.unmodifiableList(new ArrayList<>(groups));
+        this.allocation = allocation;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static DatacenterTopology fromFile(Path spec) throws IOException {
+        Builder builder = builder();
+        try (BufferedReader reader = Files.newBufferedReader(spec, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split("\\s+");
+                if (fields[0].equals("host") && fields.length == 7) {
+                    builder.hosts(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                            Integer.parseInt(fields[3]), Integer.parseInt(fields[4]),
+                            Long.parseLong(fields[5]), Long.parseLong(fields[6]));
+                } else if (fields[0].equals("allocation") && fields.length == 2) {
+                    builder.allocation(FitVmAllocationPolicy.Fit.forName(fields[1]));
+                } else {
+                    throw new IOException(spec + ":" + lineNumber + ": ligne invalide : " + line);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    public DatacenterTopology withAllocation(FitVmAllocationPolicy.Fit allocation) {
+        return new DatacenterTopology(groups, allocation);
+    }
+
+    public int getHostCount() {
+        int count = 0;
+        for (HostGroup group : groups) {
+            count += group.count;
+        }
+        return count;
+    }
+
+    public List<Host> buildHosts() {
+        List<Host> hostList = new ArrayList<>(getHostCount());
+        int hostId = 0;
+
+        for (HostGroup group : groups) {
+            for (int h = 0; h < group.count; h++) {
+                // Chaque hôte a ses propres PEs : les provisioners gardent l'état d'allocation
+                List<Pe> peList = new ArrayList<>(group.pes);
+                for (int p = 0; p < group.pes; p++) {
+                    peList.add(new Pe(p, new PeProvisionerSimple(group.mips)));
+                }
+
+                hostList.add(new Host(
+                        hostId++,
+                        new RamProvisionerSimple(group.ram),
+                        new BwProvisionerSimple(group.bw),
+                        group.storage,
+                        peList,
+                        new VmSchedulerTimeShared(peList)
+                ));
+            }
+        }
+        return hostList;
+    }
+
+    public VmAllocationPolicy createAllocationPolicy(List<? extends Host> hostList) {
+        return new FitVmAllocationPolicy(hostList, allocation);
+    }
+
+    public static final class Builder {
+        private final List<HostGroup> groups = new ArrayList<>();
+        private FitVmAllocationPolicy.Fit allocation = FitVmAllocationPolicy.Fit.FIRST_FIT;
+
+        private Builder() {
+        }
+
+        public Builder hosts(int count, int pes, int mips, int ram, long bw, long storage) {
+            if (count <= 0 || pes <= 0) {
+                throw new IllegalArgumentException("Un groupe d'hôtes doit avoir au moins un hôte et un PE");
+            }
+            groups.add(new HostGroup(count, pes, mips, ram, bw, storage));
+            return this;
+        }
+
+        public Builder allocation(FitVmAllocationPolicy.Fit allocation) {
+            this.allocation = allocation;
+            return this;
+        }
+
+        public DatacenterTopology build() {
+            if (groups.isEmpty()) {
+                throw new IllegalStateException("La topologie ne contient aucun hôte");
+            }
+            return new DatacenterTopology(groups, allocation);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.cloudbus.cloudsim.examples;
+
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.VmAllocationPolicy;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Placement des VMs par first-fit, best-fit ou worst-fit sur la capacité MIPS disponible.
+ *
+ * best-fit remplit d'abord les hôtes les plus chargés (consolidation), worst-fit répartit
+ * sur les hôtes les plus libres (étalement de la charge).
+ */
+public class FitVmAllocationPolicy extends VmAllocationPolicy {
+
+    public enum Fit {
+        FIRST_FIT, BEST_FIT, WORST_FIT;
+
+        public static Fit forName(String name) {
+            switch (name) {
+                case "first-fit":
+                    return FIRST_FIT;
+                case "best-fit":
+                    return BEST_FIT;
+                case "worst-fit":
+                    return WORST_FIT;
+                default:
+                    throw new IllegalArgumentException("Politique d'allocation inconnue : " + name);
+            }
+        }
+    }
+
+    private final Fit fit;
+    private final Map<String, Host> vmTable = new HashMap<>();
+
+    public FitVmAllocationPolicy(List<? extends Host> hostList, Fit fit) {
+        super(hostList);
+        this.fit = fit;
+    }
+
+    @Override
+    public boolean allocateHostForVm(Vm vm) {
+        List<Host> hosts = getHostList();
+        boolean[] tried = new boolean[hosts.size()];
+
+        // Un hôte peut encore refuser la VM (stockage) : on passe alors au candidat suivant
+        while (true) {
+            int candidate = selectHost(hosts, vm, tried);
+            if (candidate < 0) {
+                return false;
+            }
+            tried[candidate] = true;
+            if (allocateHostForVm(vm, hosts.get(candidate))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean allocateHostForVm(Vm vm, Host host) {
+        if (host.vmCreate(vm)) {
+            vmTable.put(vm.getUid(), host);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public List<Map<String, Object>> optimizeAllocation(List<? extends Vm> vmList) {
+        return null;
+    }
+
+    @Override
+    public void deallocateHostForVm(Vm vm) {
+        Host host = vmTable.remove(vm.getUid());
+        if (host != null) {
+            host.vmDestroy(vm);
+        }
+    }
+
+    @Override
+    public Host getHost(Vm vm) {
+        return vmTable.get(vm.getUid());
+    }
+
+    @Override
+    public Host getHost(int vmId, int userId) {
+        return vmTable.get(Vm.getUid(userId, vmId));
+    }
+
+    private int selectHost(List<Host> hosts, Vm vm, boolean[] tried) {
+        int selected = -1;
+        double selectedMips = 0;
+
+        for (int i = 0; i < hosts.size(); i++) {
+            Host host = hosts.get(i);
+            if (tried[i] || !host.isSuitableForVm(vm)) {
+                continue;
+            }
+            if (fit == Fit.FIRST_FIT) {
+                return i;
+            }
+
+            double availableMips = host.getAvailableMips();
+            if (selected < 0
+                    || (fit == Fit.BEST_FIT && availableMips < selectedMips)
+                    || (fit == Fit.WORST_FIT && availableMips > selectedMips)) {
+                selected = i;
+                selectedMips = availableMips;
+            }
+        }
+        return selected;
+    }
+}
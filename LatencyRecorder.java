@@ -0,0 +1,109 @@
+package org.cloudbus.cloudsim.examples;
+
+import org.cloudbus.cloudsim.Cloudlet;
+
+/**
+ * Enregistreur de temps de réponse en ligne, à la manière d'HdrHistogram.
+ *
+ * Les valeurs sont rangées dans des buckets log-linéaires d'un simple long[] : chaque puissance
+ * de deux est découpée en sous-buckets assez fins pour garder le nombre de chiffres significatifs
+ * demandé. L'enregistrement ne fait ni allocation ni boxing, et la mémoire ne dépend pas du
+ * nombre de cloudlets : les percentiles restent disponibles même pour des millions de requêtes.
+ * Un percentile rapporté s'écarte de la valeur exacte d'au plus 10^-significantDigits en relatif
+ * (à la résolution 1/unitsPerSecond près), sans jamais dépasser le maximum enregistré.
+ */
+public class LatencyRecorder implements StreamingDatacenterBroker.CompletionListener {
+    private final double unitsPerSecond;
+    private final int subBucketHalfCountMagnitude;
+    private final int subBucketHalfCount;
+    private final long subBucketMask;
+    private final int leadingZeroCountBase;
+    private final long[] counts;
+
+    private long totalCount;
+    private double totalSeconds;
+    private long maxValue;
+
+    // Résolution par défaut : la microseconde simulée, 3 chiffres significatifs
+    public LatencyRecorder() {
+        this(1_000_000, 3);
+    }
+
+    public LatencyRecorder(double unitsPerSecond, int significantDigits) {
+        if (significantDigits < 1 || significantDigits > 5) {
+            throw new IllegalArgumentException("significantDigits doit être entre 1 et 5");
+        }
+        this.unitsPerSecond = unitsPerSecond;
+
+        long largestSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+        int subBucketCountMagnitude = 64 - Long.numberOfLeadingZeros(largestSingleUnitResolution - 1);
+        this.subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+        this.subBucketHalfCount = 1 << subBucketHalfCountMagnitude;
+        this.subBucketMask = (1L << subBucketCountMagnitude) - 1;
+        this.leadingZeroCountBase = 63 - subBucketHalfCountMagnitude;
+
+        // Un bucket par puissance de deux au-delà du premier, jusqu'à Long.MAX_VALUE
+        int bucketCount = 64 - subBucketCountMagnitude + 1;
+        this.counts = new long[(bucketCount + 1) * subBucketHalfCount];
+    }
+
+    @Override
+    public void cloudletCompleted(Cloudlet cloudlet) {
+        recordSeconds(cloudlet.getFinishTime() - cloudlet.getSubmissionTime());
+    }
+
+    public void recordSeconds(double seconds) {
+        long value = Math.max(0L, Math.round(seconds * unitsPerSecond));
+        counts[countsIndex(value)]++;
+        totalCount++;
+        totalSeconds += seconds;
+        if (value > maxValue) {
+            maxValue = value;
+        }
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public double getMeanSeconds() {
+        return totalCount == 0 ? 0.0 : totalSeconds / totalCount;
+    }
+
+    public double getMaxSeconds() {
+        return maxValue / unitsPerSecond;
+    }
+
+    public double getPercentileSeconds(double percentile) {
+        if (totalCount == 0) {
+            return 0.0;
+        }
+
+        long countAtPercentile = Math.max(1L, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= countAtPercentile) {
+                return Math.min(highestEquivalentValue(i), maxValue) / unitsPerSecond;
+            }
+        }
+        return getMaxSeconds();
+    }
+
+    private int countsIndex(long value) {
+        int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+    }
+
+    private long highestEquivalentValue(int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if (bucketIndex < 0) {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+        long lowestEquivalentValue = (long) subBucketIndex << bucketIndex;
+        return lowestEquivalentValue + (1L << bucketIndex) - 1;
+    }
+}
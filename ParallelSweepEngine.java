@@ -0,0 +1,118 @@
+package org.cloudbus.cloudsim.examples;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Exécute un balayage de scénarios en parallèle, un scénario par cœur.
+ *
+ * CloudSim garde tout son état (horloge, entités, file d'événements) dans des champs statiques :
+ * deux simulations ne peuvent donc pas tourner dans le même ClassLoader. Chaque scénario est
+ * chargé dans un ClassLoader isolé qui recharge CloudSim et cette application, puis les résultats
+ * (de simples tableaux de doubles, partagés entre ClassLoaders) sont rangés dans une map concurrente.
+ */
+public class ParallelSweepEngine {
+    // Classes rechargées dans chaque contexte isolé (CloudSim + cette application)
+    private static final String ISOLATED_PREFIX = "org.cloudbus.cloudsim.";
+    private static final String ENTRY_CLASS = "org.cloudbus.cloudsim.examples.ResponseTimeSimulation";
+    private static final String ENTRY_METHOD = "runIsolated";
+
+    private final int parallelism;
+    private final URL[] classpath;
+
+    public ParallelSweepEngine(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        this.classpath = simulationClasspath();
+    }
+
+    public <K extends Comparable<K>> ConcurrentSkipListMap<K, double[]> sweep(Map<K, Properties> scenarios)
+            throws Exception {
+        ConcurrentSkipListMap<K, double[]> results = new ConcurrentSkipListMap<>();
+        if (scenarios.isEmpty()) {
+            return results;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, scenarios.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Map.Entry<K, Properties> scenario : scenarios.entrySet()) {
+                futures.add(pool.submit(() -> {
+                    results.put(scenario.getKey(), runIsolated(scenario.getValue()));
+                    return null;
+                }));
+            }
+
+            // Propager la première erreur d'un scénario
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : e;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    private double[] runIsolated(Properties scenario) throws Exception {
+        try (IsolatedClassLoader loader = new IsolatedClassLoader(classpath, getClass().getClassLoader())) {
+            Class<?> entry = Class.forName(ENTRY_CLASS, true, loader);
+            Method method = entry.getMethod(ENTRY_METHOD, Properties.class);
+            try {
+                return (double[]) method.invoke(null, scenario);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+        }
+    }
+
+    private static URL[] simulationClasspath() {
+        Set<URL> urls = new LinkedHashSet<>();
+        urls.add(ResponseTimeSimulation.class.getProtectionDomain().getCodeSource().getLocation());
+        urls.add(CloudSim.class.getProtectionDomain().getCodeSource().getLocation());
+        return urls.toArray(new URL[0]);
+    }
+
+    // ClassLoader "child-first" pour les classes CloudSim, délégation au parent pour le reste (JDK)
+    private static final class IsolatedClassLoader extends URLClassLoader {
+        static {
+            ClassLoader.registerAsParallelCapable();
+        }
+
+        IsolatedClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(ISOLATED_PREFIX)) {
+                return super.loadClass(name, resolve);
+            }
+
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null) {
+                    try {
+                        loaded = findClass(name);
+                    } catch (ClassNotFoundException e) {
+                        loaded = super.loadClass(name, false);
+                    }
+                }
+                if (resolve) {
+                    resolveClass(loaded);
+                }
+                return loaded;
+            }
+        }
+    }
+}
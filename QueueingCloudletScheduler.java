@@ -0,0 +1,184 @@
+package org.cloudbus.cloudsim.examples;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.CloudletScheduler;
+import org.cloudbus.cloudsim.CloudletSchedulerSpaceShared;
+import org.cloudbus.cloudsim.CloudletSchedulerTimeShared;
+import org.cloudbus.cloudsim.ResCloudlet;
+import org.cloudbus.cloudsim.core.CloudSim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Partage de processeur entre au plus 'concurrencyLimit' cloudlets ; les suivants attendent
+ * dans une file de priorité rangée selon la discipline (insertion et admission en O(log n)),
+ * et sont admis (sans préemption) dès qu'une place se libère.
+ *
+ * Avec une limite égale au nombre de PEs de la VM, chaque cloudlet a son PE : c'est un
+ * space-shared dont seul l'ordre d'admission change (SJF, priorité). Avec une limite plus
+ * grande, c'est du processor-sharing borné : moins de cloudlets se partagent le CPU qu'avec
+ * CloudletSchedulerTimeShared, les premiers admis finissent donc plus tôt.
+ */
+public class QueueingCloudletScheduler extends CloudletSchedulerTimeShared {
+
+    public enum Discipline {
+        // CloudletSchedulerSpaceShared de CloudSim : un cloudlet par PE, premier arrivé premier servi
+        SPACE_SHARED_FIFO,
+        // Un cloudlet par PE, le plus court d'abord
+        SHORTEST_JOB_FIRST,
+        // Processor-sharing limité à 'concurrency' cloudlets, admission FIFO
+        CAPPED_PROCESSOR_SHARING,
+        // Un cloudlet par PE, la classe (Cloudlet.getClassType()) la plus haute d'abord
+        PRIORITY,
+        // CloudletSchedulerTimeShared de CloudSim : tous les cloudlets se partagent le CPU
+        TIME_SHARED;
+
+        public static Discipline forName(String name) {
+            switch (name) {
+                case "fifo":
+                    return SPACE_SHARED_FIFO;
+                case "sjf":
+                    return SHORTEST_JOB_FIRST;
+                case "ps-cap":
+                    return CAPPED_PROCESSOR_SHARING;
+                case "priority":
+                    return PRIORITY;
+                case "time-shared":
+                    return TIME_SHARED;
+                default:
+                    throw new IllegalArgumentException("Discipline d'ordonnancement inconnue : " + name);
+            }
+        }
+
+        // Un scheduler par VM : il porte l'état des cloudlets de cette VM
+        public CloudletScheduler newScheduler(int vmPes, int concurrency) {
+            switch (this) {
+                case SPACE_SHARED_FIFO:
+                    return new CloudletSchedulerSpaceShared();
+                case SHORTEST_JOB_FIRST:
+                    return new QueueingCloudletScheduler(vmPes,
+                            Comparator.comparingLong(ResCloudlet::getCloudletLength));
+                case CAPPED_PROCESSOR_SHARING:
+                    return new QueueingCloudletScheduler(concurrency, null);
+                case PRIORITY:
+                    return new QueueingCloudletScheduler(vmPes,
+                            Comparator.comparingInt((ResCloudlet rcl) -> rcl.getCloudlet().getClassType()).reversed());
+                default:
+                    return new CloudletSchedulerTimeShared();
+            }
+        }
+    }
+
+    // Cloudlet en attente et son rang d'arrivée
+    private static final class Queued {
+        final ResCloudlet rcl;
+        final long sequence;
+
+        Queued(ResCloudlet rcl, long sequence) {
+            this.rcl = rcl;
+            this.sequence = sequence;
+        }
+    }
+
+    private final int concurrencyLimit;
+    // Ordre d'admission, l'ordre d'arrivée départageant les ex aequo
+    private final PriorityQueue<Queued> waiting;
+    private long arrivals;
+
+    // order : ordre d'admission ; null : ordre d'arrivée
+    public QueueingCloudletScheduler(int concurrencyLimit, Comparator<ResCloudlet> order) {
+        if (concurrencyLimit < 1) {
+            throw new IllegalArgumentException("Limite de concurrence >= 1 attendue : " + concurrencyLimit);
+        }
+        this.concurrencyLimit = concurrencyLimit;
+        Comparator<Queued> byArrival = Comparator.comparingLong(queued -> queued.sequence);
+        this.waiting = new PriorityQueue<>(order == null
+                ? byArrival
+                : Comparator.<Queued, ResCloudlet>comparing(queued -> queued.rcl, order).thenComparing(byArrival));
+    }
+
+    @Override
+    public double cloudletSubmit(Cloudlet cloudlet, double fileTransferTime) {
+        if (getCloudletExecList().size() < concurrencyLimit && waiting.isEmpty()) {
+            return super.cloudletSubmit(cloudlet, fileTransferTime);
+        }
+        // Comme CloudletSchedulerTimeShared : le transfert des fichiers est ajouté à la longueur, à la
+        // capacité du moment de la soumission, pour qu'un cloudlet coûte autant en file qu'admis d'emblée
+        double extraSize = getCapacity(getCurrentMipsShare()) * fileTransferTime;
+        cloudlet.setCloudletLength((long) (cloudlet.getCloudletLength() + extraSize));
+
+        ResCloudlet rcl = new ResCloudlet(cloudlet);
+        rcl.setCloudletStatus(Cloudlet.QUEUED);
+        waiting.add(new Queued(rcl, arrivals++));
+        // Pas d'échéance : le cloudlet sera admis lors d'une mise à jour de la VM
+        return 0.0;
+    }
+
+    @Override
+    public double updateVmProcessing(double currentTime, List<Double> mipsShare) {
+        double nextEvent = super.updateVmProcessing(currentTime, mipsShare);
+        List<ResCloudlet> running = getCloudletExecList();
+        if (waiting.isEmpty() || running.size() >= concurrencyLimit) {
+            return nextEvent;
+        }
+
+        while (running.size() < concurrencyLimit && !waiting.isEmpty()) {
+            ResCloudlet rcl = waiting.poll().rcl;
+            rcl.setCloudletStatus(Cloudlet.INEXEC);
+            for (int pe = 0; pe < rcl.getNumberOfPes(); pe++) {
+                rcl.setMachineAndPeId(0, pe);
+            }
+            running.add(rcl);
+        }
+
+        // Les admis changent le partage du CPU : échéances recalculées comme dans la classe mère
+        double capacity = getCapacity(mipsShare);
+        nextEvent = Double.MAX_VALUE;
+        for (ResCloudlet rcl : running) {
+            double remaining = rcl.getRemainingCloudletLength() / (capacity * rcl.getNumberOfPes());
+            nextEvent = Math.min(nextEvent, currentTime + Math.max(remaining, CloudSim.getMinTimeBetweenEvents()));
+        }
+        return nextEvent;
+    }
+
+    // Copie de la file, dans l'ordre d'admission ; la liste d'attente de CloudSim n'est pas utilisée
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends ResCloudlet> List<T> getCloudletWaitingList() {
+        List<Queued> queued = new ArrayList<>(waiting);
+        queued.sort(waiting.comparator());
+        List<T> list = new ArrayList<>(queued.size());
+        for (Queued entry : queued) {
+            list.add((T) entry.rcl);
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    @Override
+    public int getCloudletStatus(int cloudletId) {
+        for (Queued queued : waiting) {
+            if (queued.rcl.getCloudletId() == cloudletId) {
+                return queued.rcl.getCloudletStatus();
+            }
+        }
+        return super.getCloudletStatus(cloudletId);
+    }
+
+    @Override
+    public Cloudlet cloudletCancel(int cloudletId) {
+        for (Iterator<Queued> it = waiting.iterator(); it.hasNext(); ) {
+            ResCloudlet rcl = it.next().rcl;
+            if (rcl.getCloudletId() == cloudletId) {
+                it.remove();
+                rcl.setCloudletStatus(Cloudlet.CANCELED);
+                return rcl.getCloudlet();
+            }
+        }
+        return super.cloudletCancel(cloudletId);
+    }
+}
@@ -2,10 +2,8 @@ package org.cloudbus.cloudsim.examples;
 
 import org.cloudbus.cloudsim.*;
 import org.cloudbus.cloudsim.core.CloudSim;
-import org.cloudbus.cloudsim.provisioners.BwProvisionerSimple;
-import org.cloudbus.cloudsim.provisioners.PeProvisionerSimple;
-import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
 
+import java.nio.file.Paths;
 import java.text.DecimalFormat;
 import java.util.*;
 
@@ -16,33 +14,106 @@ public class ResponseTimeSimulation {
     private static final long HOST_STORAGE = 1000000;
     private static final int HOST_BW = 10000;
     private static final int VM_COUNT = 5;
+    private static final int VM_PES = 1;
+    private static final int VM_RAM = 512;
+    private static final int STREAM_BATCH_SIZE = 1000;
+    private static final double STREAM_WINDOW = 10.0;
 
-    // Métriques de simulation
-    private static class SimulationMetrics {
+    // Métriques de simulation (lues aussi par ConfigurationSearch)
+    static class SimulationMetrics {
         double averageResponseTime;
+        double p50ResponseTime;
+        double p95ResponseTime;
+        double p99ResponseTime;
+        double p999ResponseTime;
+        double maxResponseTime;
         double resourceUtilization;
         double cost;
+        double vmHours;
+        double peakVms;
+        // Fin de la simulation, en secondes simulées
+        double makespan;
+        // VMs initiales que le datacenter a pu créer
+        double initialVms;
 
         public SimulationMetrics(double art) {
             this.averageResponseTime = art;
 
         }
+
+        // Percentiles lus directement dans l'histogramme, en mémoire constante
+        static SimulationMetrics fromRecorder(LatencyRecorder recorder) {
+            SimulationMetrics metrics = new SimulationMetrics(recorder.getMeanSeconds());
+            metrics.p50ResponseTime = recorder.getPercentileSeconds(50);
+            metrics.p95ResponseTime = recorder.getPercentileSeconds(95);
+            metrics.p99ResponseTime = recorder.getPercentileSeconds(99);
+            metrics.p999ResponseTime = recorder.getPercentileSeconds(99.9);
+            metrics.maxResponseTime = recorder.getMaxSeconds();
+            return metrics;
+        }
+
+        // Représentation partagée entre ClassLoaders isolés (voir ParallelSweepEngine)
+        double[] toArray() {
+            return new double[]{
+                    averageResponseTime, p50ResponseTime, p95ResponseTime, p99ResponseTime,
+                    p999ResponseTime, maxResponseTime, resourceUtilization, cost, vmHours, peakVms,
+                    makespan, initialVms
+            };
+        }
+
+        static SimulationMetrics fromArray(double[] values) {
+            SimulationMetrics metrics = new SimulationMetrics(values[0]);
+            metrics.p50ResponseTime = values[1];
+            metrics.p95ResponseTime = values[2];
+            metrics.p99ResponseTime = values[3];
+            metrics.p999ResponseTime = values[4];
+            metrics.maxResponseTime = values[5];
+            metrics.resourceUtilization = values[6];
+            metrics.cost = values[7];
+            metrics.vmHours = values[8];
+            metrics.peakVms = values[9];
+            metrics.makespan = values[10];
+            metrics.initialVms = values[11];
+            return metrics;
+        }
     }
 
     public static void main(String[] args) {
         Log.printLine("Démarrage de la simulation CloudSim...");
 
         try {
-            // Scénarios de charge de travail
-            int[] workloads = {200, 500, 1000, 2000};
-            Map<Integer, SimulationMetrics> results = new HashMap<>();
+            // Scénarios de charge de travail ; une dimension balayée donnée en paramètre est restreinte
+            // aux valeurs données (ex. scheduler=sjf,fifo), sans scénarios en double
+            Properties overrides = parseOverrides(args);
+            String[] workloads = sweptValues(overrides, "workload", "200", "500", "1000", "2000");
+            String[] brokerPolicies = sweptValues(overrides, "broker", "round-robin", "least-work", "p2c", "jsq");
+            String[] schedulers = sweptValues(overrides, "scheduler", "time-shared", "fifo", "sjf", "ps-cap", "priority");
+            Map<Integer, Properties> scenarios = new LinkedHashMap<>();
+
+            for (String workload : workloads) {
+                for (String brokerPolicy : brokerPolicies) {
+                    for (String scheduler : schedulers) {
+                        Properties scenario = new Properties();
+                        scenario.putAll(overrides);
+                        scenario.setProperty("workload", workload);
+                        scenario.setProperty("broker", brokerPolicy);
+                        scenario.setProperty("scheduler", scheduler);
+                        scenarios.put(scenarios.size(), scenario);
+                    }
+                }
+            }
 
-            for (int workload : workloads) {
-                results.put(workload, runSimulation(workload));
+            // Chaque scénario tourne dans son propre contexte CloudSim, en parallèle
+            long sweepStart = System.nanoTime();
+            ParallelSweepEngine engine = new ParallelSweepEngine(Runtime.getRuntime().availableProcessors());
+            Map<Integer, SimulationMetrics> results = new TreeMap<>();
+            for (Map.Entry<Integer, double[]> entry : engine.sweep(scenarios).entrySet()) {
+                results.put(entry.getKey(), SimulationMetrics.fromArray(entry.getValue()));
             }
+            Log.printLine("Balayage terminé en " + (System.nanoTime() - sweepStart) / 1_000_000 + " ms");
 
             // Afficher les résultats comparatifs
-            printComparisonResults(results);
+            printComparisonResults(scenarios, results);
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -50,134 +121,278 @@ public class ResponseTimeSimulation {
         }
     }
 
-    private static SimulationMetrics runSimulation(int requestCount) throws Exception {
-        // Initialisation de CloudSim
-        CloudSim.init(1, Calendar.getInstance(), false);
-
-        // Créer le datacenter
-        Datacenter datacenter = createDatacenter();
-        DatacenterBroker broker = createBroker();
+    // Paramètres "clé=valeur" de la ligne de commande, appliqués à tous les scénarios (ex. arrival=poisson rate=4)
+    private static Properties parseOverrides(String[] args) {
+        Properties overrides = new Properties();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Paramètre attendu sous la forme clé=valeur : " + arg);
+            }
+            overrides.setProperty(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return overrides;
+    }
 
-        // Configuration des VMs
-        List<Vm> vms = createVMs(broker.getId());
-        broker.submitVmList(vms);
+    // Valeurs balayées pour 'key' : celles du paramètre (séparées par des virgules), sinon les valeurs par défaut
+    private static String[] sweptValues(Properties overrides, String key, String... defaults) {
+        String values = overrides.getProperty(key);
+        if (values == null) {
+            return defaults;
+        }
+        String[] swept = Arrays.stream(values.split(",")).map(String::trim).distinct().toArray(String[]::new);
+        if (swept.length == 0 || Arrays.asList(swept).contains("")) {
+            throw new IllegalArgumentException("Valeur vide pour la dimension balayée : " + key + "=" + values);
+        }
+        return swept;
+    }
 
-        // Création et soumission des cloudlets
-        List<Cloudlet> cloudlets = createCloudlets(broker.getId(), requestCount);
-        broker.submitCloudletList(cloudlets);
+    // Point d'entrée appelé par ParallelSweepEngine dans un ClassLoader isolé
+    public static double[] runIsolated(Properties scenario) throws Exception {
+        Log.disable();
+        return runSimulation(scenario).toArray();
+    }
 
-        // Exécuter la simulation
-        double startTime = CloudSim.clock();
-        CloudSim.startSimulation();
+    private static SimulationMetrics runSimulation(Properties scenario) throws Exception {
+        int requestCount = Integer.parseInt(scenario.getProperty("workload"));
+        long seed = Long.parseLong(scenario.getProperty("seed", "42"));
+        Random random = new Random(seed);
+        VmLoadBalancer loadBalancer = VmLoadBalancer.forName(scenario.getProperty("broker", "round-robin"), random);
+        QueueingCloudletScheduler.Discipline discipline =
+                QueueingCloudletScheduler.Discipline.forName(scenario.getProperty("scheduler", "time-shared"));
+        int concurrency = Integer.parseInt(scenario.getProperty("concurrency", "4"));
+        int vmMips = Integer.parseInt(scenario.getProperty("vm-mips", String.valueOf(HOST_MIPS)));
+
+        int vmCount = Integer.parseInt(scenario.getProperty("vms", String.valueOf(VM_COUNT)));
+        if (vmCount < 1) {
+            throw new IllegalArgumentException("Au moins une VM initiale attendue : vms=" + vmCount);
+        }
 
-        // Collecter les résultats
-        List<Cloudlet> completedCloudlets = broker.getCloudletReceivedList();
-        CloudSim.stopSimulation();
+        // Initialisation de CloudSim
+        CloudSim.init(1, Calendar.getInstance(), false);
 
-        // Calculer et retourner les métriques
-        return calculateMetrics(completedCloudlets, vms, startTime);
+        // Créer le datacenter
+        DatacenterTopology topology = createTopology(scenario, vmMips, vmCount);
+        List<Host> hostList = topology.buildHosts();
+        DatacenterCharacteristics characteristics = createCharacteristics(hostList);
+        Datacenter datacenter = createDatacenter(characteristics, topology.createAllocationPolicy(hostList));
+
+        // Les cloudlets sont générés et soumis à la demande, par lots ; leurs classes de priorité
+        // sont tirées à part, pour un même mélange de requêtes quelle que soit la discipline
+        double priorityShare = Double.parseDouble(scenario.getProperty("priority-share", "0.2"));
+        try (CloudletStream stream = CloudletStream.withPriorityClasses(
+                createCloudletStream(scenario, requestCount, random), new Random(seed + 1), priorityShare)) {
+            StreamingDatacenterBroker broker = createBroker(stream, loadBalancer);
+            LatencyRecorder responseTimes = new LatencyRecorder();
+            broker.addCompletionListener(responseTimes);
+
+            // Utilisation et coûts calculés au fil de la simulation
+            AccountingStage accounting = new AccountingStage(characteristics);
+            broker.addCompletionListener(accounting);
+            broker.addVmListener(accounting);
+
+            // Configuration des VMs
+            List<Vm> vms = createVMs(broker.getId(), vmCount, vmMips, discipline, concurrency);
+            broker.submitVmList(vms);
+
+            // Autoscaling optionnel : VMs ajoutées et retirées en cours de simulation
+            createAutoscaler(scenario, broker, vmCount, vmMips, discipline, concurrency);
+
+            // Exécuter la simulation
+            double makespan = CloudSim.startSimulation();
+            CloudSim.stopSimulation();
+
+            // Calculer et retourner les métriques
+            SimulationMetrics metrics = SimulationMetrics.fromRecorder(responseTimes);
+            metrics.resourceUtilization = accounting.getUtilization();
+            metrics.cost = accounting.getTotalCost();
+            metrics.vmHours = accounting.getVmHours();
+            metrics.peakVms = accounting.getPeakVms();
+            metrics.makespan = makespan;
+            metrics.initialVms = broker.getInitialVmsCreated();
+            // Le broker a abandonné avant tout cloudlet : aucune mesure n'a de sens
+            if (metrics.initialVms == 0) {
+                throw new IllegalStateException("Aucune des " + vmCount + " VMs initiales n'a pu être créée");
+            }
+            if (metrics.initialVms < vmCount) {
+                Log.printLine("Attention : " + (int) metrics.initialVms + " VMs créées sur " + vmCount
+                        + " demandées, le datacenter est trop petit pour le scénario");
+            }
+            return metrics;
+        }
     }
 
-    private static Datacenter createDatacenter() throws Exception {
-        List<Host> hostList = new ArrayList<>();
-        List<Pe> peList = new ArrayList<>();
-
-        // Configuration du PE (Processing Element)
-        peList.add(new Pe(0, new PeProvisionerSimple(HOST_MIPS)));
-
-        // Configuration de l'hôte
-        Host host = new Host(
-                0,
-                new RamProvisionerSimple(HOST_RAM),
-                new BwProvisionerSimple(HOST_BW),
-                HOST_STORAGE,
-                peList,
-                new VmSchedulerTimeShared(peList)
-        );
-        hostList.add(host);
+    // Topologie lue depuis un fichier de spécification, ou N hôtes identiques de M PEs, chaque PE
+    // assez rapide pour une VM de 'vmMips' ; sans 'hosts', assez d'hôtes pour les 'vmCount' VMs
+    // initiales (une VM par PE, et au plus HOST_RAM / 512 Mo de VMs par hôte)
+    private static DatacenterTopology createTopology(Properties scenario, int vmMips, int vmCount) throws Exception {
+        String allocation = scenario.getProperty("allocation", "first-fit");
+        if (scenario.getProperty("topology") != null) {
+            DatacenterTopology topology = DatacenterTopology.fromFile(Paths.get(scenario.getProperty("topology")));
+            return scenario.getProperty("allocation") == null
+                    ? topology
+                    : topology.withAllocation(FitVmAllocationPolicy.Fit.forName(allocation));
+        }
+
+        int pes = Integer.parseInt(scenario.getProperty("pes", "1"));
+        int vmsPerHost = Math.max(1, Math.min(pes / VM_PES, HOST_RAM / VM_RAM));
+        int defaultHosts = Math.max(1, (vmCount + vmsPerHost - 1) / vmsPerHost);
+        return DatacenterTopology.builder()
+                .hosts(Integer.parseInt(scenario.getProperty("hosts", String.valueOf(defaultHosts))), pes,
+                        Math.max(HOST_MIPS, vmMips), HOST_RAM, HOST_BW, HOST_STORAGE)
+                .allocation(FitVmAllocationPolicy.Fit.forName(allocation))
+                .build();
+    }
 
+    private static DatacenterCharacteristics createCharacteristics(List<Host> hostList) {
         // Caractéristiques du datacenter
-        DatacenterCharacteristics characteristics = new DatacenterCharacteristics(
+        return new DatacenterCharacteristics(
                 "x86", "Linux", "Xen", hostList, 10.0,
                 3.0, 0.05, 0.1, 0.1
         );
+    }
 
+    private static Datacenter createDatacenter(DatacenterCharacteristics characteristics,
+                                               VmAllocationPolicy allocationPolicy) throws Exception {
         return new Datacenter(
                 "Datacenter_Basic",
                 characteristics,
-                new VmAllocationPolicySimple(hostList),
+                allocationPolicy,
                 new LinkedList<Storage>(),
                 0
         );
     }
 
-    private static List<Vm> createVMs(int brokerId) {
+    private static List<Vm> createVMs(int brokerId, int count, int mips,
+                                      QueueingCloudletScheduler.Discipline discipline, int concurrency) {
         List<Vm> vms = new ArrayList<>();
-        for (int i = 0; i < VM_COUNT; i++) {
-            Vm vm = new Vm(
-                    i, brokerId, HOST_MIPS,
-                    1, 512, 1000,
-                    10000, "Xen",
-                    new CloudletSchedulerTimeShared()
-            );
-            vms.add(vm);
+        for (int i = 0; i < count; i++) {
+            vms.add(createVm(i, brokerId, mips, discipline, concurrency));
         }
         return vms;
     }
 
-    private static List<Cloudlet> createCloudlets(int brokerId, int count) {
-        List<Cloudlet> cloudlets = new ArrayList<>();
-        UtilizationModel utilizationModel = new UtilizationModelFull();
-
-        for (int i = 0; i < count; i++) {
-            Cloudlet cloudlet = new Cloudlet(
-                    i, 1000, 1,
-                    300, 300,
-                    utilizationModel,
-                    utilizationModel,
-                    utilizationModel
-            );
-            cloudlet.setUserId(brokerId);
-            cloudlets.add(cloudlet);
-        }
-        return cloudlets;
+    private static Vm createVm(int id, int brokerId, int mips, QueueingCloudletScheduler.Discipline discipline,
+                               int concurrency) {
+        return new Vm(
+                id, brokerId, mips,
+                VM_PES, VM_RAM, 1000,
+                10000, "Xen",
+                discipline.newScheduler(VM_PES, concurrency)
+        );
     }
 
-    private static SimulationMetrics calculateMetrics(List<Cloudlet> cloudlets, List<Vm> vms, double startTime) {
-        double totalResponseTime = 0;
-
-        for (Cloudlet cloudlet : cloudlets) {
-            totalResponseTime += cloudlet.getFinishTime() - cloudlet.getSubmissionTime();
-
+    // autoscale=queue|utilization active le contrôleur ; durées en secondes simulées
+    private static void createAutoscaler(Properties scenario, StreamingDatacenterBroker broker, int vmCount,
+                                         int vmMips, QueueingCloudletScheduler.Discipline discipline,
+                                         int concurrency) {
+        String autoscale = scenario.getProperty("autoscale", "off");
+        if (autoscale.equals("off")) {
+            return;
         }
-
-        return new SimulationMetrics(
-                totalResponseTime / cloudlets.size()
-                                        );
+        AutoscalingController.Metric metric = AutoscalingController.Metric.forName(autoscale);
+        new AutoscalingController("Autoscaler", broker,
+                id -> createVm(id, broker.getId(), vmMips, discipline, concurrency), vmCount,
+                metric,
+                Double.parseDouble(scenario.getProperty("target", metric == AutoscalingController.Metric.QUEUE ? "2" : "0.7")),
+                Integer.parseInt(scenario.getProperty("min-vms", "1")),
+                Integer.parseInt(scenario.getProperty("max-vms", "50")),
+                Double.parseDouble(scenario.getProperty("autoscale-period", "10")),
+                Double.parseDouble(scenario.getProperty("provisioning-delay", "60")),
+                Double.parseDouble(scenario.getProperty("scale-out-cooldown", "60")),
+                Double.parseDouble(scenario.getProperty("scale-in-cooldown", "300")));
     }
 
-    private static double calculateCloudletCost(Cloudlet cloudlet) {
-        // Coût par unité de temps = 3.0 (défini dans les caractéristiques du datacenter)
-        return cloudlet.getActualCPUTime() * 3.0;
+    // Processus d'arrivée du scénario ; par défaut toutes les requêtes arrivent à t=0
+    private static CloudletStream createCloudletStream(Properties scenario, int count, Random random)
+            throws Exception {
+        long length = Long.parseLong(scenario.getProperty("length", "1000"));
+        boolean exponentialLength = "exp".equals(scenario.getProperty("length-dist", "fixed"));
+        double rate = Double.parseDouble(scenario.getProperty("rate", "4"));
+
+        switch (scenario.getProperty("arrival", "batch")) {
+            case "batch":
+                return CloudletStream.atTimeZero(count, length, 1, 300, 300);
+            case "poisson":
+                return new ArrivalProcess.Poisson(random, count, rate, length, exponentialLength, 1, 300, 300);
+            case "mmpp":
+                return new ArrivalProcess.Mmpp(random, count, rate,
+                        Double.parseDouble(scenario.getProperty("burst-rate", String.valueOf(rate * 5))),
+                        Double.parseDouble(scenario.getProperty("calm-sojourn", "60")),
+                        Double.parseDouble(scenario.getProperty("burst-sojourn", "10")),
+                        length, exponentialLength, 1, 300, 300);
+            case "diurnal":
+                return new ArrivalProcess.Diurnal(random, count, rate,
+                        Double.parseDouble(scenario.getProperty("amplitude", "0.8")),
+                        Double.parseDouble(scenario.getProperty("period", "86400")),
+                        length, exponentialLength, 1, 300, 300);
+            case "trace":
+                return new TraceReplayStream(Paths.get(scenario.getProperty("trace")));
+            default:
+                throw new IllegalArgumentException("Processus d'arrivée inconnu : " + scenario.getProperty("arrival"));
+        }
     }
 
-    private static void printComparisonResults(Map<Integer, SimulationMetrics> results) {
+    private static void printComparisonResults(Map<Integer, Properties> scenarios,
+                                               Map<Integer, SimulationMetrics> results) {
         DecimalFormat df = new DecimalFormat("#.##");
 
         Log.printLine("\n========== RÉSULTATS DE LA SIMULATION ==========");
-        Log.printLine("Workload | Temps Réponse ");
-        Log.printLine("--------------------------------------------");
+        Log.printLine("Workload | Broker      | Scheduler   | Temps Réponse |      p50 |      p95 |      p99 |    p99.9 |      max | Utilisation |      Coût |     VM-h | VMs max ");
+        Log.printLine("--------------------------------------------------------------------------------------------------------------------------------------------------------------");
 
         for (Map.Entry<Integer, SimulationMetrics> entry : results.entrySet()) {
             SimulationMetrics metrics = entry.getValue();
-            Log.printLine(String.format("%8d | %12s ",
-                    entry.getKey(),
-                    df.format(metrics.averageResponseTime)
+            Properties scenario = scenarios.get(entry.getKey());
+            Log.printLine(String.format("%8s | %-11s | %-11s | %13s | %8s | %8s | %8s | %8s | %8s | %10s%% | %9s | %8s | %7d ",
+                    scenario.getProperty("workload"),
+                    scenario.getProperty("broker"),
+                    scenario.getProperty("scheduler"),
+                    df.format(metrics.averageResponseTime),
+                    df.format(metrics.p50ResponseTime),
+                    df.format(metrics.p95ResponseTime),
+                    df.format(metrics.p99ResponseTime),
+                    df.format(metrics.p999ResponseTime),
+                    df.format(metrics.maxResponseTime),
+                    df.format(metrics.resourceUtilization * 100),
+                    df.format(metrics.cost),
+                    df.format(metrics.vmHours),
+                    (int) metrics.peakVms
                    ));
         }
+
+        // Scénarios dégénérés : les politiques n'y répartissent la charge que sur les VMs créées
+        for (Map.Entry<Integer, SimulationMetrics> entry : results.entrySet()) {
+            Properties scenario = scenarios.get(entry.getKey());
+            int requested = Integer.parseInt(scenario.getProperty("vms", String.valueOf(VM_COUNT)));
+            if (entry.getValue().initialVms < requested) {
+                Log.printLine(String.format("Attention : %s | %s | %s : %d VMs créées sur %d demandées",
+                        scenario.getProperty("workload"), scenario.getProperty("broker"),
+                        scenario.getProperty("scheduler"), (int) entry.getValue().initialVms, requested));
+            }
+        }
+
+        // Discipline au p99 le plus bas pour chaque charge et chaque répartiteur
+        Map<String, Integer> bestByGroup = new LinkedHashMap<>();
+        for (Map.Entry<Integer, SimulationMetrics> entry : results.entrySet()) {
+            Properties scenario = scenarios.get(entry.getKey());
+            String group = scenario.getProperty("workload") + " | " + scenario.getProperty("broker");
+            Integer best = bestByGroup.get(group);
+            if (best == null || entry.getValue().p99ResponseTime < results.get(best).p99ResponseTime) {
+                bestByGroup.put(group, entry.getKey());
+            }
+        }
+        Log.printLine("\nMeilleure discipline (p99) :");
+        for (Map.Entry<String, Integer> entry : bestByGroup.entrySet()) {
+            Log.printLine(String.format("  %-24s -> %-11s p99 %s",
+                    entry.getKey(),
+                    scenarios.get(entry.getValue()).getProperty("scheduler"),
+                    df.format(results.get(entry.getValue()).p99ResponseTime)));
+        }
     }
 
-    private static DatacenterBroker createBroker() throws Exception {
-        return new DatacenterBroker("Broker");
+    private static StreamingDatacenterBroker createBroker(CloudletStream stream, VmLoadBalancer loadBalancer)
+            throws Exception {
+        return new StreamingDatacenterBroker("Broker", stream, STREAM_BATCH_SIZE, STREAM_WINDOW, loadBalancer);
     }
 }
\ No newline at end of file
@@ -0,0 +1,326 @@
+package org.cloudbus.cloudsim.examples;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.DatacenterBroker;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.CloudSimTags;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.lists.VmList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Broker qui tire les cloudlets d'un CloudletStream par lots ordonnés dans le temps.
+ *
+ * Contrairement à DatacenterBroker, aucune liste de cloudlets n'est conservée : chaque lot est
+ * envoyé au datacenter avec un délai égal à sa date d'arrivée, et les cloudlets terminés sont
+ * remis aux listeners puis oubliés. La mémoire reste bornée par la fenêtre courante et le travail
+ * en attente dans les VMs, pas par le nombre total de requêtes du scénario.
+ *
+ * Chaque cloudlet est d'abord renvoyé au broker à sa date d'arrivée : la VM est alors choisie par
+ * le VmLoadBalancer en fonction de la charge réelle à cet instant.
+ *
+ * Des VMs peuvent être ajoutées ou retirées en cours de simulation (AutoscalingController) : une
+ * VM ajoutée est demandée au datacenter après son délai de provisionnement, une VM retirée ne
+ * reçoit plus de cloudlets et n'est détruite qu'une fois ses cloudlets en cours terminés.
+ */
+public class StreamingDatacenterBroker extends DatacenterBroker {
+    // Tags internes : prochain tirage d'un lot, arrivée d'un cloudlet
+    private static final int STREAM_PULL = 74_001;
+    private static final int CLOUDLET_ARRIVAL = 74_002;
+
+    public interface CompletionListener {
+        void cloudletCompleted(Cloudlet cloudlet);
+    }
+
+    public interface VmListener {
+        // VM demandée en cours de simulation, prête après son délai de provisionnement
+        default void vmRequested(Vm vm) {
+        }
+
+        void vmCreated(Vm vm);
+
+        // Aussi appelé pour une VM demandée qui n'a pas pu être créée
+        void vmDestroyed(Vm vm);
+    }
+
+    private final CloudletStream stream;
+    private final int batchSize;
+    private final double window;
+    private final List<CompletionListener> listeners = new ArrayList<>();
+    private final List<VmListener> vmListeners = new ArrayList<>();
+    private final Map<Integer, VmLoadBalancer.VmLoad> loads = new HashMap<>();
+    private final VmLoadBalancer loadBalancer;
+    // VMs demandées en cours de simulation, pas encore créées
+    private final Map<Integer, Vm> pendingVms = new LinkedHashMap<>();
+    // Demandes abandonnées par clearDatacenters() dont l'accusé de création est encore en vol
+    private final Map<Integer, Vm> abandonedVms = new HashMap<>();
+    // VMs retirées, détruites au retour de leur dernier cloudlet
+    private final Set<Integer> drainingVms = new HashSet<>();
+    private boolean streaming;
+    // Fin d'exécution demandée : flux épuisé, ou aucune VM initiale créée
+    private boolean stopped;
+    // VMs initiales effectivement créées au démarrage du flux
+    private int initialVmsCreated;
+
+    public StreamingDatacenterBroker(String name, CloudletStream stream, int batchSize, double window)
+            throws Exception {
+        this(name, stream, batchSize, window, new VmLoadBalancer.RoundRobin());
+    }
+
+    public StreamingDatacenterBroker(String name, CloudletStream stream, int batchSize, double window,
+                                     VmLoadBalancer loadBalancer) throws Exception {
+        super(name);
+        this.stream = stream;
+        this.batchSize = batchSize;
+        this.window = window;
+        this.loadBalancer = loadBalancer;
+    }
+
+    public void addCompletionListener(CompletionListener listener) {
+        listeners.add(listener);
+    }
+
+    public void addVmListener(VmListener listener) {
+        vmListeners.add(listener);
+    }
+
+    // Nouvelle VM, demandée au datacenter des VMs initiales après 'provisioningDelay'
+    public void provisionVm(Vm vm, double provisioningDelay) {
+        int datacenterId = getVmsToDatacentersMap().isEmpty()
+                ? getDatacenterIdsList().get(0)
+                : getVmsToDatacentersMap().values().iterator().next();
+        pendingVms.put(vm.getId(), vm);
+        for (VmListener listener : vmListeners) {
+            listener.vmRequested(vm);
+        }
+        send(datacenterId, provisioningDelay, CloudSimTags.VM_CREATE_ACK, vm);
+    }
+
+    // Retire la VM active la moins chargée ; false s'il n'en reste qu'une
+    public boolean decommissionVm() {
+        List<Vm> active = getActiveVms();
+        if (active.size() <= 1) {
+            return false;
+        }
+        Vm idlest = null;
+        for (Vm vm : active) {
+            if (idlest == null || loads.get(vm.getId()).outstandingMi <= loads.get(idlest.getId()).outstandingMi) {
+                idlest = vm;
+            }
+        }
+        drainingVms.add(idlest.getId());
+        if (loads.get(idlest.getId()).outstanding == 0) {
+            destroyVm(idlest);
+        }
+        return true;
+    }
+
+    // VMs créées qui reçoivent des cloudlets
+    public List<Vm> getActiveVms() {
+        List<Vm> active = new ArrayList<>();
+        for (Vm vm : getVmsCreatedList()) {
+            if (!drainingVms.contains(vm.getId())) {
+                active.add(vm);
+            }
+        }
+        return active;
+    }
+
+    public int getPendingVmCount() {
+        return pendingVms.size();
+    }
+
+    // Nombre de VMs initiales créées, connu au démarrage du flux ; peut être inférieur au nombre demandé
+    public int getInitialVmsCreated() {
+        return initialVmsCreated;
+    }
+
+    // Charge en cours d'une VM créée, null sinon
+    public VmLoadBalancer.VmLoad getLoad(int vmId) {
+        return loads.get(vmId);
+    }
+
+    // Plus rien à tirer du flux ni à attendre des VMs, ou broker arrêté faute de VMs initiales
+    public boolean isFinished() {
+        return stopped || streaming && !stream.hasNext() && cloudletsSubmitted == 0;
+    }
+
+    @Override
+    protected void processVmCreate(SimEvent ev) {
+        int[] data = (int[]) ev.getData();
+        Vm requested = pendingVms.remove(data[1]);
+        if (requested != null) {
+            // VM ajoutée en cours de simulation : hors du décompte des VMs initiales de DatacenterBroker
+            if (data[2] == CloudSimTags.TRUE) {
+                getVmsToDatacentersMap().put(requested.getId(), data[0]);
+                getVmsCreatedList().add(requested);
+                loads.put(requested.getId(), new VmLoadBalancer.VmLoad());
+                for (VmListener listener : vmListeners) {
+                    listener.vmCreated(requested);
+                }
+            } else {
+                Log.printLine(CloudSim.clock() + ": " + getName() + ": Creation of VM #" + requested.getId() + " failed");
+                for (VmListener listener : vmListeners) {
+                    listener.vmDestroyed(requested);
+                }
+            }
+            return;
+        }
+
+        Vm abandoned = abandonedVms.remove(data[1]);
+        if (abandoned != null) {
+            // Créée après la fin du scénario : rendue aussitôt au datacenter, déjà signalée détruite
+            if (data[2] == CloudSimTags.TRUE) {
+                sendNow(data[0], CloudSimTags.VM_DESTROY, abandoned);
+            }
+            return;
+        }
+
+        Vm vm = VmList.getById(getVmList(), data[1]);
+        if (vm == null) {
+            Log.printLine(CloudSim.clock() + ": " + getName() + ": Ignoring creation ack for unknown VM #" + data[1]);
+            return;
+        }
+        if (data[2] == CloudSimTags.TRUE) {
+            loads.put(vm.getId(), new VmLoadBalancer.VmLoad());
+            for (VmListener listener : vmListeners) {
+                listener.vmCreated(vm);
+            }
+        }
+        super.processVmCreate(ev);
+    }
+
+    @Override
+    protected void clearDatacenters() {
+        for (Vm vm : getVmsCreatedList()) {
+            for (VmListener listener : vmListeners) {
+                listener.vmDestroyed(vm);
+            }
+        }
+        // Demandes encore en vol : abandonnées, une VM créée malgré tout sera détruite à son accusé
+        for (Vm vm : pendingVms.values()) {
+            for (VmListener listener : vmListeners) {
+                listener.vmDestroyed(vm);
+            }
+        }
+        abandonedVms.putAll(pendingVms);
+        pendingVms.clear();
+        super.clearDatacenters();
+    }
+
+    // Aussi appelé par DatacenterBroker quand aucune VM initiale n'a pu être créée
+    @Override
+    protected void finishExecution() {
+        stopped = true;
+        super.finishExecution();
+    }
+
+    // Appelé par DatacenterBroker une fois les VMs initiales créées ; une seule chaîne de tirages
+    @Override
+    protected void submitCloudlets() {
+        if (!streaming) {
+            streaming = true;
+            initialVmsCreated = getVmsCreatedList().size();
+            pullBatch();
+        }
+    }
+
+    @Override
+    protected void processOtherEvent(SimEvent ev) {
+        if (ev.getTag() == STREAM_PULL) {
+            pullBatch();
+        } else if (ev.getTag() == CLOUDLET_ARRIVAL) {
+            dispatch((Cloudlet) ev.getData());
+        } else {
+            super.processOtherEvent(ev);
+        }
+    }
+
+    @Override
+    protected void processCloudletReturn(SimEvent ev) {
+        Cloudlet cloudlet = (Cloudlet) ev.getData();
+        cloudletsSubmitted--;
+
+        VmLoadBalancer.VmLoad load = loads.get(cloudlet.getVmId());
+        if (load != null) {
+            load.outstanding--;
+            load.outstandingMi -= cloudlet.getCloudletTotalLength();
+            if (load.outstanding == 0 && drainingVms.contains(cloudlet.getVmId())) {
+                destroyVm(VmList.getById(getVmsCreatedList(), cloudlet.getVmId()));
+            }
+        }
+
+        for (CompletionListener listener : listeners) {
+            listener.cloudletCompleted(cloudlet);
+        }
+
+        if (!stream.hasNext() && cloudletsSubmitted == 0) {
+            Log.printLine(CloudSim.clock() + ": " + getName() + ": All Cloudlets executed. Finishing...");
+            clearDatacenters();
+            finishExecution();
+        }
+    }
+
+    private void pullBatch() {
+        if (getVmsCreatedList().isEmpty()) {
+            return;
+        }
+
+        double now = CloudSim.clock();
+        double horizon = now + window;
+        double lastArrival = now;
+        int pulled = 0;
+
+        while (pulled < batchSize && stream.hasNext() && stream.peekArrivalTime() <= horizon) {
+            lastArrival = Math.max(now, stream.peekArrivalTime());
+            Cloudlet cloudlet = stream.next();
+            cloudlet.setUserId(getId());
+            send(getId(), lastArrival - now, CLOUDLET_ARRIVAL, cloudlet);
+            cloudletsSubmitted++;
+            pulled++;
+        }
+
+        // Lot suivant : à l'arrivée du dernier cloudlet envoyé si le lot est plein,
+        // sinon juste avant que la prochaine arrivée n'entre dans la fenêtre
+        if (stream.hasNext()) {
+            double next = pulled == batchSize ? lastArrival : stream.peekArrivalTime() - window;
+            schedule(getId(), Math.max(0.0, next - now), STREAM_PULL);
+        }
+    }
+
+    private void destroyVm(Vm vm) {
+        sendNow(getVmsToDatacentersMap().get(vm.getId()), CloudSimTags.VM_DESTROY, vm);
+        getVmsCreatedList().remove(vm);
+        getVmsToDatacentersMap().remove(vm.getId());
+        loads.remove(vm.getId());
+        drainingVms.remove(vm.getId());
+        for (VmListener listener : vmListeners) {
+            listener.vmDestroyed(vm);
+        }
+    }
+
+    // La VM est choisie à l'arrivée parmi les VMs actives, avec la charge du moment
+    private void dispatch(Cloudlet cloudlet) {
+        List<Vm> vms = getActiveVms();
+        Vm vm = cloudlet.getVmId() == -1 ? null : VmList.getById(vms, cloudlet.getVmId());
+        if (vm == null) {
+            vm = loadBalancer.select(vms, loads);
+        }
+
+        VmLoadBalancer.VmLoad load = loads.get(vm.getId());
+        load.outstanding++;
+        load.outstandingMi += cloudlet.getCloudletTotalLength();
+
+        cloudlet.setVmId(vm.getId());
+        sendNow(getVmsToDatacentersMap().get(vm.getId()), CloudSimTags.CLOUDLET_SUBMIT, cloudlet);
+    }
+}
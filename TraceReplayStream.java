@@ -0,0 +1,280 @@
+package org.cloudbus.cloudsim.examples;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.UtilizationModel;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+/**
+ * Rejoue une trace de requêtes enregistrée, lue par fenêtres mappées en mémoire.
+ *
+ * Deux formats, triés par date d'arrivée :
+ * <ul>
+ *     <li>CSV (extension .csv) : {@code arrivee,longueur,pes,tailleEntree,tailleSortie} par ligne,
+ *     la date en secondes, une ligne d'en-tête optionnelle ;</li>
+ *     <li>binaire (toute autre extension) : enregistrements big-endian de 36 octets
+ *     {@code double arrivee, long longueur, int pes, long tailleEntree, long tailleSortie}.</li>
+ * </ul>
+ * Seule la fenêtre courante est mappée, le parsing se fait directement sur les octets : la trace
+ * peut dépasser largement la taille du tas. Un champ mal formé (signe, exposant, espace, colonne
+ * manquante ou en trop), une valeur hors domaine ou une date qui recule lèvent une IOException
+ * situant la ligne ou l'enregistrement fautif.
+ */
+public class TraceReplayStream implements CloudletStream {
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int RECORD_SIZE = 36;
+    private static final int END_OF_FILE = -1;
+
+    private final Path trace;
+    private final FileChannel channel;
+    private final boolean csv;
+    private final long fileSize;
+    private final UtilizationModel utilizationModel = new UtilizationModelFull();
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int nextId;
+    // Ligne CSV ou enregistrement binaire en cours de lecture, pour les messages d'erreur
+    private long recordNumber = 1;
+    private boolean lineEnded;
+
+    // Enregistrement suivant, décodé à l'avance pour peekArrivalTime
+    private boolean hasRecord;
+    private double arrival;
+    private long length;
+    private int pes;
+    private long inputSize;
+    private long outputSize;
+
+    public TraceReplayStream(Path trace) throws IOException {
+        this.trace = trace;
+        this.channel = FileChannel.open(trace, StandardOpenOption.READ);
+        this.csv = trace.getFileName().toString().endsWith(".csv");
+        this.fileSize = channel.size();
+        try {
+            if (!csv && fileSize % RECORD_SIZE != 0) {
+                throw new IOException(trace + ": taille " + fileSize + " non multiple de " + RECORD_SIZE
+                        + " octets, dernier enregistrement tronqué");
+            }
+            map(0);
+            if (csv) {
+                skipHeader();
+            }
+            hasRecord = readRecord();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasRecord;
+    }
+
+    @Override
+    public double peekArrivalTime() {
+        if (!hasRecord) {
+            throw new NoSuchElementException();
+        }
+        return arrival;
+    }
+
+    @Override
+    public Cloudlet next() {
+        if (!hasRecord) {
+            throw new NoSuchElementException();
+        }
+        Cloudlet cloudlet = new Cloudlet(
+                nextId++, length, pes,
+                inputSize, outputSize,
+                utilizationModel,
+                utilizationModel,
+                utilizationModel
+        );
+        advance();
+        return cloudlet;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void advance() {
+        try {
+            hasRecord = readRecord();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean readRecord() throws IOException {
+        double previousArrival = arrival;
+        if (!(csv ? readCsvRecord() : readBinaryRecord())) {
+            return false;
+        }
+        if (length < 1 || pes < 1 || inputSize < 0 || outputSize < 0) {
+            throw malformed("longueur et PEs >= 1, tailles >= 0 attendus");
+        }
+        if (!(arrival >= previousArrival) || Double.isInfinite(arrival)) {
+            throw malformed("date d'arrivée " + arrival + " invalide ou antérieure à la précédente (" + previousArrival + ")");
+        }
+        return true;
+    }
+
+    private boolean readBinaryRecord() throws IOException {
+        if (position() + RECORD_SIZE > fileSize) {
+            return false;
+        }
+        recordNumber = nextId + 1;
+        ensureAvailable(RECORD_SIZE);
+        arrival = window.getDouble();
+        length = window.getLong();
+        pes = window.getInt();
+        inputSize = window.getLong();
+        outputSize = window.getLong();
+        return true;
+    }
+
+    private boolean readCsvRecord() throws IOException {
+        if (lineEnded) {
+            recordNumber++;
+            lineEnded = false;
+        }
+        // Ignorer les lignes vides
+        while (position() < fileSize && (peekByte() == '\n' || peekByte() == '\r')) {
+            if (nextByte() == '\n') {
+                recordNumber++;
+            }
+        }
+        if (position() >= fileSize) {
+            return false;
+        }
+
+        // Remapper si la ligne courante risque de chevaucher la fin de la fenêtre
+        ensureAvailable(Math.min(4096, fileSize - position()));
+        arrival = parseDecimal();
+        length = parseLong(false);
+        long recordPes = parseLong(false);
+        if (recordPes > Integer.MAX_VALUE) {
+            throw malformed("nombre de PEs hors limites : " + recordPes);
+        }
+        pes = (int) recordPes;
+        inputSize = parseLong(false);
+        outputSize = parseLong(true);
+        return true;
+    }
+
+    private void skipHeader() throws IOException {
+        if (position() < fileSize && !isDigit(peekByte()) && peekByte() != '.') {
+            while (position() < fileSize && nextByte() != '\n') {
+                // ligne d'en-tête
+            }
+            recordNumber++;
+        }
+    }
+
+    // Entier positif en chiffres décimaux seuls, suivi du séparateur attendu
+    private long parseLong(boolean lastField) throws IOException {
+        long value = 0;
+        int digits = 0;
+        int b = nextByteOrEnd();
+        while (isDigit(b)) {
+            if (value > (Long.MAX_VALUE - (b - '0')) / 10) {
+                throw malformed("entier hors limites");
+            }
+            value = value * 10 + (b - '0');
+            digits++;
+            b = nextByteOrEnd();
+        }
+        checkField(digits, b, lastField);
+        return value;
+    }
+
+    // Décimal positif "chiffres[.chiffres]", sans signe ni exposant
+    private double parseDecimal() throws IOException {
+        long mantissa = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean fraction = false;
+        int b = nextByteOrEnd();
+        while (isDigit(b) || (b == '.' && !fraction)) {
+            if (b == '.') {
+                fraction = true;
+            } else {
+                if (mantissa > (Long.MAX_VALUE - (b - '0')) / 10) {
+                    throw malformed("date d'arrivée trop précise");
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fraction) {
+                    scale++;
+                }
+            }
+            b = nextByteOrEnd();
+        }
+        checkField(digits, b, false);
+        return mantissa / Math.pow(10, scale);
+    }
+
+    private void checkField(int digits, int terminator, boolean lastField) throws IOException {
+        boolean terminated = lastField
+                ? terminator == '\n' || terminator == '\r' || terminator == END_OF_FILE
+                : terminator == ',';
+        if (digits == 0 || !terminated) {
+            throw malformed(lastField ? "dernier champ invalide ou colonne en trop" : "champ invalide ou colonne manquante");
+        }
+        lineEnded = terminator == '\n';
+    }
+
+    private IOException malformed(String reason) {
+        return new IOException(trace + (csv ? ":" + recordNumber : ": enregistrement " + recordNumber)
+                + ": " + reason);
+    }
+
+    private static boolean isDigit(int b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private long position() {
+        return windowStart + window.position();
+    }
+
+    private int peekByte() throws IOException {
+        if (!window.hasRemaining()) {
+            map(position());
+        }
+        return window.get(window.position());
+    }
+
+    private int nextByteOrEnd() throws IOException {
+        return position() < fileSize ? nextByte() : END_OF_FILE;
+    }
+
+    private int nextByte() throws IOException {
+        if (!window.hasRemaining()) {
+            map(position());
+        }
+        return window.get();
+    }
+
+    private void ensureAvailable(long bytes) throws IOException {
+        if (window.remaining() < bytes) {
+            map(position());
+        }
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        long size = Math.min(WINDOW_SIZE, fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+    }
+}
@@ -0,0 +1,67 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteurs d'une action d'API : appels, tentatives, limitations, erreurs et latence des
+ * tentatives. Mis à jour sans verrou depuis tous les threads.
+ */
+public class ActionStats {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder throttles = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+    void recordCall() {
+        calls.increment();
+    }
+
+    void recordAttempt(long latencyNanos) {
+        attempts.increment();
+        totalLatencyNanos.add(latencyNanos);
+        maxLatencyNanos.accumulate(latencyNanos);
+    }
+
+    void recordThrottle() {
+        throttles.increment();
+    }
+
+    void recordError() {
+        errors.increment();
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    public long getThrottles() {
+        return throttles.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public double getMeanLatencyMillis() {
+        long count = attempts.sum();
+        return count == 0 ? 0.0 : totalLatencyNanos.sum() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("appels=%d tentatives=%d limitations=%d erreurs=%d latence moy=%.1f ms max=%.1f ms",
+                getCalls(), getAttempts(), getThrottles(), getErrors(), getMeanLatencyMillis(), getMaxLatencyMillis());
+    }
+}
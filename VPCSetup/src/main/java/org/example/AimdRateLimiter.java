@@ -0,0 +1,58 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limiteur de débit adaptatif (AIMD) pour une action d'API : le débit autorisé croît
+ * linéairement à chaque succès et est divisé par deux à chaque limitation renvoyée par le
+ * service, entre un plancher et un plafond.
+ *
+ * Les appels sont espacés de 1/débit ; comme TokenBucket, acquire() réserve son créneau sous
+ * verrou et dort hors verrou.
+ */
+public class AimdRateLimiter {
+    private static final double ADDITIVE_INCREASE = 0.1;
+    private static final double MULTIPLICATIVE_DECREASE = 0.5;
+
+    private final double minRate;
+    private final double maxRate;
+
+    // Protégés par this
+    private double rate;
+    private long nextSlot;
+
+    public AimdRateLimiter(double minRate, double maxRate) {
+        if (minRate <= 0 || maxRate < minRate) {
+            throw new IllegalArgumentException("Débits invalides: " + minRate + " / " + maxRate);
+        }
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.rate = maxRate;
+        this.nextSlot = System.nanoTime();
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextSlot);
+            nextSlot = slot + (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    public synchronized void onSuccess() {
+        rate = Math.min(maxRate, rate + ADDITIVE_INCREASE);
+    }
+
+    public synchronized void onThrottle() {
+        rate = Math.max(minRate, rate * MULTIPLICATIVE_DECREASE);
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+}
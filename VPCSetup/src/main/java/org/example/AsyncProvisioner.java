@@ -0,0 +1,376 @@
+package org.example;
+
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ec2.Ec2AsyncClient;
+import software.amazon.awssdk.services.ec2.model.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * API non bloquante de création et de suppression d'environnements, pour l'intégration dans
+ * un service d'orchestration : chaque opération retourne aussitôt une Execution, avec un futur
+ * par étape et un futur global, sans immobiliser de thread par environnement.
+ *
+ * Les étapes sont celles de CreationVpc et DeleteVpc, sous les mêmes noms : le journal
+ * d'environnement (StateJournal) est partagé entre les deux API, un environnement créé ici peut
+ * être supprimé par DeleteVpc et inversement.
+ *
+ * Tous les clients régionaux partagent un seul client HTTP Netty et sa boucle d'événements. Les
+ * attentes (passerelle NAT, instances) passent par un poller par type de ressource et par
+ * région, quel que soit le nombre d'environnements en vol. Les écritures du journal, synchronisées
+ * sur disque, passent par un petit exécuteur dédié pour ne pas bloquer la boucle d'événements.
+ */
+public class AsyncProvisioner implements AutoCloseable {
+    private static final int EVENT_LOOP_THREADS = 4;
+    // Connexions HTTP simultanées, toutes régions confondues
+    private static final int MAX_CONCURRENCY = 200;
+    // Journaux écrits en parallèle (un fichier par environnement)
+    private static final int JOURNAL_THREADS = 4;
+
+    // Client et pollers d'une région
+    private static final class RegionalClient {
+        final Ec2AsyncClient ec2Client;
+        final ResourceWaiter natGatewayAvailable;
+        final ResourceWaiter natGatewayDeleted;
+        final ResourceWaiter instanceTerminated;
+
+        RegionalClient(Ec2AsyncClient ec2Client) {
+            this.ec2Client = ec2Client;
+            this.natGatewayAvailable = Ec2Waiters.natGatewayAvailable(ec2Client);
+            this.natGatewayDeleted = Ec2Waiters.natGatewayDeleted(ec2Client);
+            this.instanceTerminated = Ec2Waiters.instanceTerminated(ec2Client);
+        }
+
+        void close() {
+            natGatewayAvailable.close();
+            natGatewayDeleted.close();
+            instanceTerminated.close();
+            ec2Client.close();
+        }
+    }
+
+    private final SdkEventLoopGroup eventLoopGroup;
+    private final SdkAsyncHttpClient httpClient;
+    private final Function<String, Ec2AsyncClient> clientFactory;
+    private final Map<String, RegionalClient> clients = new ConcurrentHashMap<>();
+    private final ExecutorService journalExecutor = Executors.newFixedThreadPool(JOURNAL_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AsyncProvisioner() {
+        this.eventLoopGroup = SdkEventLoopGroup.builder()
+                .numberOfThreads(EVENT_LOOP_THREADS)
+                .build();
+        this.httpClient = NettyNioAsyncHttpClient.builder()
+                .eventLoopGroup(eventLoopGroup)
+                .maxConcurrency(MAX_CONCURRENCY)
+                .build();
+        // Relances du SDK conservées : aucune limitation en amont côté client asynchrone
+        this.clientFactory = region -> Ec2AsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(Ec2ClientFactory.defaultCredentialsProvider())
+                .httpClient(httpClient)
+                .build();
+    }
+
+    // Fabrique de clients fournie par l'appelant (bouchon local, benchmarks)
+    public AsyncProvisioner(Function<String, Ec2AsyncClient> clientFactory) {
+        this.eventLoopGroup = null;
+        this.httpClient = null;
+        this.clientFactory = clientFactory;
+    }
+
+    public AsyncProvisioningGraph.Execution provision(EnvironmentSpec spec) {
+        RegionalClient client = clientFor(spec.getRegion());
+        Ec2AsyncClient ec2Client = client.ec2Client;
+        String region = spec.getRegion();
+        Instant createdAt = Instant.now();
+        Function<ResourceType, TagSpecification> tags = type -> EnvironmentTags.of(type, spec.getName(), createdAt);
+
+        StateJournal journal = openJournal(spec);
+        AsyncProvisioningGraph graph = new AsyncProvisioningGraph()
+                .step("vpc", r -> ec2Client.createVpc(b -> b
+                        .cidrBlock(spec.getVpcCidr())
+                        .tagSpecifications(tags.apply(ResourceType.VPC))).thenApply(response -> response.vpc().vpcId()))
+                .step("elasticIp", r -> ec2Client.allocateAddress(b -> b
+                        .domain(DomainType.VPC)
+                        .tagSpecifications(tags.apply(ResourceType.ELASTIC_IP))).thenApply(AllocateAddressResponse::allocationId))
+                .step("dmzSubnet", r -> createSubnet(ec2Client, r.get("vpc"), spec.getDmzCidr(), region + "a",
+                        tags.apply(ResourceType.SUBNET)), "vpc")
+                .step("lanSubnet", r -> createSubnet(ec2Client, r.get("vpc"), spec.getLanCidr(), region + "b",
+                        tags.apply(ResourceType.SUBNET)), "vpc")
+                .step("internetGateway", r -> ec2Client.createInternetGateway(b -> b
+                                .tagSpecifications(tags.apply(ResourceType.INTERNET_GATEWAY)))
+                        .thenApply(response -> response.internetGateway().internetGatewayId())
+                        .thenCompose(igwId -> ec2Client.attachInternetGateway(b -> b.internetGatewayId(igwId).vpcId(r.get("vpc")))
+                                .thenApply(ignored -> igwId)), "vpc")
+                // La passerelle NAT publique exige une passerelle Internet attachée au VPC
+                .step("natGateway", r -> ec2Client.createNatGateway(b -> b
+                                .subnetId(r.get("dmzSubnet"))
+                                .allocationId(r.get("elasticIp"))
+                                .tagSpecifications(tags.apply(ResourceType.NATGATEWAY))
+                                .clientToken(RateLimitedEc2Client.clientToken(spec.getName(), "natGateway",
+                                        r.get("dmzSubnet"), r.get("elasticIp"))))
+                        .thenApply(response -> response.natGateway().natGatewayId()),
+                        "dmzSubnet", "elasticIp", "internetGateway")
+                .step("dmzPublicIp", r -> ec2Client.modifySubnetAttribute(b -> b
+                                .subnetId(r.get("dmzSubnet"))
+                                .mapPublicIpOnLaunch(AttributeBooleanValue.builder().value(true).build()))
+                        .thenApply(ignored -> null), "dmzSubnet")
+                .step("publicRouteTable", r -> createRouteTable(ec2Client, r.get("vpc"), r.get("dmzSubnet"),
+                                tags.apply(ResourceType.ROUTE_TABLE))
+                        .thenCompose(routeTableId -> ec2Client.createRoute(b -> b
+                                        .routeTableId(routeTableId)
+                                        .destinationCidrBlock("0.0.0.0/0")
+                                        .gatewayId(r.get("internetGateway")))
+                                .thenApply(ignored -> routeTableId)),
+                        "vpc", "internetGateway", "dmzSubnet")
+                .step("privateRouteTable", r -> createRouteTable(ec2Client, r.get("vpc"), r.get("lanSubnet"),
+                        tags.apply(ResourceType.ROUTE_TABLE)), "vpc", "lanSubnet")
+                .step("dmzInstance", r -> runInstance(ec2Client, spec, "dmzInstance", r.get("dmzSubnet"),
+                        tags.apply(ResourceType.INSTANCE)), "dmzPublicIp")
+                .step("lanInstance", r -> runInstance(ec2Client, spec, "lanInstance", r.get("lanSubnet"),
+                        tags.apply(ResourceType.INSTANCE)), "lanSubnet")
+                .step("natGatewayAvailable", r -> client.natGatewayAvailable.await(r.get("natGateway"))
+                        .thenApply(ignored -> null), "natGateway")
+                .step("natRoute", r -> ec2Client.createRoute(b -> b
+                                .routeTableId(r.get("privateRouteTable"))
+                                .destinationCidrBlock("0.0.0.0/0")
+                                .natGatewayId(r.get("natGateway")))
+                        .thenApply(ignored -> null), "privateRouteTable", "natGatewayAvailable");
+
+        return graph.execute(journal.entries(), journal::record, journalExecutor)
+                .whenComplete(() -> closeJournal(journal), journalExecutor);
+    }
+
+    // Comme DeleteVpc.cleanup() : les échecs ponctuels sont affichés et la suite est tentée ; s'il y en a eu,
+    // l'étape "journal" échoue et conserve le journal pour qu'une nouvelle suppression reprenne
+    public AsyncProvisioningGraph.Execution teardown(EnvironmentSpec spec) {
+        RegionalClient client = clientFor(spec.getRegion());
+        Ec2AsyncClient ec2Client = client.ec2Client;
+        StateJournal journal = openJournal(spec);
+        Map<String, String> ids = new ConcurrentHashMap<>();
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+        AsyncProvisioningGraph graph = new AsyncProvisioningGraph()
+                // Identifiants du journal de création, sinon découverte en une passe
+                .step("discovery", r -> resourceIds(ec2Client, spec, journal).thenApply(found -> {
+                    ids.putAll(found);
+                    return found.get("vpc");
+                }))
+                .step("terminateInstances", r -> {
+                    List<String> instanceIds = present(ids.get("dmzInstance"), ids.get("lanInstance"));
+                    return instanceIds.isEmpty()
+                            ? CompletableFuture.completedFuture(null)
+                            : attempt(failures, "la suppression des instances " + instanceIds,
+                            () -> ec2Client.terminateInstances(b -> b.instanceIds(instanceIds)));
+                }, "discovery")
+                .step("natGateway", r -> ifPresent(ids.get("natGateway"), natGatewayId ->
+                        attempt(failures, "la suppression de la passerelle NAT " + natGatewayId,
+                                () -> ec2Client.deleteNatGateway(b -> b.natGatewayId(natGatewayId))
+                                        .thenCompose(ignored -> client.natGatewayDeleted.await(natGatewayId)))), "discovery")
+                .step("dmzInstance", r -> ifPresent(ids.get("dmzInstance"), instanceId ->
+                        attempt(failures, "la suppression de l'instance " + instanceId,
+                                () -> client.instanceTerminated.await(instanceId))), "terminateInstances")
+                .step("lanInstance", r -> ifPresent(ids.get("lanInstance"), instanceId ->
+                        attempt(failures, "la suppression de l'instance " + instanceId,
+                                () -> client.instanceTerminated.await(instanceId))), "terminateInstances")
+                .step("elasticIp", r -> ifPresent(ids.get("elasticIp"), allocationId ->
+                        attempt(failures, "la libération de l'adresse IP Elastic " + allocationId,
+                                () -> ec2Client.releaseAddress(b -> b.allocationId(allocationId)))), "natGateway")
+                .step("dmzSubnet", r -> ifPresent(ids.get("dmzSubnet"), subnetId ->
+                        attempt(failures, "la suppression du sous-réseau " + subnetId,
+                                () -> ec2Client.deleteSubnet(b -> b.subnetId(subnetId)))), "dmzInstance", "natGateway")
+                .step("lanSubnet", r -> ifPresent(ids.get("lanSubnet"), subnetId ->
+                        attempt(failures, "la suppression du sous-réseau " + subnetId,
+                                () -> ec2Client.deleteSubnet(b -> b.subnetId(subnetId)))), "lanInstance")
+                .step("publicRouteTable", r -> ifPresent(ids.get("publicRouteTable"), routeTableId ->
+                        attempt(failures, "la suppression de la table de routage " + routeTableId,
+                                () -> ec2Client.deleteRouteTable(b -> b.routeTableId(routeTableId)))), "dmzSubnet")
+                .step("privateRouteTable", r -> ifPresent(ids.get("privateRouteTable"), routeTableId ->
+                        attempt(failures, "la suppression de la table de routage " + routeTableId,
+                                () -> ec2Client.deleteRouteTable(b -> b.routeTableId(routeTableId)))), "lanSubnet")
+                // Détacher et supprimer la passerelle Internet, une fois les adresses publiques libérées
+                .step("internetGateway", r -> ifPresent(ids.get("internetGateway"), igwId ->
+                        attempt(failures, "la suppression de la passerelle Internet " + igwId,
+                                () -> ec2Client.detachInternetGateway(b -> b.internetGatewayId(igwId).vpcId(ids.get("vpc")))
+                                        .exceptionallyCompose(failure -> DeleteVpc.isNotAttached(failure)
+                                                ? CompletableFuture.completedFuture(null)
+                                                : CompletableFuture.failedFuture(failure))
+                                        .thenCompose(ignored -> ec2Client.deleteInternetGateway(b -> b.internetGatewayId(igwId))))),
+                        "dmzInstance", "elasticIp")
+                .step("vpc", r -> ifPresent(ids.get("vpc"), vpcId ->
+                        attempt(failures, "la suppression du VPC " + vpcId,
+                                () -> ec2Client.deleteVpc(b -> b.vpcId(vpcId)))),
+                        "lanSubnet", "publicRouteTable", "privateRouteTable", "internetGateway")
+                // Ressources supprimées : le journal n'a plus lieu d'être
+                .step("journal", r -> {
+                    if (!failures.isEmpty()) {
+                        return CompletableFuture.failedFuture(new IllegalStateException("Suppression incomplète ("
+                                + failures.size() + " échec(s)): journal conservé, relancer la suppression pour reprendre"));
+                    }
+                    return CompletableFuture.supplyAsync(() -> {
+                        try {
+                            journal.delete();
+                            return null;
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, journalExecutor);
+                }, "vpc");
+
+        return graph.execute().whenComplete(() -> closeJournal(journal), journalExecutor);
+    }
+
+    @Override
+    public void close() {
+        for (RegionalClient client : clients.values()) {
+            client.close();
+        }
+        clients.clear();
+        journalExecutor.shutdown();
+        if (httpClient != null) {
+            httpClient.close();
+            eventLoopGroup.eventLoopGroup().shutdownGracefully();
+        }
+    }
+
+    private RegionalClient clientFor(String region) {
+        return clients.computeIfAbsent(region, r -> new RegionalClient(clientFactory.apply(r)));
+    }
+
+    private static StateJournal openJournal(EnvironmentSpec spec) {
+        try {
+            return StateJournal.forEnvironment(spec.getName());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void closeJournal(StateJournal journal) {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la fermeture du journal: " + e.getMessage());
+        }
+    }
+
+    // Identifiants sous les noms d'étapes de CreationVpc ; vide sans VPC
+    private static CompletableFuture<Map<String, String>> resourceIds(Ec2AsyncClient ec2Client, EnvironmentSpec spec,
+                                                                      StateJournal journal) {
+        if (journal.entries().containsKey("vpc")) {
+            return CompletableFuture.completedFuture(journal.entries());
+        }
+        return ec2Client.describeVpcs(b -> b.filters(Filter.builder()
+                        .name("cidr-block")
+                        .values(spec.getVpcCidr())
+                        .build()))
+                .thenCompose(response -> {
+                    if (response.vpcs().isEmpty()) {
+                        System.out.println("Aucun VPC trouvé avec le CIDR " + spec.getVpcCidr());
+                        return CompletableFuture.completedFuture(Map.of());
+                    }
+                    String vpcId = response.vpcs().get(0).vpcId();
+                    return VpcResourceIndex.discover(ec2Client, vpcId).thenApply(index -> {
+                        Map<String, String> ids = new HashMap<>();
+                        ids.put("vpc", vpcId);
+                        ids.put("dmzSubnet", index.getSubnetId(spec.getDmzCidr()));
+                        ids.put("lanSubnet", index.getSubnetId(spec.getLanCidr()));
+                        ids.put("dmzInstance", index.getInstanceId(ids.get("dmzSubnet")));
+                        ids.put("lanInstance", index.getInstanceId(ids.get("lanSubnet")));
+                        ids.put("natGateway", index.getNatGatewayId());
+                        ids.put("elasticIp", index.getElasticIpAllocationId(ids.get("natGateway")));
+                        ids.put("internetGateway", index.getInternetGatewayId());
+                        ids.put("publicRouteTable", index.getRouteTableId(ids.get("dmzSubnet")));
+                        ids.put("privateRouteTable", index.getRouteTableId(ids.get("lanSubnet")));
+                        ids.values().removeIf(Objects::isNull);
+                        return ids;
+                    });
+                });
+    }
+
+    private static CompletableFuture<String> createSubnet(Ec2AsyncClient ec2Client, String vpcId, String cidrBlock,
+                                                          String az, TagSpecification tags) {
+        return ec2Client.createSubnet(b -> b
+                        .vpcId(vpcId)
+                        .cidrBlock(cidrBlock)
+                        .availabilityZone(az)
+                        .tagSpecifications(tags))
+                .thenApply(response -> response.subnet().subnetId());
+    }
+
+    private static CompletableFuture<String> createRouteTable(Ec2AsyncClient ec2Client, String vpcId, String subnetId,
+                                                              TagSpecification tags) {
+        return ec2Client.createRouteTable(b -> b.vpcId(vpcId).tagSpecifications(tags))
+                .thenApply(response -> response.routeTable().routeTableId())
+                .thenCompose(routeTableId -> ec2Client.associateRouteTable(b -> b.subnetId(subnetId).routeTableId(routeTableId))
+                        .thenApply(ignored -> routeTableId));
+    }
+
+    // Même ClientToken que CreationVpc : une reprise par l'une ou l'autre API ne duplique pas l'instance
+    private static CompletableFuture<String> runInstance(Ec2AsyncClient ec2Client, EnvironmentSpec spec, String step,
+                                                         String subnetId, TagSpecification tags) {
+        return ec2Client.runInstances(b -> b
+                        .imageId(spec.getAmiId())
+                        .instanceType(InstanceType.T2_MICRO)
+                        .maxCount(1)
+                        .minCount(1)
+                        .keyName(spec.getKeyName())
+                        .subnetId(subnetId)
+                        .tagSpecifications(tags)
+                        .clientToken(RateLimitedEc2Client.clientToken(spec.getName(), step, subnetId)))
+                .thenApply(response -> response.instances().get(0).instanceId());
+    }
+
+    private static List<String> present(String... ids) {
+        List<String> result = new ArrayList<>();
+        for (String id : ids) {
+            if (id != null) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private static CompletableFuture<String> ifPresent(String id, Function<String, CompletableFuture<String>> action) {
+        return id == null ? CompletableFuture.completedFuture(null) : action.apply(id);
+    }
+
+    // Erreur affichée et relevée dans failures, étape considérée comme terminée ; une ressource déjà
+    // supprimée n'est pas un échec
+    private static CompletableFuture<String> attempt(Queue<String> failures, String operation,
+                                                     Supplier<CompletableFuture<?>> call) {
+        CompletableFuture<?> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.handle((ignored, failure) -> {
+            if (failure != null && !DeleteVpc.isAlreadyDeleted(failure)) {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause()
+                        : failure;
+                System.err.println("Erreur lors de " + operation + ": " + cause.getMessage());
+                failures.add(operation);
+            }
+            return null;
+        });
+    }
+}
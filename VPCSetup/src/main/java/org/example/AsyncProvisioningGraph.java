@@ -0,0 +1,136 @@
+package org.example;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Variante non bloquante de ProvisioningGraph : chaque étape retourne un CompletableFuture et
+ * démarre à la complétion de ses dépendances, sans thread dédié ni exécuteur. Mêmes règles
+ * que ProvisioningGraph pour les dépendances, les échecs et la reprise.
+ *
+ * Les étapes se poursuivent sur le thread qui complète leur futur, souvent la boucle
+ * d'événements du client HTTP : un StepListener bloquant (écriture synchronisée du journal)
+ * reçoit son propre exécuteur.
+ */
+public class AsyncProvisioningGraph {
+
+    public interface Step {
+        // Reçoit les identifiants produits par les étapes terminées ; le futur porte le sien (ou null)
+        CompletableFuture<String> run(Map<String, String> results);
+    }
+
+    /**
+     * Exécution en cours : un futur par étape, et le résultat global.
+     */
+    public static final class Execution {
+        private final Map<String, CompletableFuture<String>> steps;
+        private final CompletableFuture<Map<String, String>> result;
+
+        Execution(Map<String, CompletableFuture<String>> steps, CompletableFuture<Map<String, String>> result) {
+            this.steps = Collections.unmodifiableMap(steps);
+            this.result = result;
+        }
+
+        // Futur de chaque étape, dans l'ordre de déclaration ; une étape reprise est déjà complétée
+        public Map<String, CompletableFuture<String>> getSteps() {
+            return steps;
+        }
+
+        // Identifiants de toutes les étapes, ou la première erreur une fois toutes les étapes terminées
+        public CompletableFuture<Map<String, String>> getResult() {
+            return result;
+        }
+
+        // Même exécution, avec une action sur le résultat global (fermeture d'un journal, etc.) exécutée par executor
+        Execution whenComplete(Runnable action, Executor executor) {
+            return new Execution(steps, result.whenCompleteAsync((r, e) -> action.run(), executor));
+        }
+    }
+
+    private static final class Node {
+        final String name;
+        final Step action;
+        final List<String> dependencies;
+
+        Node(String name, Step action, List<String> dependencies) {
+            this.name = name;
+            this.action = action;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+    public AsyncProvisioningGraph step(String name, Step action, String... dependsOn) {
+        if (nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Étape déjà déclarée: " + name);
+        }
+        for (String dependency : dependsOn) {
+            if (!nodes.containsKey(dependency)) {
+                throw new IllegalArgumentException("Dépendance inconnue pour " + name + ": " + dependency);
+            }
+        }
+        nodes.put(name, new Node(name, action, Arrays.asList(dependsOn)));
+        return this;
+    }
+
+    public Execution execute() {
+        return execute(Collections.emptyMap(), (step, id) -> {
+        });
+    }
+
+    // Listener appelé sur le thread qui termine l'étape : réservé aux listeners non bloquants
+    public Execution execute(Map<String, String> completed, ProvisioningGraph.StepListener listener) {
+        return execute(completed, listener, Runnable::run);
+    }
+
+    // Listener appelé par listenerExecutor, hors de la boucle d'événements ; l'étape n'est
+    // terminée, et ses dépendantes lancées, qu'une fois le listener revenu
+    public Execution execute(Map<String, String> completed, ProvisioningGraph.StepListener listener,
+                             Executor listenerExecutor) {
+        Map<String, String> results = new ConcurrentHashMap<>();
+        Map<String, CompletableFuture<String>> futures = new LinkedHashMap<>();
+
+        for (Node node : nodes.values()) {
+            String completedId = completed.get(node.name);
+            if (completedId != null) {
+                if (!completedId.isEmpty()) {
+                    results.put(node.name, completedId);
+                }
+                futures.put(node.name, CompletableFuture.completedFuture(completedId.isEmpty() ? null : completedId));
+                continue;
+            }
+
+            CompletableFuture<?>[] dependencies = node.dependencies.stream()
+                    .map(futures::get)
+                    .toArray(CompletableFuture<?>[]::new);
+
+            futures.put(node.name, CompletableFuture.allOf(dependencies)
+                    .thenCompose(ignored -> node.action.run(results))
+                    .thenApplyAsync(id -> {
+                        try {
+                            listener.completed(node.name, id);
+                        } catch (Exception e) {
+                            throw new CompletionException(e);
+                        }
+                        if (id != null) {
+                            results.put(node.name, id);
+                        }
+                        return id;
+                    }, listenerExecutor));
+        }
+
+        CompletableFuture<Map<String, String>> result = CompletableFuture
+                .allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                .handle((ignored, failure) -> {
+                    if (failure != null) {
+                        throw new CompletionException(ProvisioningGraph.rootCause(futures));
+                    }
+                    return results;
+                });
+        return new Execution(futures, result);
+    }
+}
@@ -0,0 +1,35 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Délai exponentiel borné avec gigue, entre deux interrogations d'une ressource.
+ *
+ * Le délai de la tentative n vaut min(initial * multiplicateur^n, max), puis une fraction
+ * aléatoire (la gigue, entre 0 et 1) en est retirée pour désynchroniser les sondes.
+ */
+public class Backoff {
+    private final long initialMillis;
+    private final long maxMillis;
+    private final double multiplier;
+    private final double jitter;
+
+    public Backoff(Duration initial, Duration max, double multiplier, double jitter) {
+        if (initial.isNegative() || max.compareTo(initial) < 0) {
+            throw new IllegalArgumentException("Délais invalides: " + initial + " / " + max);
+        }
+        if (multiplier < 1.0 || jitter < 0.0 || jitter > 1.0) {
+            throw new IllegalArgumentException("Multiplicateur >= 1 et gigue entre 0 et 1 attendus");
+        }
+        this.initialMillis = initial.toMillis();
+        this.maxMillis = max.toMillis();
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+    }
+
+    public long delayMillis(int attempt) {
+        double delay = Math.min(initialMillis * Math.pow(multiplier, attempt), maxMillis);
+        return Math.round(delay * (1.0 - jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+}
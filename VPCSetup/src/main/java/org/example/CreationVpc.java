@@ -1,73 +1,151 @@
 package org.example;
 
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.ec2.Ec2Client;
 import software.amazon.awssdk.services.ec2.model.*;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 public class CreationVpc {
+    private static final String DEFAULT_REGION = "us-east-1";
+    private static final int PROVISIONING_THREADS = 8;
+
     private final Ec2Client ec2Client;
-    private final String region = "us-east-1";
-    private final String vpcCidr = "192.168.0.0/16";
-    private final String dmzCidr = "192.168.1.0/24";
-    private final String lanCidr = "192.168.2.0/24";
-    private final String keyName = "key2";
-    private final String amiId = "ami-012967cc5a8c9f891";
+    private final String environmentName;
+    private final String region;
+    private final String vpcCidr;
+    private final String dmzCidr;
+    private final String lanCidr;
+    private final String keyName;
+    private final String amiId;
+    // Instant de création porté par les tags de toutes les ressources de cette exécution
+    private final Instant createdAt = Instant.now();
 
     public CreationVpc() {
-        this.ec2Client = Ec2Client.builder()
-                .region(Region.of(region))
-                .build();
+        this(RateLimitedEc2Client.create(DEFAULT_REGION));
     }
 
-    public void setupInfrastructure() {
-        try {
-            // Créer le VPC
-            String vpcId = createVPC();
-            System.out.println("VPC créé avec l'ID: " + vpcId);
-
-            // Créer les sous-réseaux
-            String dmzSubnetId = createSubnet(vpcId, dmzCidr, region + "a");
-            System.out.println("Sous-réseau DMZ créé avec l'ID: " + dmzSubnetId);
-
-            String lanSubnetId = createSubnet(vpcId, lanCidr, region + "b");
-            System.out.println("Sous-réseau LAN créé avec l'ID: " + lanSubnetId);
-
-            // Créer et attacher la passerelle Internet
-            String igwId = createAndAttachInternetGateway(vpcId);
-            System.out.println("Passerelle Internet créée et attachée avec l'ID: " + igwId);
-
-            // Configurer les tables de routage
-            String publicRouteTableId = createPublicRouteTable(vpcId, igwId, dmzSubnetId);
-            String privateRouteTableId = createPrivateRouteTable(vpcId, lanSubnetId);
-
-            // Créer les instances
-            String dmzInstanceId = createEC2Instance(dmzSubnetId, true);
-            System.out.println("Instance DMZ créée avec l'ID: " + dmzInstanceId);
-
-            String lanInstanceId = createEC2Instance(lanSubnetId, false);
-            System.out.println("Instance LAN créée avec l'ID: " + lanInstanceId);
+    // Client fourni par l'appelant (bouchon local, benchmarks)
+    public CreationVpc(Ec2Client ec2Client) {
+        this(ec2Client, EnvironmentSpec.defaults());
+    }
 
-            // Créer et configurer la passerelle NAT
-            String natGatewayId = createNatGateway(dmzSubnetId);
-            System.out.println("Passerelle NAT créée avec l'ID: " + natGatewayId);
+    public CreationVpc(Ec2Client ec2Client, EnvironmentSpec spec) {
+        this.ec2Client = ec2Client;
+        this.environmentName = spec.getName();
+        this.region = spec.getRegion();
+        this.vpcCidr = spec.getVpcCidr();
+        this.dmzCidr = spec.getDmzCidr();
+        this.lanCidr = spec.getLanCidr();
+        this.keyName = spec.getKeyName();
+        this.amiId = spec.getAmiId();
+    }
 
-            // Attendre que la passerelle NAT soit disponible
-            waitForNatGateway(natGatewayId);
+    // Retourne false si une étape a échoué (le détail est affiché sur la sortie d'erreur)
+    public boolean setupInfrastructure() {
+        ExecutorService executor = Executors.newFixedThreadPool(PROVISIONING_THREADS);
+        ResourceWaiter natGatewayWaiter = Ec2Waiters.natGatewayAvailable(ec2Client);
+        ProvisioningTrace trace = new ProvisioningTrace(environmentName, "create", MetricsRegistry.global());
+        try (StateJournal journal = StateJournal.forEnvironment(environmentName)) {
+            // Reprise : les étapes déjà journalisées ne sont pas relancées
+            Map<String, String> completed = journal.entries();
+            if (!completed.isEmpty()) {
+                System.out.println("Reprise depuis le journal: " + completed.size() + " étapes déjà terminées");
+            }
 
-            // Ajouter la route NAT à la table de routage privée
-            addNatGatewayRoute(privateRouteTableId, natGatewayId);
+            // Chaque étape démarre dès que ses dépendances sont prêtes
+            ProvisioningGraph graph = new ProvisioningGraph()
+                    .trace(trace)
+                    .step("vpc", r -> {
+                        String vpcId = createVPC();
+                        System.out.println("VPC créé avec l'ID: " + vpcId);
+                        return vpcId;
+                    })
+                    .step("elasticIp", r -> allocateElasticIp())
+                    .step("dmzSubnet", r -> {
+                        String dmzSubnetId = createSubnet(r.get("vpc"), dmzCidr, region + "a");
+                        System.out.println("Sous-réseau DMZ créé avec l'ID: " + dmzSubnetId);
+                        return dmzSubnetId;
+                    }, "vpc")
+                    .step("lanSubnet", r -> {
+                        String lanSubnetId = createSubnet(r.get("vpc"), lanCidr, region + "b");
+                        System.out.println("Sous-réseau LAN créé avec l'ID: " + lanSubnetId);
+                        return lanSubnetId;
+                    }, "vpc")
+                    .step("internetGateway", r -> {
+                        String igwId = createAndAttachInternetGateway(r.get("vpc"));
+                        System.out.println("Passerelle Internet créée et attachée avec l'ID: " + igwId);
+                        return igwId;
+                    }, "vpc")
+                    // La passerelle NAT publique exige une passerelle Internet attachée au VPC
+                    .step("natGateway", r -> {
+                        String natGatewayId = createNatGateway(r.get("dmzSubnet"), r.get("elasticIp"));
+                        System.out.println("Passerelle NAT créée avec l'ID: " + natGatewayId);
+                        return natGatewayId;
+                    }, "dmzSubnet", "elasticIp", "internetGateway")
+                    .step("dmzPublicIp", r -> {
+                        enablePublicIpOnLaunch(r.get("dmzSubnet"));
+                        return null;
+                    }, "dmzSubnet")
+                    .step("publicRouteTable", r -> createPublicRouteTable(r.get("vpc"), r.get("internetGateway"), r.get("dmzSubnet")),
+                            "vpc", "internetGateway", "dmzSubnet")
+                    .step("privateRouteTable", r -> createPrivateRouteTable(r.get("vpc"), r.get("lanSubnet")),
+                            "vpc", "lanSubnet")
+                    .step("dmzInstance", r -> {
+                        String dmzInstanceId = createEC2Instance(r.get("dmzSubnet"), true);
+                        System.out.println("Instance DMZ créée avec l'ID: " + dmzInstanceId);
+                        return dmzInstanceId;
+                    }, "dmzPublicIp")
+                    .step("lanInstance", r -> {
+                        String lanInstanceId = createEC2Instance(r.get("lanSubnet"), false);
+                        System.out.println("Instance LAN créée avec l'ID: " + lanInstanceId);
+                        return lanInstanceId;
+                    }, "lanSubnet")
+                    // Attendre que la passerelle NAT soit disponible
+                    .step("natGatewayAvailable", r -> {
+                        natGatewayWaiter.waitFor(r.get("natGateway"));
+                        return null;
+                    }, "natGateway")
+                    // Ajouter la route NAT à la table de routage privée
+                    .step("natRoute", r -> {
+                        addNatGatewayRoute(r.get("privateRouteTable"), r.get("natGateway"));
+                        return null;
+                    }, "privateRouteTable", "natGatewayAvailable");
+
+            // Chaque étape est journalisée (sur disque) avant le lancement de ses dépendants
+            graph.execute(executor, completed, journal::record);
 
             System.out.println("Configuration du réseau VPC terminée avec succès!");
+            return true;
 
         } catch (Exception e) {
             System.err.println("Erreur lors de la configuration: " + e.getMessage());
             e.printStackTrace();
+            return false;
+        } finally {
+            executor.shutdown();
+            natGatewayWaiter.close();
+            reportTrace(trace);
+        }
+    }
+
+    // Chemin critique sur la sortie standard, trace complète dans le répertoire d'état
+    private static void reportTrace(ProvisioningTrace trace) {
+        System.out.print(trace.report());
+        try {
+            System.out.println("Trace écrite dans " + trace.export());
+        } catch (IOException e) {
+            System.err.println("Erreur lors de l'écriture de la trace: " + e.getMessage());
         }
     }
 
     private String createVPC() {
         CreateVpcRequest request = CreateVpcRequest.builder()
                 .cidrBlock(vpcCidr)
+                .tagSpecifications(tags(ResourceType.VPC))
                 .build();
 
         CreateVpcResponse response = ec2Client.createVpc(request);
@@ -79,6 +157,7 @@ public class CreationVpc {
                 .vpcId(vpcId)
                 .cidrBlock(cidrBlock)
                 .availabilityZone(az)
+                .tagSpecifications(tags(ResourceType.SUBNET))
                 .build();
 
         CreateSubnetResponse response = ec2Client.createSubnet(request);
@@ -86,7 +165,9 @@ public class CreationVpc {
     }
 
     private String createAndAttachInternetGateway(String vpcId) {
-        CreateInternetGatewayRequest createRequest = CreateInternetGatewayRequest.builder().build();
+        CreateInternetGatewayRequest createRequest = CreateInternetGatewayRequest.builder()
+                .tagSpecifications(tags(ResourceType.INTERNET_GATEWAY))
+                .build();
         CreateInternetGatewayResponse createResponse = ec2Client.createInternetGateway(createRequest);
         String igwId = createResponse.internetGateway().internetGatewayId();
 
@@ -102,6 +183,7 @@ public class CreationVpc {
     private String createPublicRouteTable(String vpcId, String igwId, String subnetId) {
         CreateRouteTableRequest createRequest = CreateRouteTableRequest.builder()
                 .vpcId(vpcId)
+                .tagSpecifications(tags(ResourceType.ROUTE_TABLE))
                 .build();
 
         CreateRouteTableResponse response = ec2Client.createRouteTable(createRequest);
@@ -122,6 +204,10 @@ public class CreationVpc {
 
         ec2Client.associateRouteTable(associateRequest);
 
+        return routeTableId;
+    }
+
+    private void enablePublicIpOnLaunch(String subnetId) {
         // Correction de la partie problématique
         ModifySubnetAttributeRequest modifyRequest = ModifySubnetAttributeRequest.builder()
                 .subnetId(subnetId)
@@ -129,13 +215,12 @@ public class CreationVpc {
                 .build();
 
         ec2Client.modifySubnetAttribute(modifyRequest);
-
-        return routeTableId;
     }
 
     private String createPrivateRouteTable(String vpcId, String subnetId) {
         CreateRouteTableRequest createRequest = CreateRouteTableRequest.builder()
                 .vpcId(vpcId)
+                .tagSpecifications(tags(ResourceType.ROUTE_TABLE))
                 .build();
 
         CreateRouteTableResponse response = ec2Client.createRouteTable(createRequest);
@@ -159,51 +244,36 @@ public class CreationVpc {
                 .minCount(1)
                 .keyName(keyName)
                 .subnetId(subnetId)
+                .tagSpecifications(tags(ResourceType.INSTANCE))
+                .clientToken(RateLimitedEc2Client.clientToken(environmentName, isPublic ? "dmzInstance" : "lanInstance", subnetId))
                 .build();
 
         RunInstancesResponse response = ec2Client.runInstances(request);
         return response.instances().get(0).instanceId();
     }
 
-    private String createNatGateway(String subnetId) {
+    private String allocateElasticIp() {
         AllocateAddressRequest allocateRequest = AllocateAddressRequest.builder()
                 .domain(DomainType.VPC)
+                .tagSpecifications(tags(ResourceType.ELASTIC_IP))
                 .build();
 
         AllocateAddressResponse allocateResponse = ec2Client.allocateAddress(allocateRequest);
+        return allocateResponse.allocationId();
+    }
 
+    private String createNatGateway(String subnetId, String allocationId) {
         CreateNatGatewayRequest request = CreateNatGatewayRequest.builder()
                 .subnetId(subnetId)
-                .allocationId(allocateResponse.allocationId())
+                .allocationId(allocationId)
+                .tagSpecifications(tags(ResourceType.NATGATEWAY))
+                .clientToken(RateLimitedEc2Client.clientToken(environmentName, "natGateway", subnetId, allocationId))
                 .build();
 
         CreateNatGatewayResponse response = ec2Client.createNatGateway(request);
         return response.natGateway().natGatewayId();
     }
 
-    private void waitForNatGateway(String natGatewayId) {
-        boolean isAvailable = false;
-        while (!isAvailable) {
-            DescribeNatGatewaysRequest request = DescribeNatGatewaysRequest.builder()
-                    .natGatewayIds(natGatewayId)
-                    .build();
-
-            DescribeNatGatewaysResponse response = ec2Client.describeNatGateways(request);
-            NatGatewayState state = response.natGateways().get(0).state();
-
-            if (state == NatGatewayState.AVAILABLE) {
-                isAvailable = true;
-            } else {
-                try {
-                    Thread.sleep(20000); // Attendre 20 secondes avant de vérifier à nouveau
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException(e);
-                }
-            }
-        }
-    }
-
     private void addNatGatewayRoute(String routeTableId, String natGatewayId) {
         CreateRouteRequest request = CreateRouteRequest.builder()
                 .routeTableId(routeTableId)
@@ -212,5 +282,9 @@ public class CreationVpc {
                 .build();
 
         ec2Client.createRoute(request);
-}
+    }
+
+    private TagSpecification tags(ResourceType resourceType) {
+        return EnvironmentTags.of(resourceType, environmentName, createdAt);
+    }
 }
@@ -1,263 +1,267 @@
 package org.example;
 
-import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.services.ec2.Ec2Client;
 import software.amazon.awssdk.services.ec2.model.*;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 public class DeleteVpc {
+    private static final String DEFAULT_REGION = "us-east-1";
+    private static final int TEARDOWN_THREADS = 8;
+
     private final Ec2Client ec2Client;
-    private final String region = "us-east-1";
-    private final String vpcCidr = "192.168.0.0/16";
-    private final String dmzCidr = "192.168.1.0/24";
-    private final String lanCidr = "192.168.2.0/24";
+    private final String environmentName;
+    private final String region;
+    private final String vpcCidr;
+    private final String dmzCidr;
+    private final String lanCidr;
+    // Opérations en échec de l'exécution en cours
+    private final Queue<String> failures = new ConcurrentLinkedQueue<>();
 
     public DeleteVpc() {
-        this.ec2Client = Ec2Client.builder()
-                .region(Region.of(region))
-                .build();
+        this(RateLimitedEc2Client.create(DEFAULT_REGION));
     }
 
-    public void cleanup() {
-        try {
-            // Récupérer l'ID du VPC
-            String vpcId = getVpcId();
-            System.out.println("VPC ID trouvé: " + vpcId);
-
-            if (vpcId == null) {
-                System.out.println("Aucun VPC trouvé avec le CIDR " + vpcCidr);
-                return;
-            }
-
-            // Récupérer les IDs des sous-réseaux
-            String dmzSubnetId = getSubnetId(vpcId, dmzCidr);
-            String lanSubnetId = getSubnetId(vpcId, lanCidr);
-            System.out.println("Sous-réseaux trouvés - DMZ: " + dmzSubnetId + ", LAN: " + lanSubnetId);
-
-            // Récupérer les IDs des instances
-            String dmzInstanceId = getInstanceId(dmzSubnetId);
-            String lanInstanceId = getInstanceId(lanSubnetId);
-            System.out.println("Instances trouvées - DMZ: " + dmzInstanceId + ", LAN: " + lanInstanceId);
-
-            // Récupérer l'ID de la passerelle NAT
-            String natGatewayId = getNatGatewayId(vpcId);
-            System.out.println("Passerelle NAT trouvée: " + natGatewayId);
-
-            // Récupérer l'ID de l'adresse IP Elastic
-            String elasticIpAllocationId = getElasticIpAllocationId(natGatewayId);
-            System.out.println("Allocation ID de l'IP Elastic trouvée: " + elasticIpAllocationId);
-
-            // Récupérer l'ID de la passerelle Internet
-            String igwId = getInternetGatewayId(vpcId);
-            System.out.println("Passerelle Internet trouvée: " + igwId);
-
-            // Récupérer les IDs des tables de routage
-            String publicRouteTableId = getRouteTableId(vpcId, dmzSubnetId);
-            String privateRouteTableId = getRouteTableId(vpcId, lanSubnetId);
-            System.out.println("Tables de routage trouvées - Publique: " + publicRouteTableId + ", Privée: " + privateRouteTableId);
-
-            // Supprimer les instances
-            terminateInstances(dmzInstanceId, lanInstanceId);
+    // Client fourni par l'appelant (bouchon local, benchmarks)
+    public DeleteVpc(Ec2Client ec2Client) {
+        this(ec2Client, EnvironmentSpec.defaults());
+    }
 
-            // Supprimer la passerelle NAT
-            deleteNatGateway(natGatewayId);
+    public DeleteVpc(Ec2Client ec2Client, EnvironmentSpec spec) {
+        this.ec2Client = ec2Client;
+        this.environmentName = spec.getName();
+        this.region = spec.getRegion();
+        this.vpcCidr = spec.getVpcCidr();
+        this.dmzCidr = spec.getDmzCidr();
+        this.lanCidr = spec.getLanCidr();
+    }
 
-            // Libérer l'adresse IP Elastic
-            if (elasticIpAllocationId != null) {
-                releaseElasticIp(elasticIpAllocationId);
+    // Retourne false si une étape a échoué : le journal est alors conservé et un nouvel appel reprend
+    // la suppression avec les mêmes identifiants. Une ressource déjà supprimée n'est pas un échec.
+    public boolean cleanup() {
+        failures.clear();
+        ExecutorService executor = Executors.newFixedThreadPool(TEARDOWN_THREADS);
+        // Un seul poller par type de ressource : les deux instances sont interrogées ensemble
+        ResourceWaiter instanceWaiter = Ec2Waiters.instanceTerminated(ec2Client);
+        ResourceWaiter natGatewayWaiter = Ec2Waiters.natGatewayDeleted(ec2Client);
+        ProvisioningTrace trace = new ProvisioningTrace(environmentName, "delete", MetricsRegistry.global());
+        try (StateJournal journal = StateJournal.forEnvironment(environmentName)) {
+            // Les identifiants du journal de création évitent toute la phase de découverte
+            Map<String, String> ids = journal.entries().containsKey("vpc")
+                    ? journal.entries()
+                    : discoverResources(executor);
+            if (ids == null) {
+                System.out.println("Aucun VPC trouvé avec le CIDR " + vpcCidr);
+                journal.delete();
+                return true;
             }
 
-            // Supprimer les sous-réseaux
-            deleteSubnets(dmzSubnetId, lanSubnetId);
-
-            // Supprimer les tables de routage
-            deleteRouteTables(publicRouteTableId, privateRouteTableId);
-
-            // Détacher et supprimer la passerelle Internet
-            if (igwId != null) {
-                detachAndDeleteInternetGateway(igwId, vpcId);
+            String vpcId = ids.get("vpc");
+            String dmzSubnetId = ids.get("dmzSubnet");
+            String lanSubnetId = ids.get("lanSubnet");
+            String dmzInstanceId = ids.get("dmzInstance");
+            String lanInstanceId = ids.get("lanInstance");
+            String natGatewayId = ids.get("natGateway");
+            String elasticIpAllocationId = ids.get("elasticIp");
+            String igwId = ids.get("internetGateway");
+            String publicRouteTableId = ids.get("publicRouteTable");
+            String privateRouteTableId = ids.get("privateRouteTable");
+
+            // Graphe de dépendances inversé : chaque ressource est supprimée dès que plus rien n'en dépend.
+            // Les étapes gèrent leurs propres erreurs, comme avant, pour tenter quand même la suite.
+            new ProvisioningGraph()
+                    .trace(trace)
+                    // Toutes les instances en un seul appel, la passerelle NAT en parallèle
+                    .step("terminateInstances", r -> {
+                        terminateInstances(dmzInstanceId, lanInstanceId);
+                        return null;
+                    })
+                    .step("natGateway", r -> {
+                        deleteNatGateway(natGatewayWaiter, natGatewayId);
+                        return null;
+                    })
+                    .step("dmzInstance", r -> {
+                        awaitInstanceTermination(instanceWaiter, dmzInstanceId);
+                        return null;
+                    }, "terminateInstances")
+                    .step("lanInstance", r -> {
+                        awaitInstanceTermination(instanceWaiter, lanInstanceId);
+                        return null;
+                    }, "terminateInstances")
+                    // Libérer l'adresse IP Elastic
+                    .step("elasticIp", r -> {
+                        if (elasticIpAllocationId != null) {
+                            releaseElasticIp(elasticIpAllocationId);
+                        }
+                        return null;
+                    }, "natGateway")
+                    // Supprimer les sous-réseaux, puis leur table de routage
+                    .step("dmzSubnet", r -> {
+                        deleteSubnets(dmzSubnetId);
+                        return null;
+                    }, "dmzInstance", "natGateway")
+                    .step("lanSubnet", r -> {
+                        deleteSubnets(lanSubnetId);
+                        return null;
+                    }, "lanInstance")
+                    .step("publicRouteTable", r -> {
+                        deleteRouteTables(publicRouteTableId);
+                        return null;
+                    }, "dmzSubnet")
+                    .step("privateRouteTable", r -> {
+                        deleteRouteTables(privateRouteTableId);
+                        return null;
+                    }, "lanSubnet")
+                    // Détacher et supprimer la passerelle Internet, une fois les adresses publiques libérées
+                    .step("internetGateway", r -> {
+                        if (igwId != null) {
+                            detachAndDeleteInternetGateway(igwId, vpcId);
+                        }
+                        return null;
+                    }, "dmzInstance", "elasticIp")
+                    // Supprimer le VPC
+                    .step("vpc", r -> {
+                        deleteVpc(vpcId);
+                        return null;
+                    }, "lanSubnet", "publicRouteTable", "privateRouteTable", "internetGateway")
+                    .execute(executor);
+
+            // Le journal est le seul relevé des identifiants restants : conservé pour la reprise
+            if (!failures.isEmpty()) {
+                System.err.println("Suppression incomplète (" + failures.size() + " échec(s)): journal conservé, "
+                        + "relancer la suppression pour reprendre");
+                return false;
             }
-
-            // Supprimer le VPC
-            deleteVpc(vpcId);
-
+            journal.delete();
             System.out.println("Suppression du réseau VPC terminée");
+            return true;
 
         } catch (Exception e) {
             System.err.println("Erreur lors du nettoyage: " + e.getMessage());
             e.printStackTrace();
+            return false;
+        } finally {
+            executor.shutdown();
+            instanceWaiter.close();
+            natGatewayWaiter.close();
+            reportTrace(trace);
         }
     }
 
-    private String getVpcId() {
-        DescribeVpcsRequest request = DescribeVpcsRequest.builder()
-                .filters(Filter.builder()
-                        .name("cidr-block")
-                        .values(vpcCidr)
-                        .build())
-                .build();
-
-        DescribeVpcsResponse response = ec2Client.describeVpcs(request);
-        if (!response.vpcs().isEmpty()) {
-            return response.vpcs().get(0).vpcId();
+    // Chemin critique sur la sortie standard, trace complète dans le répertoire d'état
+    private static void reportTrace(ProvisioningTrace trace) {
+        System.out.print(trace.report());
+        try {
+            System.out.println("Trace écrite dans " + trace.export());
+        } catch (IOException e) {
+            System.err.println("Erreur lors de l'écriture de la trace: " + e.getMessage());
         }
-        return null;
     }
 
-    private String getSubnetId(String vpcId, String cidrBlock) {
-        DescribeSubnetsRequest request = DescribeSubnetsRequest.builder()
-                .filters(
-                        Filter.builder().name("vpc-id").values(vpcId).build(),
-                        Filter.builder().name("cidr-block").values(cidrBlock).build()
-                )
-                .build();
-
-        DescribeSubnetsResponse response = ec2Client.describeSubnets(request);
-        if (!response.subnets().isEmpty()) {
-            return response.subnets().get(0).subnetId();
+    // Identifiants des ressources du VPC, sous les noms d'étapes de CreationVpc ; null sans VPC
+    private Map<String, String> discoverResources(Executor executor) throws Exception {
+        String vpcId = getVpcId();
+        System.out.println("VPC ID trouvé: " + vpcId);
+        if (vpcId == null) {
+            return null;
         }
-        return null;
-    }
 
-    private String getInstanceId(String subnetId) {
-        if (subnetId == null) return null;
+        // Une seule passe de découverte pour toutes les ressources du VPC
+        VpcResourceIndex index = VpcResourceIndex.discover(ec2Client, vpcId, executor);
+        Map<String, String> ids = new HashMap<>();
+        ids.put("vpc", vpcId);
 
-        DescribeInstancesRequest request = DescribeInstancesRequest.builder()
-                .filters(
-                        Filter.builder().name("subnet-id").values(subnetId).build(),
-                        Filter.builder().name("instance-state-name").values("running").build()
-                )
-                .build();
-
-        DescribeInstancesResponse response = ec2Client.describeInstances(request);
-        if (!response.reservations().isEmpty() && !response.reservations().get(0).instances().isEmpty()) {
-            return response.reservations().get(0).instances().get(0).instanceId();
-        }
-        return null;
-    }
+        ids.put("dmzSubnet", index.getSubnetId(dmzCidr));
+        ids.put("lanSubnet", index.getSubnetId(lanCidr));
+        System.out.println("Sous-réseaux trouvés - DMZ: " + ids.get("dmzSubnet") + ", LAN: " + ids.get("lanSubnet"));
 
-    private String getNatGatewayId(String vpcId) {
-        DescribeNatGatewaysRequest request = DescribeNatGatewaysRequest.builder()
-                .filter(Filter.builder()
-                        .name("vpc-id")
-                        .values(vpcId)
-                        .build())
-                .build();
+        ids.put("dmzInstance", index.getInstanceId(ids.get("dmzSubnet")));
+        ids.put("lanInstance", index.getInstanceId(ids.get("lanSubnet")));
+        System.out.println("Instances trouvées - DMZ: " + ids.get("dmzInstance") + ", LAN: " + ids.get("lanInstance"));
 
-        DescribeNatGatewaysResponse response = ec2Client.describeNatGateways(request);
-        if (!response.natGateways().isEmpty()) {
-            return response.natGateways().get(0).natGatewayId();
-        }
-        return null;
-    }
+        ids.put("natGateway", index.getNatGatewayId());
+        System.out.println("Passerelle NAT trouvée: " + ids.get("natGateway"));
 
-    private String getElasticIpAllocationId(String natGatewayId) {
-        if (natGatewayId == null) return null;
+        ids.put("elasticIp", index.getElasticIpAllocationId(ids.get("natGateway")));
+        System.out.println("Allocation ID de l'IP Elastic trouvée: " + ids.get("elasticIp"));
 
-        DescribeNatGatewaysRequest request = DescribeNatGatewaysRequest.builder()
-                .natGatewayIds(natGatewayId)
-                .build();
+        ids.put("internetGateway", index.getInternetGatewayId());
+        System.out.println("Passerelle Internet trouvée: " + ids.get("internetGateway"));
 
-        DescribeNatGatewaysResponse response = ec2Client.describeNatGateways(request);
-        if (!response.natGateways().isEmpty() && !response.natGateways().get(0).natGatewayAddresses().isEmpty()) {
-            return response.natGateways().get(0).natGatewayAddresses().get(0).allocationId();
-        }
-        return null;
+        ids.put("publicRouteTable", index.getRouteTableId(ids.get("dmzSubnet")));
+        ids.put("privateRouteTable", index.getRouteTableId(ids.get("lanSubnet")));
+        System.out.println("Tables de routage trouvées - Publique: " + ids.get("publicRouteTable")
+                + ", Privée: " + ids.get("privateRouteTable"));
+        return ids;
     }
 
-    private String getInternetGatewayId(String vpcId) {
-        DescribeInternetGatewaysRequest request = DescribeInternetGatewaysRequest.builder()
+    private String getVpcId() {
+        DescribeVpcsRequest request = DescribeVpcsRequest.builder()
                 .filters(Filter.builder()
-                        .name("attachment.vpc-id")
-                        .values(vpcId)
+                        .name("cidr-block")
+                        .values(vpcCidr)
                         .build())
                 .build();
 
-        DescribeInternetGatewaysResponse response = ec2Client.describeInternetGateways(request);
-        if (!response.internetGateways().isEmpty()) {
-            return response.internetGateways().get(0).internetGatewayId();
-        }
-        return null;
-    }
-
-    private String getRouteTableId(String vpcId, String subnetId) {
-        DescribeRouteTablesRequest request = DescribeRouteTablesRequest.builder()
-                .filters(
-                        Filter.builder().name("vpc-id").values(vpcId).build(),
-                        Filter.builder().name("association.subnet-id").values(subnetId).build()
-                )
-                .build();
-
-        DescribeRouteTablesResponse response = ec2Client.describeRouteTables(request);
-        if (!response.routeTables().isEmpty()) {
-            return response.routeTables().get(0).routeTableId();
+        DescribeVpcsResponse response = ec2Client.describeVpcs(request);
+        if (!response.vpcs().isEmpty()) {
+            return response.vpcs().get(0).vpcId();
         }
         return null;
     }
 
     private void terminateInstances(String... instanceIds) {
+        List<String> ids = new ArrayList<>();
         for (String instanceId : instanceIds) {
             if (instanceId != null) {
-                try {
-                    TerminateInstancesRequest request = TerminateInstancesRequest.builder()
-                            .instanceIds(instanceId)
-                            .build();
-                    ec2Client.terminateInstances(request);
-                    waitForInstanceTermination(instanceId);
-                } catch (Exception e) {
-                    System.err.println("Erreur lors de la suppression de l'instance " + instanceId + ": " + e.getMessage());
-                }
+                ids.add(instanceId);
             }
         }
-    }
+        if (ids.isEmpty()) {
+            return;
+        }
 
-    private void waitForInstanceTermination(String instanceId) throws InterruptedException {
-        boolean isTerminated = false;
-        while (!isTerminated) {
-            DescribeInstancesRequest request = DescribeInstancesRequest.builder()
-                    .instanceIds(instanceId)
+        try {
+            TerminateInstancesRequest request = TerminateInstancesRequest.builder()
+                    .instanceIds(ids)
                     .build();
-            DescribeInstancesResponse response = ec2Client.describeInstances(request);
-
-            if (!response.reservations().isEmpty() && !response.reservations().get(0).instances().isEmpty()) {
-                InstanceState state = response.reservations().get(0).instances().get(0).state();
-                if (state.name() == InstanceStateName.TERMINATED) {
-                    isTerminated = true;
-                } else {
-                    Thread.sleep(5000); // Attendre 5 secondes avant de vérifier à nouveau
-                }
-            } else {
-                isTerminated = true;
-            }
+            ec2Client.terminateInstances(request);
+        } catch (Exception e) {
+            failed("la suppression des instances " + ids, e);
         }
     }
 
-    private void deleteNatGateway(String natGatewayId) {
+    private void awaitInstanceTermination(ResourceWaiter instanceWaiter, String instanceId) {
+        if (instanceId == null) return;
+
+        try {
+            instanceWaiter.waitFor(instanceId);
+        } catch (Exception e) {
+            failed("la suppression de l'instance " + instanceId, e);
+        }
+    }
+
+    private void deleteNatGateway(ResourceWaiter natGatewayWaiter, String natGatewayId) {
         if (natGatewayId != null) {
             try {
                 DeleteNatGatewayRequest request = DeleteNatGatewayRequest.builder()
                         .natGatewayId(natGatewayId)
                         .build();
                 ec2Client.deleteNatGateway(request);
-                waitForNatGatewayDeletion(natGatewayId);
+                natGatewayWaiter.waitFor(natGatewayId);
             } catch (Exception e) {
-                System.err.println("Erreur lors de la suppression de la passerelle NAT: " + e.getMessage());
-            }
-        }
-    }
-
-    private void waitForNatGatewayDeletion(String natGatewayId) throws InterruptedException {
-        boolean isDeleted = false;
-        while (!isDeleted) {
-            DescribeNatGatewaysRequest request = DescribeNatGatewaysRequest.builder()
-                    .natGatewayIds(natGatewayId)
-                    .build();
-            DescribeNatGatewaysResponse response = ec2Client.describeNatGateways(request);
-
-            if (response.natGateways().isEmpty() ||
-                    response.natGateways().get(0).state() == NatGatewayState.DELETED) {
-                isDeleted = true;
-            } else {
-                Thread.sleep(5000); // Attendre 5 secondes avant de vérifier à nouveau
+                failed("la suppression de la passerelle NAT " + natGatewayId, e);
             }
         }
     }
@@ -269,7 +273,7 @@ public class DeleteVpc {
                     .build();
             ec2Client.releaseAddress(request);
         } catch (Exception e) {
-            System.err.println("Erreur lors de la libération de l'adresse IP Elastic: " + e.getMessage());
+            failed("la libération de l'adresse IP Elastic " + allocationId, e);
         }
     }
 
@@ -282,7 +286,7 @@ public class DeleteVpc {
                             .build();
                     ec2Client.deleteSubnet(request);
                 } catch (Exception e) {
-                    System.err.println("Erreur lors de la suppression du sous-réseau " + subnetId + ": " + e.getMessage());
+                    failed("la suppression du sous-réseau " + subnetId, e);
                 }
             }
         }
@@ -297,7 +301,7 @@ public class DeleteVpc {
                             .build();
                     ec2Client.deleteRouteTable(request);
                 } catch (Exception e) {
-                    System.err.println("Erreur lors de la suppression de la table de routage " + routeTableId + ": " + e.getMessage());
+                    failed("la suppression de la table de routage " + routeTableId, e);
                 }
             }
         }
@@ -309,14 +313,20 @@ public class DeleteVpc {
                     .internetGatewayId(internetGatewayId)
                     .vpcId(vpcId)
                     .build();
-            ec2Client.detachInternetGateway(detachRequest);
+            try {
+                ec2Client.detachInternetGateway(detachRequest);
+            } catch (AwsServiceException e) {
+                if (!isNotAttached(e)) {
+                    throw e;
+                }
+            }
 
             DeleteInternetGatewayRequest deleteRequest = DeleteInternetGatewayRequest.builder()
                     .internetGatewayId(internetGatewayId)
                     .build();
             ec2Client.deleteInternetGateway(deleteRequest);
         } catch (Exception e) {
-            System.err.println("Erreur lors de la suppression de la passerelle Internet: " + e.getMessage());
+            failed("la suppression de la passerelle Internet " + internetGatewayId, e);
         }
     }
 
@@ -327,7 +337,39 @@ public class DeleteVpc {
                     .build();
             ec2Client.deleteVpc(request);
         } catch (Exception e) {
-            System.err.println("Erreur lors de la suppression du VPC: " + e.getMessage());
+            failed("la suppression du VPC " + vpcId, e);
+        }
+    }
+
+    private void failed(String operation, Exception e) {
+        if (e instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        if (isAlreadyDeleted(e)) {
+            return;
         }
+        System.err.println("Erreur lors de " + operation + ": " + e.getMessage());
+        failures.add(operation);
+    }
+
+    // Ressource introuvable : supprimée par une exécution précédente, ce qu'une reprise rencontre
+    // normalement (InvalidVpcID.NotFound, NatGatewayNotFound, etc.)
+    static boolean isAlreadyDeleted(Throwable failure) {
+        String errorCode = errorCode(failure);
+        return errorCode != null && errorCode.endsWith("NotFound");
+    }
+
+    // Passerelle Internet déjà détachée par une exécution précédente
+    static boolean isNotAttached(Throwable failure) {
+        return "Gateway.NotAttached".equals(errorCode(failure));
+    }
+
+    private static String errorCode(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause()
+                : failure;
+        return cause instanceof AwsServiceException serviceException && serviceException.awsErrorDetails() != null
+                ? serviceException.awsErrorDetails().errorCode()
+                : null;
     }
 }
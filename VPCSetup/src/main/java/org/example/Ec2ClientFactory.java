@@ -0,0 +1,340 @@
+package org.example;
+
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.SystemPropertyCredentialsProvider;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.crt.AwsCrtHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ec2.Ec2Client;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fabrique partagée des Ec2Client synchrones : un seul client HTTP (pool de connexions,
+ * keep-alive) pour toutes les régions, un Ec2Client par région, tous créés au premier usage.
+ * Les environnements d'une même JVM réutilisent ainsi des connexions déjà établies (TCP et TLS)
+ * au lieu d'ouvrir chacun les leurs.
+ *
+ * Les clients retournés appartiennent à la fabrique : leur close() est sans effet, seul
+ * close() de la fabrique ferme les clients puis le client HTTP. La fabrique partagée (shared())
+ * est fermée à l'arrêt de la JVM ; elle se configure par propriétés système :
+ * <ul>
+ *     <li>vpcsetup.http.client : apache (défaut), url-connection ou crt, ces deux derniers
+ *     seulement si leur module est sur le classpath ;</li>
+ *     <li>vpcsetup.http.maxConnections : taille du pool (défaut 50).</li>
+ * </ul>
+ * La région est toujours explicite et le fournisseur d'identifiants choisi d'emblée
+ * (defaultCredentialsProvider()) : le SDK ne sonde ni la chaîne de régions ni celle des
+ * identifiants au démarrage, ce qui compte pour une CLI lancée des centaines de fois par jour.
+ */
+public class Ec2ClientFactory implements AutoCloseable {
+    // Seul APACHE est livré avec la CLI ; les autres transports sont des dépendances optionnelles
+    // (pom.xml), à ajouter au classpath pour les sélectionner
+    public enum Transport {
+        // Pool de connexions complet, keep-alive et purge des connexions inactives
+        APACHE("software.amazon.awssdk.http.apache.ApacheHttpClient", "apache-client"),
+        // HttpURLConnection du JDK : démarrage le plus léger, keep-alive géré par le JDK
+        // (propriété http.maxConnections), sans réglage du pool par le SDK
+        URL_CONNECTION("software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient", "url-connection-client"),
+        // Client natif AWS CRT : pool et TLS natifs
+        CRT("software.amazon.awssdk.http.crt.AwsCrtHttpClient", "aws-crt-client");
+
+        private final String clientClass;
+        private final String artifactId;
+
+        Transport(String clientClass, String artifactId) {
+            this.clientClass = clientClass;
+            this.artifactId = artifactId;
+        }
+
+        // Vrai si le module du transport est sur le classpath
+        public boolean isAvailable() {
+            try {
+                Class.forName(clientClass, false, Ec2ClientFactory.class.getClassLoader());
+                return true;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        }
+    }
+
+    private static volatile Ec2ClientFactory shared;
+
+    private final Transport transport;
+    private final int maxConnections;
+    private final Duration connectionTimeout;
+    private final Duration socketTimeout;
+    private final Duration connectionMaxIdleTime;
+    private final Duration keepAliveInterval;
+    private final URI endpointOverride;
+    private final AwsCredentialsProvider credentialsProvider;
+
+    private volatile SdkHttpClient httpClient;
+    private final Map<String, Ec2Client> sdkClients = new ConcurrentHashMap<>();
+    private final Map<String, Ec2Client> clients = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    private Ec2ClientFactory(Builder builder) {
+        // Vérifié dès la construction, plutôt qu'un NoClassDefFoundError au premier appel
+        if (!builder.transport.isAvailable()) {
+            throw new IllegalStateException("Transport HTTP " + builder.transport + " absent du classpath: ajouter "
+                    + "la dépendance software.amazon.awssdk:" + builder.transport.artifactId);
+        }
+        this.transport = builder.transport;
+        this.maxConnections = builder.maxConnections;
+        this.connectionTimeout = builder.connectionTimeout;
+        this.socketTimeout = builder.socketTimeout;
+        this.connectionMaxIdleTime = builder.connectionMaxIdleTime;
+        this.keepAliveInterval = builder.keepAliveInterval;
+        this.endpointOverride = builder.endpointOverride;
+        this.credentialsProvider = builder.credentialsProvider;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Fabrique de la JVM, créée au premier appel
+    public static Ec2ClientFactory shared() {
+        Ec2ClientFactory factory = shared;
+        if (factory == null) {
+            synchronized (Ec2ClientFactory.class) {
+                factory = shared;
+                if (factory == null) {
+                    factory = fromSystemProperties();
+                    Runtime.getRuntime().addShutdownHook(new Thread(factory::close, "ec2-client-factory-shutdown"));
+                    shared = factory;
+                }
+            }
+        }
+        return factory;
+    }
+
+    // Fournisseur désigné par l'environnement du processus. La chaîne par défaut du SDK n'est
+    // gardée qu'en dernier recours : elle essaie chaque source tour à tour, jusqu'au service de
+    // métadonnées de l'instance, dont l'attente coûte à elle seule plus que le démarrage
+    public static AwsCredentialsProvider defaultCredentialsProvider() {
+        if (System.getenv("AWS_ACCESS_KEY_ID") != null) {
+            return EnvironmentVariableCredentialsProvider.create();
+        }
+        if (System.getProperty("aws.accessKeyId") != null) {
+            return SystemPropertyCredentialsProvider.create();
+        }
+        if (System.getenv("AWS_PROFILE") != null
+                || Files.exists(Path.of(System.getProperty("user.home"), ".aws", "credentials"))) {
+            return ProfileCredentialsProvider.create();
+        }
+        return DefaultCredentialsProvider.create();
+    }
+
+    private static Ec2ClientFactory fromSystemProperties() {
+        Builder builder = builder();
+        String transport = System.getProperty("vpcsetup.http.client");
+        if (transport != null) {
+            builder.transport(Transport.valueOf(transport.trim().toUpperCase(Locale.ROOT).replace('-', '_')));
+        }
+        String maxConnections = System.getProperty("vpcsetup.http.maxConnections");
+        if (maxConnections != null) {
+            builder.maxConnections(Integer.parseInt(maxConnections.trim()));
+        }
+        return builder.build();
+    }
+
+    // Client SDK de la région, sans relances du SDK : les limitations doivent remonter jusqu'à
+    // RateLimitedEc2Client
+    public Ec2Client sdkClient(String region) {
+        checkOpen();
+        return sdkClients.computeIfAbsent(region, r -> unclosable(Ec2Client.builder()
+                .region(Region.of(r))
+                .httpClient(httpClient())
+                .credentialsProvider(credentialsProvider)
+                .applyMutation(b -> {
+                    if (endpointOverride != null) {
+                        b.endpointOverride(endpointOverride);
+                    }
+                })
+                .overrideConfiguration(c -> c.retryPolicy(RetryPolicy.none()))
+                .build()));
+    }
+
+    // Client limité de la région : un seul jeu de seaux à jetons par région, comme les quotas EC2
+    public Ec2Client client(String region) {
+        checkOpen();
+        return clients.computeIfAbsent(region, r -> RateLimitedEc2Client.wrap(sdkClient(r)));
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    // Ferme les clients régionaux puis le client HTTP ; la fabrique n'est plus utilisable
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Ec2Client client : sdkClients.values()) {
+            // Le client HTTP fourni au builder n'est pas fermé par le SDK
+            ((Unclosable) Proxy.getInvocationHandler(client)).delegate.close();
+        }
+        sdkClients.clear();
+        clients.clear();
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Fabrique de clients EC2 fermée");
+        }
+    }
+
+    private SdkHttpClient httpClient() {
+        SdkHttpClient client = httpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = httpClient;
+                if (client == null) {
+                    client = buildHttpClient();
+                    httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private SdkHttpClient buildHttpClient() {
+        return switch (transport) {
+            case APACHE -> ApacheHttpClient.builder()
+                    .maxConnections(maxConnections)
+                    .connectionTimeout(connectionTimeout)
+                    .socketTimeout(socketTimeout)
+                    .connectionMaxIdleTime(connectionMaxIdleTime)
+                    .useIdleConnectionReaper(true)
+                    .tcpKeepAlive(true)
+                    .build();
+            case URL_CONNECTION -> UrlConnectionHttpClient.builder()
+                    .connectionTimeout(connectionTimeout)
+                    .socketTimeout(socketTimeout)
+                    .build();
+            case CRT -> AwsCrtHttpClient.builder()
+                    .maxConcurrency(maxConnections)
+                    .connectionTimeout(connectionTimeout)
+                    .connectionMaxIdleTime(connectionMaxIdleTime)
+                    .tcpKeepAliveConfiguration(k -> k
+                            .keepAliveInterval(keepAliveInterval)
+                            .keepAliveTimeout(connectionTimeout))
+                    .build();
+        };
+    }
+
+    // Vue du client dont close() est sans effet : le client reste à la fabrique
+    private static Ec2Client unclosable(Ec2Client delegate) {
+        return (Ec2Client) Proxy.newProxyInstance(Ec2Client.class.getClassLoader(),
+                new Class<?>[]{Ec2Client.class},
+                new Unclosable(delegate));
+    }
+
+    private static final class Unclosable implements InvocationHandler {
+        final Ec2Client delegate;
+
+        Unclosable(Ec2Client delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("close") && method.getParameterCount() == 0) {
+                return null;
+            }
+            try {
+                return method.invoke(delegate, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    public static final class Builder {
+        private Transport transport = Transport.APACHE;
+        private int maxConnections = 50;
+        private Duration connectionTimeout = Duration.ofSeconds(2);
+        private Duration socketTimeout = Duration.ofSeconds(30);
+        private Duration connectionMaxIdleTime = Duration.ofSeconds(60);
+        private Duration keepAliveInterval = Duration.ofSeconds(30);
+        private URI endpointOverride;
+        private AwsCredentialsProvider credentialsProvider = defaultCredentialsProvider();
+
+        private Builder() {
+        }
+
+        public Builder transport(Transport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        // Connexions simultanées, toutes régions confondues (sans effet sur URL_CONNECTION)
+        public Builder maxConnections(int maxConnections) {
+            if (maxConnections < 1) {
+                throw new IllegalArgumentException("Nombre de connexions >= 1 attendu: " + maxConnections);
+            }
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public Builder connectionTimeout(Duration connectionTimeout) {
+            this.connectionTimeout = connectionTimeout;
+            return this;
+        }
+
+        public Builder socketTimeout(Duration socketTimeout) {
+            this.socketTimeout = socketTimeout;
+            return this;
+        }
+
+        // Au-delà, une connexion inactive est fermée plutôt que réutilisée
+        public Builder connectionMaxIdleTime(Duration connectionMaxIdleTime) {
+            this.connectionMaxIdleTime = connectionMaxIdleTime;
+            return this;
+        }
+
+        // Intervalle des sondes TCP keep-alive (CRT ; Apache suit le réglage de l'OS)
+        public Builder keepAliveInterval(Duration keepAliveInterval) {
+            this.keepAliveInterval = keepAliveInterval;
+            return this;
+        }
+
+        // Point d'accès local (bouchon HTTP, émulateur) à la place du point d'accès régional
+        public Builder endpointOverride(URI endpointOverride) {
+            this.endpointOverride = endpointOverride;
+            return this;
+        }
+
+        public Builder credentialsProvider(AwsCredentialsProvider credentialsProvider) {
+            this.credentialsProvider = credentialsProvider;
+            return this;
+        }
+
+        public Ec2ClientFactory build() {
+            return new Ec2ClientFactory(this);
+        }
+    }
+}
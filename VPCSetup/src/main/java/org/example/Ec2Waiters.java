@@ -0,0 +1,125 @@
+package org.example;
+
+import software.amazon.awssdk.services.ec2.Ec2AsyncClient;
+import software.amazon.awssdk.services.ec2.Ec2Client;
+import software.amazon.awssdk.services.ec2.model.*;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Attentes EC2 utilisées par CreationVpc et DeleteVpc, et par AsyncProvisioner sur le client
+ * asynchrone.
+ *
+ * Les sondes filtrent par identifiant plutôt que de nommer les ressources : une ressource
+ * inconnue n'échoue pas tout le lot, elle est simplement absente de la réponse.
+ */
+public final class Ec2Waiters {
+    // Première vérification immédiate, puis 1 s, 1,5 s, ... plafonné à 15 s
+    public static final Backoff DEFAULT_BACKOFF = new Backoff(Duration.ofSeconds(1), Duration.ofSeconds(15), 1.5, 0.3);
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(10);
+
+    private Ec2Waiters() {
+    }
+
+    public static ResourceWaiter natGatewayAvailable(Ec2Client ec2Client) {
+        return new ResourceWaiter("Passerelle NAT", ids -> natGatewayStates(ec2Client, ids),
+                Set.of("available"), Set.of("failed", "deleting", "deleted"),
+                DEFAULT_BACKOFF, DEFAULT_TIMEOUT);
+    }
+
+    // Une passerelle qui n'est plus listée est considérée comme supprimée
+    public static ResourceWaiter natGatewayDeleted(Ec2Client ec2Client) {
+        return new ResourceWaiter("Passerelle NAT", ids -> withDefault(natGatewayStates(ec2Client, ids), ids, "deleted"),
+                Set.of("deleted"), Set.of(),
+                DEFAULT_BACKOFF, DEFAULT_TIMEOUT);
+    }
+
+    public static ResourceWaiter instanceTerminated(Ec2Client ec2Client) {
+        return new ResourceWaiter("Instance", ids -> withDefault(instanceStates(ec2Client, ids), ids, "terminated"),
+                Set.of("terminated"), Set.of(),
+                DEFAULT_BACKOFF, DEFAULT_TIMEOUT);
+    }
+
+    // Variantes sur le client asynchrone : seul le thread du poller attend les réponses
+    public static ResourceWaiter natGatewayAvailable(Ec2AsyncClient ec2Client) {
+        return new ResourceWaiter("Passerelle NAT", ids -> natGatewayStates(ec2Client, ids),
+                Set.of("available"), Set.of("failed", "deleting", "deleted"),
+                DEFAULT_BACKOFF, DEFAULT_TIMEOUT);
+    }
+
+    public static ResourceWaiter natGatewayDeleted(Ec2AsyncClient ec2Client) {
+        return new ResourceWaiter("Passerelle NAT", ids -> withDefault(natGatewayStates(ec2Client, ids), ids, "deleted"),
+                Set.of("deleted"), Set.of(),
+                DEFAULT_BACKOFF, DEFAULT_TIMEOUT);
+    }
+
+    public static ResourceWaiter instanceTerminated(Ec2AsyncClient ec2Client) {
+        return new ResourceWaiter("Instance", ids -> withDefault(instanceStates(ec2Client, ids), ids, "terminated"),
+                Set.of("terminated"), Set.of(),
+                DEFAULT_BACKOFF, DEFAULT_TIMEOUT);
+    }
+
+    private static Map<String, String> natGatewayStates(Ec2Client ec2Client, Collection<String> ids) {
+        DescribeNatGatewaysRequest request = DescribeNatGatewaysRequest.builder()
+                .filter(Filter.builder().name("nat-gateway-id").values(ids).build())
+                .build();
+
+        Map<String, String> states = new HashMap<>();
+        for (NatGateway natGateway : ec2Client.describeNatGatewaysPaginator(request).natGateways()) {
+            states.put(natGateway.natGatewayId(), natGateway.stateAsString());
+        }
+        return states;
+    }
+
+    private static Map<String, String> instanceStates(Ec2Client ec2Client, Collection<String> ids) {
+        DescribeInstancesRequest request = DescribeInstancesRequest.builder()
+                .filters(Filter.builder().name("instance-id").values(ids).build())
+                .build();
+
+        Map<String, String> states = new HashMap<>();
+        for (Reservation reservation : ec2Client.describeInstancesPaginator(request).reservations()) {
+            for (Instance instance : reservation.instances()) {
+                states.put(instance.instanceId(), instance.state().nameAsString());
+            }
+        }
+        return states;
+    }
+
+    private static Map<String, String> natGatewayStates(Ec2AsyncClient ec2Client, Collection<String> ids) {
+        DescribeNatGatewaysRequest request = DescribeNatGatewaysRequest.builder()
+                .filter(Filter.builder().name("nat-gateway-id").values(ids).build())
+                .build();
+
+        Map<String, String> states = new HashMap<>();
+        ec2Client.describeNatGatewaysPaginator(request)
+                .natGateways()
+                .subscribe(natGateway -> states.put(natGateway.natGatewayId(), natGateway.stateAsString()))
+                .join();
+        return states;
+    }
+
+    private static Map<String, String> instanceStates(Ec2AsyncClient ec2Client, Collection<String> ids) {
+        DescribeInstancesRequest request = DescribeInstancesRequest.builder()
+                .filters(Filter.builder().name("instance-id").values(ids).build())
+                .build();
+
+        Map<String, String> states = new HashMap<>();
+        ec2Client.describeInstancesPaginator(request)
+                .reservations()
+                .subscribe(reservation -> reservation.instances().forEach(instance ->
+                        states.put(instance.instanceId(), instance.state().nameAsString())))
+                .join();
+        return states;
+    }
+
+    private static Map<String, String> withDefault(Map<String, String> states, Collection<String> ids, String absentState) {
+        for (String id : ids) {
+            states.putIfAbsent(id, absentState);
+        }
+        return states;
+    }
+}
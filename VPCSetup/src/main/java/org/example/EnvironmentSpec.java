@@ -0,0 +1,111 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Description d'un environnement VPC : région, plages d'adresses du VPC et de ses deux
+ * sous-réseaux, AMI et paire de clés des instances.
+ *
+ * Une flotte se décrit dans un fichier texte, un environnement par ligne :
+ * <pre>
+ * # nom région cidrVpc cidrDmz cidrLan ami clé
+ * ci-01 us-east-1 10.1.0.0/16 10.1.1.0/24 10.1.2.0/24 ami-012967cc5a8c9f891 key2
+ * </pre>
+ */
+public class EnvironmentSpec {
+    private final String name;
+    private final String region;
+    private final String vpcCidr;
+    private final String dmzCidr;
+    private final String lanCidr;
+    private final String amiId;
+    private final String keyName;
+
+    public EnvironmentSpec(String name, String region, String vpcCidr, String dmzCidr, String lanCidr,
+                           String amiId, String keyName) {
+        this.name = name;
+        this.region = region;
+        this.vpcCidr = vpcCidr;
+        this.dmzCidr = dmzCidr;
+        this.lanCidr = lanCidr;
+        this.amiId = amiId;
+        this.keyName = keyName;
+    }
+
+    // L'environnement historique, unique, de CreationVpc et DeleteVpc
+    public static EnvironmentSpec defaults() {
+        return new EnvironmentSpec("default", "us-east-1",
+                "192.168.0.0/16", "192.168.1.0/24", "192.168.2.0/24",
+                "ami-012967cc5a8c9f891", "key2");
+    }
+
+    // Bacs à sable numérotés 1..count, chacun dans son propre 10.i.0.0/16
+    public static List<EnvironmentSpec> sandboxes(String prefix, int count, String region, String amiId, String keyName) {
+        if (count < 1 || count > 255) {
+            throw new IllegalArgumentException("Entre 1 et 255 bacs à sable par région: " + count);
+        }
+        List<EnvironmentSpec> specs = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            specs.add(new EnvironmentSpec(String.format("%s-%02d", prefix, i), region,
+                    "10." + i + ".0.0/16", "10." + i + ".1.0/24", "10." + i + ".2.0/24",
+                    amiId, keyName));
+        }
+        return specs;
+    }
+
+    public static List<EnvironmentSpec> fromFile(Path file) throws IOException {
+        List<EnvironmentSpec> specs = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split("\\s+");
+                if (fields.length != 7) {
+                    throw new IOException(file + ":" + lineNumber + ": ligne invalide : " + line);
+                }
+                specs.add(new EnvironmentSpec(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5], fields[6]));
+            }
+        }
+        return specs;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public String getVpcCidr() {
+        return vpcCidr;
+    }
+
+    public String getDmzCidr() {
+        return dmzCidr;
+    }
+
+    public String getLanCidr() {
+        return lanCidr;
+    }
+
+    public String getAmiId() {
+        return amiId;
+    }
+
+    public String getKeyName() {
+        return keyName;
+    }
+}
@@ -0,0 +1,60 @@
+package org.example;
+
+import software.amazon.awssdk.services.ec2.model.Filter;
+import software.amazon.awssdk.services.ec2.model.ResourceType;
+import software.amazon.awssdk.services.ec2.model.Tag;
+import software.amazon.awssdk.services.ec2.model.TagSpecification;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Tags posés par CreationVpc sur chaque ressource à sa création : l'environnement propriétaire
+ * et l'instant de création. GarbageCollector s'en sert pour retrouver les ressources orphelines
+ * sans dépendre des CIDR.
+ */
+public final class EnvironmentTags {
+    public static final String ENVIRONMENT = "vpcsetup:environment";
+    public static final String CREATED_AT = "vpcsetup:created-at";
+
+    private EnvironmentTags() {
+    }
+
+    // Posés dans la requête de création : pas de fenêtre où la ressource existe sans tag
+    public static TagSpecification of(ResourceType resourceType, String environment, Instant createdAt) {
+        return TagSpecification.builder()
+                .resourceType(resourceType)
+                .tags(Tag.builder().key(ENVIRONMENT).value(environment).build(),
+                        Tag.builder().key(CREATED_AT).value(createdAt.toString()).build())
+                .build();
+    }
+
+    // Filtre Describe* sur toutes les ressources portant un environnement
+    public static Filter managedFilter() {
+        return Filter.builder().name("tag-key").values(ENVIRONMENT).build();
+    }
+
+    public static String environmentOf(List<Tag> tags) {
+        return valueOf(tags, ENVIRONMENT);
+    }
+
+    // null si le tag est absent ou illisible
+    public static Instant createdAtOf(List<Tag> tags) {
+        String value = valueOf(tags, CREATED_AT);
+        try {
+            return value == null ? null : Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String valueOf(List<Tag> tags, String key) {
+        for (Tag tag : tags) {
+            if (key.equals(tag.key())) {
+                return tag.value();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,92 @@
+package org.example;
+
+import software.amazon.awssdk.services.ec2.Ec2Client;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Création ou suppression d'une flotte d'environnements VPC en parallèle.
+ *
+ * Au plus 'parallelism' environnements sont traités à la fois. Les environnements d'une même
+ * région partagent un seul Ec2Client, limité par les seaux à jetons de la région : les quotas EC2
+ * sont par compte et par région, quel que soit le nombre d'environnements en vol.
+ */
+public class Fleet implements AutoCloseable {
+    private final int parallelism;
+    private final Function<String, Ec2Client> clientFactory;
+    private final Map<String, Ec2Client> clients = new ConcurrentHashMap<>();
+
+    public Fleet(int parallelism) {
+        this(parallelism, RateLimitedEc2Client::sdkClient);
+    }
+
+    // Fabrique de clients bruts fournie par l'appelant (bouchon local, benchmarks), limités ici
+    public Fleet(int parallelism, Function<String, Ec2Client> clientFactory) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallélisme >= 1 attendu: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.clientFactory = clientFactory;
+    }
+
+    // Résultat par nom d'environnement, dans l'ordre des specs
+    public Map<String, Boolean> provision(List<EnvironmentSpec> specs) throws InterruptedException {
+        return forEach(specs, spec -> new CreationVpc(clientFor(spec.getRegion()), spec).setupInfrastructure());
+    }
+
+    public Map<String, Boolean> teardown(List<EnvironmentSpec> specs) throws InterruptedException {
+        return forEach(specs, spec -> new DeleteVpc(clientFor(spec.getRegion()), spec).cleanup());
+    }
+
+    // Compteurs par action de chaque client régional
+    public Map<String, Map<String, ActionStats>> getStats() {
+        Map<String, Map<String, ActionStats>> stats = new TreeMap<>();
+        clients.forEach((region, client) -> stats.put(region, RateLimitedEc2Client.statsOf(client)));
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        for (Ec2Client client : clients.values()) {
+            client.close();
+        }
+        clients.clear();
+    }
+
+    private Ec2Client clientFor(String region) {
+        return clients.computeIfAbsent(region, r -> RateLimitedEc2Client.wrap(clientFactory.apply(r)));
+    }
+
+    private Map<String, Boolean> forEach(List<EnvironmentSpec> specs, Function<EnvironmentSpec, Boolean> action)
+            throws InterruptedException {
+        Set<String> names = new HashSet<>();
+        for (EnvironmentSpec spec : specs) {
+            if (!names.add(spec.getName())) {
+                throw new IllegalArgumentException("Environnement en double: " + spec.getName());
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, specs.size())));
+        try {
+            Map<String, Future<Boolean>> futures = new LinkedHashMap<>();
+            for (EnvironmentSpec spec : specs) {
+                futures.put(spec.getName(), executor.submit(() -> action.apply(spec)));
+            }
+
+            Map<String, Boolean> results = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<Boolean>> entry : futures.entrySet()) {
+                try {
+                    results.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    System.err.println("Erreur sur l'environnement " + entry.getKey() + ": " + e.getCause().getMessage());
+                    results.put(entry.getKey(), false);
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
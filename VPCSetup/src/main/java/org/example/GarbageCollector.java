@@ -0,0 +1,376 @@
+package org.example;
+
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.ec2.Ec2Client;
+import software.amazon.awssdk.services.ec2.model.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Ramasse-miettes des environnements orphelins d'une région : ressources portant le tag
+ * d'environnement de CreationVpc (EnvironmentTags) mais appartenant à un environnement qui
+ * n'est plus attendu, typiquement les restes d'exécutions en échec.
+ *
+ * La découverte est faite en une passe : un Describe paginé par type de ressource, filtré sur
+ * la présence du tag et lancé en parallèle, puis regroupement par environnement. Contrairement à
+ * DeleteVpc, chaque environnement peut avoir un nombre quelconque d'instances, de passerelles NAT
+ * et d'adresses IP Elastic, y compris des adresses restées seules après la perte de leur VPC.
+ *
+ * Les environnements orphelins sont supprimés en parallèle, chacun selon son graphe de
+ * dépendances. Comme dans DeleteVpc, une étape en erreur est affichée et la suite est tentée ;
+ * l'environnement est alors signalé en échec et son journal conservé.
+ */
+public class GarbageCollector {
+    public static final Duration DEFAULT_GRACE_PERIOD = Duration.ofHours(1);
+
+    private static final int DISCOVERY_THREADS = 8;
+    private static final int STEP_THREADS = 16;
+
+    /**
+     * Ressources d'un environnement trouvées dans la région.
+     */
+    public static final class Leftovers {
+        private final String environment;
+        private Instant createdAt;
+        private final List<String> vpcs = new ArrayList<>();
+        private final List<String> subnets = new ArrayList<>();
+        private final List<String> instances = new ArrayList<>();
+        private final List<String> natGateways = new ArrayList<>();
+        private final List<String> addresses = new ArrayList<>();
+        // Passerelle Internet -> VPC auxquels elle est attachée
+        private final Map<String, List<String>> internetGateways = new LinkedHashMap<>();
+        private final List<String> routeTables = new ArrayList<>();
+
+        Leftovers(String environment) {
+            this.environment = environment;
+        }
+
+        public String getEnvironment() {
+            return environment;
+        }
+
+        // Création la plus ancienne des ressources trouvées, null si aucune n'est datée
+        public Instant getCreatedAt() {
+            return createdAt;
+        }
+
+        @Override
+        public String toString() {
+            return environment + ": " + vpcs.size() + " VPC, " + subnets.size() + " sous-réseau(x), "
+                    + instances.size() + " instance(s), " + natGateways.size() + " passerelle(s) NAT, "
+                    + addresses.size() + " IP Elastic, " + internetGateways.size() + " passerelle(s) Internet, "
+                    + routeTables.size() + " table(s) de routage";
+        }
+
+        private void seen(List<Tag> tags) {
+            Instant instant = EnvironmentTags.createdAtOf(tags);
+            if (instant != null && (createdAt == null || instant.isBefore(createdAt))) {
+                createdAt = instant;
+            }
+        }
+    }
+
+    private final Ec2Client ec2Client;
+    private final Set<String> liveEnvironments;
+    private final Duration gracePeriod;
+    private final boolean includeUndated;
+
+    // Les environnements attendus sont conservés ; les autres ne sont supprimés qu'après le délai
+    // de grâce, pour ne pas emporter un environnement en cours de création par un autre processus
+    public GarbageCollector(Ec2Client ec2Client, Set<String> liveEnvironments, Duration gracePeriod) {
+        this(ec2Client, liveEnvironments, gracePeriod, false);
+    }
+
+    // Sans date de création, l'âge d'un environnement est inconnu : il n'est supprimé que sur demande explicite
+    public GarbageCollector(Ec2Client ec2Client, Set<String> liveEnvironments, Duration gracePeriod,
+                            boolean includeUndated) {
+        this.ec2Client = ec2Client;
+        this.liveEnvironments = Set.copyOf(liveEnvironments);
+        this.gracePeriod = gracePeriod;
+        this.includeUndated = includeUndated;
+    }
+
+    // Environnements orphelins, triés par nom
+    public List<Leftovers> findOrphans() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(DISCOVERY_THREADS);
+        try {
+            Instant cutoff = Instant.now().minus(gracePeriod);
+            List<Leftovers> orphans = new ArrayList<>();
+            for (Leftovers leftovers : discover(executor).values()) {
+                if (liveEnvironments.contains(leftovers.environment)) {
+                    continue;
+                }
+                if (leftovers.createdAt == null && !includeUndated) {
+                    System.out.println("Environnement " + leftovers.environment
+                            + " sans date de création: conservé, âge inconnu");
+                } else if (leftovers.createdAt == null || leftovers.createdAt.isBefore(cutoff)) {
+                    orphans.add(leftovers);
+                }
+            }
+            return orphans;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Supprime les environnements donnés, au plus 'parallelism' à la fois ; résultat par environnement
+    public Map<String, Boolean> sweep(List<Leftovers> orphans, int parallelism) throws InterruptedException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallélisme >= 1 attendu: " + parallelism);
+        }
+        ExecutorService environments = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, orphans.size())));
+        ExecutorService steps = Executors.newFixedThreadPool(STEP_THREADS);
+        // Un seul poller par type de ressource pour tous les environnements
+        ResourceWaiter instanceWaiter = Ec2Waiters.instanceTerminated(ec2Client);
+        ResourceWaiter natGatewayWaiter = Ec2Waiters.natGatewayDeleted(ec2Client);
+        try {
+            Map<String, Future<Boolean>> futures = new LinkedHashMap<>();
+            for (Leftovers leftovers : orphans) {
+                futures.put(leftovers.environment, environments.submit(() ->
+                        delete(leftovers, steps, instanceWaiter, natGatewayWaiter)));
+            }
+
+            Map<String, Boolean> results = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<Boolean>> entry : futures.entrySet()) {
+                try {
+                    results.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    System.err.println("Erreur sur l'environnement " + entry.getKey() + ": " + e.getCause().getMessage());
+                    results.put(entry.getKey(), false);
+                }
+            }
+            return results;
+        } finally {
+            environments.shutdownNow();
+            steps.shutdown();
+            instanceWaiter.close();
+            natGatewayWaiter.close();
+        }
+    }
+
+    private Map<String, Leftovers> discover(Executor executor) throws Exception {
+        Filter managed = EnvironmentTags.managedFilter();
+
+        CompletableFuture<List<Vpc>> vpcs = CompletableFuture.supplyAsync(() ->
+                ec2Client.describeVpcsPaginator(DescribeVpcsRequest.builder()
+                        .filters(managed)
+                        .build()).vpcs().stream().toList(), executor);
+
+        CompletableFuture<List<Subnet>> subnets = CompletableFuture.supplyAsync(() ->
+                ec2Client.describeSubnetsPaginator(DescribeSubnetsRequest.builder()
+                        .filters(managed)
+                        .build()).subnets().stream().toList(), executor);
+
+        CompletableFuture<List<Instance>> instances = CompletableFuture.supplyAsync(() ->
+                ec2Client.describeInstancesPaginator(DescribeInstancesRequest.builder()
+                        .filters(managed, Filter.builder()
+                                .name("instance-state-name")
+                                .values("pending", "running", "stopping", "stopped")
+                                .build())
+                        .build()).reservations().stream()
+                        .flatMap(reservation -> reservation.instances().stream())
+                        .toList(), executor);
+
+        CompletableFuture<List<NatGateway>> natGateways = CompletableFuture.supplyAsync(() ->
+                ec2Client.describeNatGatewaysPaginator(DescribeNatGatewaysRequest.builder()
+                        .filter(managed, Filter.builder()
+                                .name("state")
+                                .values("pending", "available", "failed")
+                                .build())
+                        .build()).natGateways().stream().toList(), executor);
+
+        // DescribeAddresses n'est pas paginé : toutes les adresses de la région en une réponse
+        CompletableFuture<List<Address>> addresses = CompletableFuture.supplyAsync(() ->
+                ec2Client.describeAddresses(DescribeAddressesRequest.builder()
+                        .filters(managed)
+                        .build()).addresses(), executor);
+
+        CompletableFuture<List<InternetGateway>> internetGateways = CompletableFuture.supplyAsync(() ->
+                ec2Client.describeInternetGatewaysPaginator(DescribeInternetGatewaysRequest.builder()
+                        .filters(managed)
+                        .build()).internetGateways().stream().toList(), executor);
+
+        CompletableFuture<List<RouteTable>> routeTables = CompletableFuture.supplyAsync(() ->
+                ec2Client.describeRouteTablesPaginator(DescribeRouteTablesRequest.builder()
+                        .filters(managed)
+                        .build()).routeTables().stream().toList(), executor);
+
+        try {
+            CompletableFuture.allOf(vpcs, subnets, instances, natGateways, addresses, internetGateways, routeTables).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+
+        Map<String, Leftovers> byEnvironment = new TreeMap<>();
+        for (Vpc vpc : vpcs.join()) {
+            group(byEnvironment, vpc.tags()).vpcs.add(vpc.vpcId());
+        }
+        for (Subnet subnet : subnets.join()) {
+            group(byEnvironment, subnet.tags()).subnets.add(subnet.subnetId());
+        }
+        for (Instance instance : instances.join()) {
+            group(byEnvironment, instance.tags()).instances.add(instance.instanceId());
+        }
+        for (NatGateway natGateway : natGateways.join()) {
+            group(byEnvironment, natGateway.tags()).natGateways.add(natGateway.natGatewayId());
+        }
+        for (Address address : addresses.join()) {
+            group(byEnvironment, address.tags()).addresses.add(address.allocationId());
+        }
+        for (InternetGateway internetGateway : internetGateways.join()) {
+            group(byEnvironment, internetGateway.tags()).internetGateways.put(internetGateway.internetGatewayId(),
+                    internetGateway.attachments().stream().map(InternetGatewayAttachment::vpcId).toList());
+        }
+        for (RouteTable routeTable : routeTables.join()) {
+            // La table principale disparaît avec son VPC
+            if (routeTable.associations().stream().noneMatch(a -> Boolean.TRUE.equals(a.main()))) {
+                group(byEnvironment, routeTable.tags()).routeTables.add(routeTable.routeTableId());
+            }
+        }
+        return byEnvironment;
+    }
+
+    private static Leftovers group(Map<String, Leftovers> byEnvironment, List<Tag> tags) {
+        String environment = EnvironmentTags.environmentOf(tags);
+        if (environment == null) {
+            // Ressource sans tag (filtre non appliqué par le point d'accès) : comptée nulle part
+            return new Leftovers(null);
+        }
+        Leftovers leftovers = byEnvironment.computeIfAbsent(environment, Leftovers::new);
+        leftovers.seen(tags);
+        return leftovers;
+    }
+
+    private boolean delete(Leftovers leftovers, Executor executor,
+                           ResourceWaiter instanceWaiter, ResourceWaiter natGatewayWaiter) throws Exception {
+        System.out.println("Suppression de l'environnement orphelin " + leftovers);
+        // Opérations en échec, de toutes les étapes
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+        new ProvisioningGraph()
+                .step("instances", r -> {
+                    terminateInstances(leftovers.instances, instanceWaiter, failures);
+                    return null;
+                })
+                .step("natGateways", r -> {
+                    deleteNatGateways(leftovers.natGateways, natGatewayWaiter, failures);
+                    return null;
+                })
+                // Une adresse reste associée tant que sa passerelle NAT ou son instance existe
+                .step("addresses", r -> {
+                    for (String allocationId : leftovers.addresses) {
+                        attempt(failures, "la libération de l'adresse IP Elastic " + allocationId,
+                                () -> ec2Client.releaseAddress(b -> b.allocationId(allocationId)));
+                    }
+                    return null;
+                }, "instances", "natGateways")
+                .step("subnets", r -> {
+                    for (String subnetId : leftovers.subnets) {
+                        attempt(failures, "la suppression du sous-réseau " + subnetId,
+                                () -> ec2Client.deleteSubnet(b -> b.subnetId(subnetId)));
+                    }
+                    return null;
+                }, "instances", "natGateways")
+                // Les associations disparaissent avec les sous-réseaux
+                .step("routeTables", r -> {
+                    for (String routeTableId : leftovers.routeTables) {
+                        attempt(failures, "la suppression de la table de routage " + routeTableId,
+                                () -> ec2Client.deleteRouteTable(b -> b.routeTableId(routeTableId)));
+                    }
+                    return null;
+                }, "subnets")
+                // Le détachement exige qu'aucune adresse publique ne subsiste dans le VPC
+                .step("internetGateways", r -> {
+                    leftovers.internetGateways.forEach((igwId, vpcIds) -> {
+                        for (String vpcId : vpcIds) {
+                            attempt(failures, "le détachement de la passerelle Internet " + igwId, () -> {
+                                try {
+                                    ec2Client.detachInternetGateway(b -> b.internetGatewayId(igwId).vpcId(vpcId));
+                                } catch (AwsServiceException e) {
+                                    if (!DeleteVpc.isNotAttached(e)) {
+                                        throw e;
+                                    }
+                                }
+                            });
+                        }
+                        attempt(failures, "la suppression de la passerelle Internet " + igwId,
+                                () -> ec2Client.deleteInternetGateway(b -> b.internetGatewayId(igwId)));
+                    });
+                    return null;
+                }, "instances", "addresses")
+                .step("vpcs", r -> {
+                    for (String vpcId : leftovers.vpcs) {
+                        attempt(failures, "la suppression du VPC " + vpcId, () -> ec2Client.deleteVpc(b -> b.vpcId(vpcId)));
+                    }
+                    return null;
+                }, "subnets", "routeTables", "internetGateways")
+                .execute(executor);
+
+        if (!failures.isEmpty()) {
+            System.err.println("Suppression incomplète de l'environnement " + leftovers.environment
+                    + " (" + failures.size() + " échec(s)): journal conservé");
+            return false;
+        }
+        // Un journal de création restant ferait reprendre une création sur des ressources supprimées
+        StateJournal.forEnvironment(leftovers.environment).delete();
+        System.out.println("Environnement orphelin " + leftovers.environment + " supprimé");
+        return true;
+    }
+
+    private void terminateInstances(List<String> instanceIds, ResourceWaiter instanceWaiter,
+                                    Queue<String> failures) throws InterruptedException {
+        if (instanceIds.isEmpty()) {
+            return;
+        }
+        if (attempt(failures, "la suppression des instances " + instanceIds,
+                () -> ec2Client.terminateInstances(b -> b.instanceIds(instanceIds)))) {
+            awaitAll("la suppression de l'instance", instanceIds, instanceWaiter, failures);
+        }
+    }
+
+    private void deleteNatGateways(List<String> natGatewayIds, ResourceWaiter natGatewayWaiter,
+                                   Queue<String> failures) throws InterruptedException {
+        List<String> deleting = new ArrayList<>();
+        for (String natGatewayId : natGatewayIds) {
+            if (attempt(failures, "la suppression de la passerelle NAT " + natGatewayId,
+                    () -> ec2Client.deleteNatGateway(b -> b.natGatewayId(natGatewayId)))) {
+                deleting.add(natGatewayId);
+            }
+        }
+        awaitAll("la suppression de la passerelle NAT", deleting, natGatewayWaiter, failures);
+    }
+
+    // Les ressources d'un même lot sont attendues ensemble, par le même poller
+    private static void awaitAll(String operation, List<String> ids, ResourceWaiter waiter,
+                                 Queue<String> failures) throws InterruptedException {
+        Map<String, CompletableFuture<String>> pending = new LinkedHashMap<>();
+        for (String id : ids) {
+            pending.put(id, waiter.await(id));
+        }
+        for (Map.Entry<String, CompletableFuture<String>> entry : pending.entrySet()) {
+            try {
+                entry.getValue().get();
+            } catch (ExecutionException e) {
+                System.err.println("Erreur lors de " + operation + " " + entry.getKey() + ": " + e.getCause().getMessage());
+                failures.add(operation + " " + entry.getKey());
+            }
+        }
+    }
+
+    // Vrai si l'appel a abouti ; une ressource déjà supprimée n'est pas relevée comme un échec
+    private static boolean attempt(Queue<String> failures, String operation, Runnable call) {
+        try {
+            call.run();
+            return true;
+        } catch (Exception e) {
+            if (!DeleteVpc.isAlreadyDeleted(e)) {
+                System.err.println("Erreur lors de " + operation + ": " + e.getMessage());
+                failures.add(operation);
+            }
+            return false;
+        }
+    }
+}
@@ -1,10 +1,141 @@
 package org.example;
 
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.ec2.Ec2Client;
+
+import java.net.URI;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 public class Main {
-    public static void main(String[] args) {
-//        CreationVpc creationVpc = new CreationVpc();
-//        creationVpc.setupInfrastructure();
-        DeleteVpc deleteVpc = new DeleteVpc();
-        deleteVpc.cleanup();
+    private static final int FLEET_PARALLELISM = 10;
+
+    // Sans argument : suppression de l'environnement par défaut, comme auparavant.
+    //   create | delete
+    //   fleet-create <fichier> | fleet-delete <fichier>   (voir EnvironmentSpec pour le format)
+    //   fleet-create-async <fichier> | fleet-delete-async <fichier>   (AsyncProvisioner, tous en vol)
+    //   plan [fichier] | apply [fichier]                   (voir VpcSpec ; topologie standard par défaut)
+    //   gc [fichier] | gc-sweep [fichier]                  (environnements orphelins, hors fichier de flotte)
+    //     --include-undated                                (y compris ceux sans date de création)
+    //   warmup                                             (exécution d'entraînement AppCDS / native-image)
+    public static void main(String[] args) throws Exception {
+        String command = args.length > 0 ? args[0] : "delete";
+        switch (command) {
+            case "create" -> new CreationVpc().setupInfrastructure();
+            case "delete" -> new DeleteVpc().cleanup();
+            case "fleet-create", "fleet-delete" -> {
+                if (args.length < 2) {
+                    throw new IllegalArgumentException("Fichier de flotte attendu: " + command + " <fichier>");
+                }
+                List<EnvironmentSpec> specs = EnvironmentSpec.fromFile(Path.of(args[1]));
+                try (Fleet fleet = new Fleet(FLEET_PARALLELISM)) {
+                    Map<String, Boolean> results = command.equals("fleet-create")
+                            ? fleet.provision(specs)
+                            : fleet.teardown(specs);
+                    results.forEach((name, ok) -> System.out.println(name + ": " + (ok ? "OK" : "ÉCHEC")));
+
+                    // Compteurs par action, pour le dimensionnement des quotas
+                    fleet.getStats().forEach((region, actions) -> actions.forEach((action, stats) ->
+                            System.out.println(region + " " + action + " " + stats)));
+                    // Durées et appels par étape, cumulés sur la flotte
+                    System.out.print(MetricsRegistry.global());
+                }
+            }
+            case "fleet-create-async", "fleet-delete-async" -> {
+                if (args.length < 2) {
+                    throw new IllegalArgumentException("Fichier de flotte attendu: " + command + " <fichier>");
+                }
+                List<EnvironmentSpec> specs = EnvironmentSpec.fromFile(Path.of(args[1]));
+                try (AsyncProvisioner provisioner = new AsyncProvisioner()) {
+                    Map<String, CompletableFuture<Map<String, String>>> results = new LinkedHashMap<>();
+                    for (EnvironmentSpec spec : specs) {
+                        AsyncProvisioningGraph.Execution execution = command.equals("fleet-create-async")
+                                ? provisioner.provision(spec)
+                                : provisioner.teardown(spec);
+                        results.put(spec.getName(), execution.getResult());
+                    }
+                    results.forEach((name, result) -> {
+                        try {
+                            result.join();
+                            System.out.println(name + ": OK");
+                        } catch (CompletionException e) {
+                            System.out.println(name + ": ÉCHEC (" + e.getCause().getMessage() + ")");
+                        }
+                    });
+                }
+            }
+            case "plan", "apply" -> {
+                VpcSpec spec = args.length > 1
+                        ? VpcSpec.fromFile(Path.of(args[1]))
+                        : VpcSpec.standard(EnvironmentSpec.defaults());
+                ExecutorService executor = Executors.newFixedThreadPool(FLEET_PARALLELISM);
+                try (VpcReconciler reconciler = new VpcReconciler(RateLimitedEc2Client.create(spec.getRegion()), spec)) {
+                    VpcReconciler.Plan plan = reconciler.plan(executor);
+                    System.out.print(plan);
+                    if (command.equals("apply") && !plan.isEmpty()) {
+                        reconciler.apply(plan, executor);
+                        System.out.println(plan.getChanges().size() + " changement(s) appliqué(s)");
+                    }
+                } finally {
+                    executor.shutdown();
+                }
+            }
+            case "gc", "gc-sweep" -> {
+                List<String> options = new ArrayList<>(Arrays.asList(args).subList(1, args.length));
+                boolean includeUndated = options.remove("--include-undated");
+                // Les environnements du fichier de flotte sont conservés, dans chacune de leurs régions
+                List<EnvironmentSpec> specs = !options.isEmpty()
+                        ? EnvironmentSpec.fromFile(Path.of(options.get(0)))
+                        : List.of(EnvironmentSpec.defaults());
+                Set<String> live = new HashSet<>();
+                Set<String> regions = new TreeSet<>();
+                for (EnvironmentSpec spec : specs) {
+                    live.add(spec.getName());
+                    regions.add(spec.getRegion());
+                }
+                for (String region : regions) {
+                    try (Ec2Client ec2Client = RateLimitedEc2Client.create(region)) {
+                        GarbageCollector collector = new GarbageCollector(ec2Client, live,
+                                GarbageCollector.DEFAULT_GRACE_PERIOD, includeUndated);
+                        List<GarbageCollector.Leftovers> orphans = collector.findOrphans();
+                        orphans.forEach(orphan -> System.out.println(region + " " + orphan));
+                        if (command.equals("gc-sweep")) {
+                            collector.sweep(orphans, FLEET_PARALLELISM).forEach((name, ok) ->
+                                    System.out.println(region + " " + name + ": " + (ok ? "supprimé" : "ÉCHEC")));
+                        }
+                    }
+                }
+            }
+            case "warmup" -> {
+                // Parcourt tout le chemin d'un appel (client HTTP, signature, sérialisation, erreur)
+                // contre un port local fermé, sans AWS : les classes chargées ici sont celles
+                // qu'archivent les profils appcds et native de pom.xml
+                try (Ec2ClientFactory factory = Ec2ClientFactory.builder()
+                        .endpointOverride(URI.create("http://127.0.0.1:9"))
+                        .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("warmup", "warmup")))
+                        .connectionTimeout(Duration.ofMillis(200))
+                        .build()) {
+                    factory.sdkClient(EnvironmentSpec.defaults().getRegion()).describeVpcs();
+                } catch (SdkClientException e) {
+                    // Attendu : aucun service n'écoute
+                }
+            }
+            default -> throw new IllegalArgumentException("Commande inconnue: " + command);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,109 @@
+package org.example;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registre de métriques à la Micrometer : compteurs et chronomètres nommés, déclinés par tags
+ * ("vpc.step.duration", step=natGateway). Les mises à jour passent par des LongAdder, sans
+ * verrou ; les valeurs ne sont agrégées qu'à la lecture.
+ *
+ * Le registre global reçoit les métriques de CreationVpc et DeleteVpc ; un registre dédié peut
+ * être créé pour isoler une mesure.
+ */
+public class MetricsRegistry {
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    public static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        public void increment(long amount) {
+            count.add(amount);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count();
+        }
+    }
+
+    public static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        public void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public double totalMillis() {
+            return totalNanos.sum() / 1_000_000.0;
+        }
+
+        public double maxMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            long n = count();
+            return String.format("count=%d total=%.1f ms mean=%.1f ms max=%.1f ms",
+                    n, totalMillis(), n == 0 ? 0.0 : totalMillis() / n, maxMillis());
+        }
+    }
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    // Tags en paires clé, valeur : counter("ec2.api.calls", "action", "createVpc")
+    public Counter counter(String name, String... tags) {
+        return counters.computeIfAbsent(id(name, tags), k -> new Counter());
+    }
+
+    public Timer timer(String name, String... tags) {
+        return timers.computeIfAbsent(id(name, tags), k -> new Timer());
+    }
+
+    // Toutes les métriques, triées par identifiant
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new TreeMap<>();
+        snapshot.putAll(counters);
+        snapshot.putAll(timers);
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        snapshot().forEach((id, meter) -> text.append(id).append(' ').append(meter).append('\n'));
+        return text.toString();
+    }
+
+    private static String id(String name, String... tags) {
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("Tags en paires clé, valeur attendus: " + name);
+        }
+        StringBuilder id = new StringBuilder(name);
+        for (int i = 0; i < tags.length; i += 2) {
+            id.append(i == 0 ? '{' : ',').append(tags[i]).append('=').append(tags[i + 1]);
+        }
+        return tags.length == 0 ? id.toString() : id.append('}').toString();
+    }
+}
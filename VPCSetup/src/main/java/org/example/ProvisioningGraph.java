@@ -0,0 +1,137 @@
+package org.example;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Graphe de dépendances entre étapes de provisioning.
+ *
+ * Chaque étape démarre dès que toutes ses dépendances sont terminées, les étapes indépendantes
+ * s'exécutent donc en parallèle. Une étape ne peut dépendre que d'étapes déjà déclarées, ce qui
+ * exclut les cycles. Si une étape échoue, celles qui en dépendent ne sont pas lancées et
+ * execute() lève la première erreur une fois toutes les étapes en cours terminées.
+ *
+ * Pour reprendre une exécution interrompue, execute() accepte les étapes déjà terminées et leur
+ * identifiant ("" si l'étape n'en produit pas) : elles ne sont pas relancées.
+ *
+ * Avec une ProvisioningTrace, chaque étape exécutée produit un span (voir trace()).
+ */
+public class ProvisioningGraph {
+
+    public interface Step {
+        // Reçoit les identifiants produits par les étapes terminées ; retourne le sien (ou null)
+        String run(Map<String, String> results) throws Exception;
+    }
+
+    public interface StepListener {
+        // Appelé après chaque étape réussie, avant le lancement de ses dépendants
+        void completed(String step, String id) throws Exception;
+    }
+
+    private static final class Node {
+        final String name;
+        final Step action;
+        final List<String> dependencies;
+
+        Node(String name, Step action, List<String> dependencies) {
+            this.name = name;
+            this.action = action;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private ProvisioningTrace trace;
+
+    public ProvisioningGraph step(String name, Step action, String... dependsOn) {
+        if (nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Étape déjà déclarée: " + name);
+        }
+        for (String dependency : dependsOn) {
+            if (!nodes.containsKey(dependency)) {
+                throw new IllegalArgumentException("Dépendance inconnue pour " + name + ": " + dependency);
+            }
+        }
+        nodes.put(name, new Node(name, action, Arrays.asList(dependsOn)));
+        return this;
+    }
+
+    // Trace alimentée par les étapes exécutées ; les étapes reprises n'y figurent pas
+    public ProvisioningGraph trace(ProvisioningTrace trace) {
+        this.trace = trace;
+        return this;
+    }
+
+    public Map<String, String> execute(Executor executor) throws Exception {
+        return execute(executor, Collections.emptyMap(), (step, id) -> {
+        });
+    }
+
+    public Map<String, String> execute(Executor executor, Map<String, String> completed, StepListener listener)
+            throws Exception {
+        Map<String, String> results = new ConcurrentHashMap<>();
+        Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+
+        for (Node node : nodes.values()) {
+            String completedId = completed.get(node.name);
+            if (completedId != null) {
+                if (!completedId.isEmpty()) {
+                    results.put(node.name, completedId);
+                }
+                futures.put(node.name, CompletableFuture.completedFuture(null));
+                continue;
+            }
+
+            CompletableFuture<?>[] dependencies = node.dependencies.stream()
+                    .map(futures::get)
+                    .toArray(CompletableFuture[]::new);
+
+            futures.put(node.name, CompletableFuture.allOf(dependencies).thenRunAsync(() -> {
+                ProvisioningTrace.Span span = trace == null ? null : trace.begin(node.name, node.dependencies);
+                boolean failed = true;
+                try {
+                    String id = node.action.run(results);
+                    listener.completed(node.name, id);
+                    if (id != null) {
+                        results.put(node.name, id);
+                    }
+                    failed = false;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                } finally {
+                    if (span != null) {
+                        trace.end(span, failed);
+                    }
+                }
+            }, executor));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw rootCause(futures);
+        }
+        return results;
+    }
+
+    // Les dépendants d'une étape en échec échouent avec la même cause : la première étape en échec
+    // dans l'ordre de déclaration est donc l'origine
+    static Exception rootCause(Map<String, ? extends CompletableFuture<?>> futures) {
+        Exception first = null;
+        for (Map.Entry<String, ? extends CompletableFuture<?>> entry : futures.entrySet()) {
+            try {
+                entry.getValue().join();
+            } catch (CompletionException e) {
+                Throwable cause = e;
+                while (cause instanceof CompletionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                Exception exception = cause instanceof Exception ? (Exception) cause : e;
+                if (first == null) {
+                    first = new ExecutionException("Étape " + entry.getKey() + " en échec: " + cause.getMessage(), exception);
+                }
+            }
+        }
+        return first;
+    }
+}
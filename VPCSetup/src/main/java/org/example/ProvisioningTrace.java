@@ -0,0 +1,242 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Trace d'une exécution de ProvisioningGraph : un span par étape, avec début, fin, appels
+ * d'API, relances, limitations, temps passé dans l'API et en attente (ResourceWaiter.waitFor).
+ *
+ * Le span de l'étape en cours est attaché au thread qui l'exécute : RateLimitedEc2Client et
+ * ResourceWaiter l'alimentent sans verrou, par de simples champs, puisqu'une étape s'exécute sur
+ * un seul thread. Les totaux ne sont reportés dans le MetricsRegistry qu'à la fin de l'étape.
+ *
+ * La trace s'exporte au format Trace Event (chrome://tracing, Perfetto) et se résume par son
+ * chemin critique : la chaîne d'étapes qui a fixé la durée totale.
+ */
+public class ProvisioningTrace {
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+
+    public static final class Span {
+        private final String step;
+        private final List<String> dependencies;
+        private final String thread;
+        private final long startNanos;
+        private long endNanos;
+        private boolean failed;
+        private long apiCalls;
+        private long attempts;
+        private long throttles;
+        private long apiNanos;
+        private long waitNanos;
+
+        private Span(String step, List<String> dependencies, long startNanos) {
+            this.step = step;
+            this.dependencies = dependencies;
+            this.thread = Thread.currentThread().getName();
+            this.startNanos = startNanos;
+        }
+
+        public void recordApiCall() {
+            apiCalls++;
+        }
+
+        public void recordAttempt(long nanos) {
+            attempts++;
+            apiNanos += nanos;
+        }
+
+        public void recordThrottle() {
+            throttles++;
+        }
+
+        public void recordWait(long nanos) {
+            waitNanos += nanos;
+        }
+
+        public String getStep() {
+            return step;
+        }
+
+        public long getDurationNanos() {
+            return endNanos - startNanos;
+        }
+
+        public long getApiCalls() {
+            return apiCalls;
+        }
+
+        public long getRetries() {
+            return attempts - apiCalls;
+        }
+    }
+
+    private final String environment;
+    private final String operation;
+    private final MetricsRegistry registry;
+    private final long originNanos = System.nanoTime();
+    private final Queue<Span> spans = new ConcurrentLinkedQueue<>();
+
+    public ProvisioningTrace(String environment, String operation, MetricsRegistry registry) {
+        this.environment = environment;
+        this.operation = operation;
+        this.registry = registry;
+    }
+
+    // Span de l'étape exécutée par le thread courant, null hors étape tracée
+    public static Span currentSpan() {
+        return CURRENT.get();
+    }
+
+    Span begin(String step, List<String> dependencies) {
+        Span span = new Span(step, dependencies, System.nanoTime());
+        CURRENT.set(span);
+        return span;
+    }
+
+    void end(Span span, boolean failed) {
+        span.endNanos = System.nanoTime();
+        span.failed = failed;
+        CURRENT.remove();
+        spans.add(span);
+
+        registry.timer("vpc.step.duration", "operation", operation, "step", span.step).record(span.getDurationNanos());
+        registry.counter("vpc.step.api.calls", "operation", operation, "step", span.step).increment(span.apiCalls);
+        registry.counter("vpc.step.api.retries", "operation", operation, "step", span.step).increment(span.getRetries());
+        registry.counter("vpc.step.api.throttles", "operation", operation, "step", span.step).increment(span.throttles);
+        if (span.waitNanos > 0) {
+            registry.timer("vpc.step.wait", "operation", operation, "step", span.step).record(span.waitNanos);
+        }
+        if (failed) {
+            registry.counter("vpc.step.failures", "operation", operation, "step", span.step).increment(1);
+        }
+    }
+
+    // Spans terminés, par ordre de début
+    public List<Span> getSpans() {
+        List<Span> sorted = new ArrayList<>(spans);
+        sorted.sort(Comparator.comparingLong(span -> span.startNanos));
+        return sorted;
+    }
+
+    // En partant de l'étape terminée en dernier, remonte à chaque fois la dépendance terminée en dernier
+    public List<Span> criticalPath() {
+        Map<String, Span> byStep = new HashMap<>();
+        Span last = null;
+        for (Span span : spans) {
+            byStep.put(span.step, span);
+            if (last == null || span.endNanos > last.endNanos) {
+                last = span;
+            }
+        }
+
+        LinkedList<Span> path = new LinkedList<>();
+        for (Span span = last; span != null; ) {
+            path.addFirst(span);
+            Span gating = null;
+            for (String dependency : span.dependencies) {
+                Span candidate = byStep.get(dependency);
+                if (candidate != null && (gating == null || candidate.endNanos > gating.endNanos)) {
+                    gating = candidate;
+                }
+            }
+            span = gating;
+        }
+        return path;
+    }
+
+    // Chemin critique, avec pour chaque étape son attente de démarrage, son temps d'API et d'attente
+    public String report() {
+        List<Span> path = criticalPath();
+        if (path.isEmpty()) {
+            return "";
+        }
+        long total = path.get(path.size() - 1).endNanos - originNanos;
+        StringBuilder text = new StringBuilder(String.format("Chemin critique %s/%s (%.1f s) :%n",
+                environment, operation, seconds(total)));
+        long previousEnd = originNanos;
+        for (Span span : path) {
+            text.append(String.format("  %-20s début %7.1f s  durée %7.1f s (%4.1f %%)  file %5.2f s  API %3d appel(s) %2d relance(s) %6.2f s  attente %7.1f s%s%n",
+                    span.step, seconds(span.startNanos - originNanos), seconds(span.getDurationNanos()),
+                    total == 0 ? 0.0 : 100.0 * span.getDurationNanos() / total,
+                    seconds(span.startNanos - previousEnd), span.apiCalls, span.getRetries(), seconds(span.apiNanos),
+                    seconds(span.waitNanos), span.failed ? "  ÉCHEC" : ""));
+            previousEnd = span.endNanos;
+        }
+        return text.toString();
+    }
+
+    // Écrit la trace à côté du journal de l'environnement ; retourne le fichier écrit
+    public Path export() throws IOException {
+        Path file = StateJournal.STATE_DIRECTORY.resolve(environment + "." + operation + ".trace.json");
+        Files.createDirectories(file.getParent());
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeJson(writer);
+        }
+        return file;
+    }
+
+    public void writeJson(Writer writer) throws IOException {
+        Set<String> critical = new HashSet<>();
+        for (Span span : criticalPath()) {
+            critical.add(span.step);
+        }
+        Map<String, Integer> threads = new LinkedHashMap<>();
+
+        writer.write("{\"displayTimeUnit\":\"ms\",\"otherData\":{\"environment\":" + quote(environment)
+                + ",\"operation\":" + quote(operation) + "},\"traceEvents\":[");
+        boolean first = true;
+        for (Span span : getSpans()) {
+            int tid = threads.computeIfAbsent(span.thread, t -> threads.size() + 1);
+            writer.write((first ? "" : ",") + "\n{\"name\":" + quote(span.step)
+                    + ",\"cat\":" + quote(operation)
+                    + ",\"ph\":\"X\",\"pid\":1,\"tid\":" + tid
+                    + ",\"ts\":" + micros(span.startNanos - originNanos)
+                    + ",\"dur\":" + micros(span.getDurationNanos())
+                    + ",\"args\":{\"apiCalls\":" + span.apiCalls
+                    + ",\"retries\":" + span.getRetries()
+                    + ",\"throttles\":" + span.throttles
+                    + ",\"apiMicros\":" + micros(span.apiNanos)
+                    + ",\"waitMicros\":" + micros(span.waitNanos)
+                    + ",\"critical\":" + critical.contains(span.step)
+                    + ",\"failed\":" + span.failed + "}}");
+            first = false;
+        }
+        for (Map.Entry<String, Integer> thread : threads.entrySet()) {
+            writer.write(",\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + thread.getValue()
+                    + ",\"args\":{\"name\":" + quote(thread.getKey()) + "}}");
+        }
+        writer.write("\n]}\n");
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1_000;
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,251 @@
+package org.example;
+
+import software.amazon.awssdk.core.SdkField;
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.ec2.Ec2Client;
+import software.amazon.awssdk.services.ec2.model.Ec2Request;
+import software.amazon.awssdk.services.ec2.model.Ec2Response;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Ec2Client dont chaque appel d'API prend d'abord un jeton dans le seau de sa catégorie :
+ * lecture (Describe*) ou modification (tout le reste), comme les quotas EC2.
+ *
+ * Chaque action a en plus son propre limiteur AIMD : une limitation (RequestLimitExceeded)
+ * divise son débit par deux, chaque succès le remonte. Les tentatives sont relancées avec
+ * délai exponentiel :
+ * <ul>
+ *     <li>toujours après une limitation, la requête n'ayant pas été traitée ;</li>
+ *     <li>après une erreur réseau ou serveur, seulement pour les Describe* et les requêtes
+ *     portant un ClientToken, renseigné ici une fois pour toutes les tentatives.</li>
+ * </ul>
+ * Le ClientToken aléatoire ne déduplique que les relances de ce processus : les étapes qui
+ * créent des ressources facturées passent le leur, clientToken(), stable d'une reprise à l'autre.
+ *
+ * Implémenté par proxy dynamique pour couvrir toute l'interface ; les paginateurs et les
+ * variantes par Consumer ou sans argument sont exécutés sur le proxy, chaque requête passe donc
+ * par le limiteur. Les autres méthodes (waiter(), serviceClientConfiguration(), etc.) vont au
+ * client délégué.
+ *
+ * Les appels, tentatives et limitations sont aussi reportés sur le span de l'étape en cours
+ * (ProvisioningTrace), s'il y en a un.
+ */
+public final class RateLimitedEc2Client implements InvocationHandler {
+    // Quotas EC2 par défaut, par compte et par région
+    public static final int NON_MUTATING_CAPACITY = 100;
+    public static final int NON_MUTATING_REFILL = 20;
+    public static final int MUTATING_CAPACITY = 50;
+    public static final int MUTATING_REFILL = 5;
+
+    private static final int MAX_ATTEMPTS = 6;
+    private static final Backoff RETRY_BACKOFF = new Backoff(Duration.ofMillis(200), Duration.ofSeconds(10), 2.0, 1.0);
+    private static final double MIN_ACTION_RATE = 0.2;
+    private static final String CLIENT_TOKEN = "ClientToken";
+
+    private final Ec2Client delegate;
+    private final TokenBucket nonMutating;
+    private final TokenBucket mutating;
+    private final Map<String, AimdRateLimiter> limiters = new ConcurrentHashMap<>();
+    private final Map<String, ActionStats> stats = new ConcurrentHashMap<>();
+
+    private RateLimitedEc2Client(Ec2Client delegate, TokenBucket nonMutating, TokenBucket mutating) {
+        this.delegate = delegate;
+        this.nonMutating = nonMutating;
+        this.mutating = mutating;
+    }
+
+    // Client limité de la région, partagé par toute la JVM (Ec2ClientFactory.shared())
+    public static Ec2Client create(String region) {
+        return Ec2ClientFactory.shared().client(region);
+    }
+
+    // Client SDK de la région sans relances du SDK : les limitations doivent remonter jusqu'au proxy
+    public static Ec2Client sdkClient(String region) {
+        return Ec2ClientFactory.shared().sdkClient(region);
+    }
+
+    public static Ec2Client wrap(Ec2Client delegate) {
+        return wrap(delegate,
+                new TokenBucket(NON_MUTATING_CAPACITY, NON_MUTATING_REFILL),
+                new TokenBucket(MUTATING_CAPACITY, MUTATING_REFILL));
+    }
+
+    public static Ec2Client wrap(Ec2Client delegate, TokenBucket nonMutating, TokenBucket mutating) {
+        return (Ec2Client) Proxy.newProxyInstance(Ec2Client.class.getClassLoader(),
+                new Class<?>[]{Ec2Client.class},
+                new RateLimitedEc2Client(delegate, nonMutating, mutating));
+    }
+
+    // Compteurs par action d'un client obtenu par wrap, triés par nom d'action
+    public static Map<String, ActionStats> statsOf(Ec2Client client) {
+        if (!Proxy.isProxyClass(client.getClass())
+                || !(Proxy.getInvocationHandler(client) instanceof RateLimitedEc2Client handler)) {
+            return Collections.emptyMap();
+        }
+        return new TreeMap<>(handler.stats);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (isApiCall(method)) {
+            return call(method, (Ec2Request) args[0]);
+        }
+        if (isApiOverload(method)) {
+            // Variantes par Consumer, sans argument et paginateurs : délèguent à l'appel d'API du proxy
+            return InvocationHandler.invokeDefault(proxy, method, args);
+        }
+        try {
+            return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Object call(Method method, Ec2Request request) throws Throwable {
+        String action = method.getName();
+        boolean describe = action.startsWith("describe");
+        TokenBucket bucket = describe ? nonMutating : mutating;
+        AimdRateLimiter limiter = limiters.computeIfAbsent(action, a -> new AimdRateLimiter(MIN_ACTION_RATE,
+                describe ? NON_MUTATING_CAPACITY : MUTATING_CAPACITY));
+        ActionStats actionStats = stats.computeIfAbsent(action, a -> new ActionStats());
+
+        Ec2Request effective = withClientToken(request);
+        boolean idempotent = describe || hasClientToken(effective);
+        actionStats.recordCall();
+        ProvisioningTrace.Span span = ProvisioningTrace.currentSpan();
+        if (span != null) {
+            span.recordApiCall();
+        }
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                bucket.acquire();
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw AbortedException.create("Appel " + action + " interrompu en attente de jeton", e);
+            }
+
+            long start = System.nanoTime();
+            Throwable failure;
+            try {
+                Object response = method.invoke(delegate, effective);
+                actionStats.recordAttempt(System.nanoTime() - start);
+                if (span != null) {
+                    span.recordAttempt(System.nanoTime() - start);
+                }
+                limiter.onSuccess();
+                return response;
+            } catch (InvocationTargetException e) {
+                actionStats.recordAttempt(System.nanoTime() - start);
+                if (span != null) {
+                    span.recordAttempt(System.nanoTime() - start);
+                }
+                failure = e.getCause();
+            }
+
+            boolean throttled = isThrottle(failure);
+            if (throttled) {
+                actionStats.recordThrottle();
+                limiter.onThrottle();
+                if (span != null) {
+                    span.recordThrottle();
+                }
+            }
+            if (attempt + 1 >= MAX_ATTEMPTS || !(throttled || (idempotent && isTransient(failure)))) {
+                actionStats.recordError();
+                throw failure;
+            }
+            sleepBeforeRetry(action, attempt);
+        }
+    }
+
+    // Appels d'API : une requête en unique paramètre (close, serviceName, paginateurs, etc. n'en sont pas)
+    private static boolean isApiCall(Method method) {
+        return method.getParameterCount() == 1
+                && Ec2Request.class.isAssignableFrom(method.getParameterTypes()[0])
+                && !method.getName().endsWith("Paginator");
+    }
+
+    // Surcharges par défaut de l'interface qui se ramènent à un appel d'API. Les autres méthodes
+    // par défaut (waiter(), serviceClientConfiguration()) lèvent UnsupportedOperationException
+    // dans l'interface : seul le client délégué les implémente
+    private static boolean isApiOverload(Method method) {
+        if (!method.isDefault()) {
+            return false;
+        }
+        if (method.getName().endsWith("Paginator")) {
+            return true;
+        }
+        Class<?>[] parameters = method.getParameterTypes();
+        return parameters.length == 1 && parameters[0] == Consumer.class
+                || parameters.length == 0 && Ec2Response.class.isAssignableFrom(method.getReturnType());
+    }
+
+    // ClientToken d'une étape de création, identique à chaque reprise de la même exécution : EC2
+    // retourne alors la ressource déjà créée au lieu d'en créer une seconde. Les identifiants dont
+    // dépend l'étape (sous-réseau, adresse) en font partie, une nouvelle création de l'environnement
+    // obtient donc de nouveaux jetons
+    public static String clientToken(String environment, String step, String... inputs) {
+        StringBuilder name = new StringBuilder(environment).append('\n').append(step);
+        for (String input : inputs) {
+            name.append('\n').append(input);
+        }
+        return UUID.nameUUIDFromBytes(name.toString().getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    // Renseigne un ClientToken si la requête en accepte un et n'en a pas : EC2 déduplique les relances.
+    // Le SDK en génère un à la sérialisation, mais un nouveau à chaque appel du délégué.
+    private static Ec2Request withClientToken(Ec2Request request) {
+        if (hasClientToken(request)) {
+            return request;
+        }
+        for (SdkField<?> field : request.sdkFields()) {
+            if (CLIENT_TOKEN.equals(field.memberName())) {
+                Ec2Request.Builder builder = request.toBuilder();
+                field.set(builder, UUID.randomUUID().toString());
+                return builder.build();
+            }
+        }
+        return request;
+    }
+
+    private static boolean hasClientToken(Ec2Request request) {
+        return request.getValueForField(CLIENT_TOKEN, String.class).isPresent();
+    }
+
+    private static boolean isThrottle(Throwable failure) {
+        return failure instanceof SdkServiceException serviceException && serviceException.isThrottlingException();
+    }
+
+    private static boolean isTransient(Throwable failure) {
+        if (failure instanceof SdkServiceException serviceException) {
+            return serviceException.statusCode() >= 500;
+        }
+        return failure instanceof SdkClientException && !(failure instanceof AbortedException);
+    }
+
+    private static void sleepBeforeRetry(String action, int attempt) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(RETRY_BACKOFF.delayMillis(attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw AbortedException.create("Relance de " + action + " interrompue", e);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Attente de l'état final d'un ensemble de ressources, avec une seule tâche d'interrogation.
+ *
+ * Chaque ressource a son propre délai exponentiel et sa propre échéance ; à chaque réveil, toutes
+ * les ressources dues sont interrogées en un seul appel. Une ressource est résolue dès qu'elle
+ * atteint un état prêt, échoue dès qu'elle atteint un état d'échec terminal et expire
+ * (TimeoutException) une fois son échéance dépassée. Les erreurs de la sonde sont retentées
+ * jusqu'à l'échéance.
+ */
+public class ResourceWaiter implements AutoCloseable {
+
+    public interface Probe {
+        // État courant des ressources demandées ; une ressource absente de la réponse reste en attente
+        Map<String, String> describe(Collection<String> ids) throws Exception;
+    }
+
+    private static final class Pending {
+        final String id;
+        final long deadline;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        int attempt;
+        long nextPoll;
+        String lastState;
+
+        Pending(String id, long now, long deadline) {
+            this.id = id;
+            this.nextPoll = now;
+            this.deadline = deadline;
+        }
+    }
+
+    private final String resourceType;
+    private final Probe probe;
+    private final Set<String> readyStates;
+    private final Set<String> failedStates;
+    private final Backoff backoff;
+    private final Duration timeout;
+    private final ScheduledExecutorService poller;
+
+    // Protégés par this
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> nextTick;
+    private long nextTickAt;
+    private Exception lastProbeError;
+
+    public ResourceWaiter(String resourceType, Probe probe, Set<String> readyStates, Set<String> failedStates,
+                          Backoff backoff, Duration timeout) {
+        this.resourceType = resourceType;
+        this.probe = probe;
+        this.readyStates = readyStates;
+        this.failedStates = failedStates;
+        this.backoff = backoff;
+        this.timeout = timeout;
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "waiter-" + resourceType);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Se complète avec l'état prêt atteint par la ressource
+    public synchronized CompletableFuture<String> await(String id) {
+        Pending existing = pending.get(id);
+        if (existing != null) {
+            return existing.result;
+        }
+        long now = System.nanoTime();
+        Pending resource = new Pending(id, now, now + timeout.toNanos());
+        pending.put(id, resource);
+        schedule(now);
+        return resource.result;
+    }
+
+    // Le temps d'attente est reporté sur le span de l'étape en cours, s'il y en a un
+    public String waitFor(String id) throws InterruptedException, TimeoutException {
+        ProvisioningTrace.Span span = ProvisioningTrace.currentSpan();
+        long start = System.nanoTime();
+        try {
+            return await(id).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException) {
+                throw (TimeoutException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (span != null) {
+                span.recordWait(System.nanoTime() - start);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        poller.shutdownNow();
+        synchronized (this) {
+            for (Pending resource : pending.values()) {
+                resource.result.completeExceptionally(new CancellationException("Attente interrompue: " + resource.id));
+            }
+            pending.clear();
+        }
+    }
+
+    private void schedule(long at) {
+        if (nextTick != null && nextTickAt <= at) {
+            return;
+        }
+        if (nextTick != null) {
+            nextTick.cancel(false);
+        }
+        nextTickAt = at;
+        nextTick = poller.schedule(this::poll, Math.max(0, at - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private void poll() {
+        List<Pending> due = new ArrayList<>();
+        synchronized (this) {
+            nextTick = null;
+            long now = System.nanoTime();
+            for (Pending resource : pending.values()) {
+                if (resource.nextPoll <= now) {
+                    due.add(resource);
+                }
+            }
+        }
+
+        // Un seul appel pour toutes les ressources dues, hors verrou
+        Map<String, String> states = Collections.emptyMap();
+        Exception probeError = null;
+        if (!due.isEmpty()) {
+            List<String> ids = new ArrayList<>(due.size());
+            for (Pending resource : due) {
+                ids.add(resource.id);
+            }
+            try {
+                states = probe.describe(ids);
+            } catch (Exception e) {
+                probeError = e;
+            }
+        }
+
+        synchronized (this) {
+            if (probeError != null) {
+                lastProbeError = probeError;
+            }
+            long now = System.nanoTime();
+            for (Pending resource : due) {
+                String state = states.get(resource.id);
+                if (state != null) {
+                    resource.lastState = state;
+                }
+
+                if (state != null && readyStates.contains(state)) {
+                    pending.remove(resource.id);
+                    resource.result.complete(state);
+                } else if (state != null && failedStates.contains(state)) {
+                    pending.remove(resource.id);
+                    resource.result.completeExceptionally(new IllegalStateException(
+                            resourceType + " " + resource.id + " dans l'état " + state));
+                } else if (now >= resource.deadline) {
+                    pending.remove(resource.id);
+                    resource.result.completeExceptionally(timeoutFor(resource));
+                } else {
+                    long delay = TimeUnit.MILLISECONDS.toNanos(backoff.delayMillis(resource.attempt++));
+                    resource.nextPoll = Math.min(now + delay, resource.deadline);
+                }
+            }
+
+            long next = Long.MAX_VALUE;
+            for (Pending resource : pending.values()) {
+                next = Math.min(next, resource.nextPoll);
+            }
+            if (next != Long.MAX_VALUE && !poller.isShutdown()) {
+                schedule(next);
+            }
+        }
+    }
+
+    private TimeoutException timeoutFor(Pending resource) {
+        TimeoutException timeoutException = new TimeoutException(resourceType + " " + resource.id
+                + " toujours dans l'état " + resource.lastState + " après " + timeout.toSeconds() + " s");
+        if (lastProbeError != null) {
+            timeoutException.initCause(lastProbeError);
+        }
+        return timeoutException;
+    }
+}
@@ -0,0 +1,114 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Journal local, en ajout seul, des étapes de provisioning terminées : une ligne
+ * {@code étape<TAB>identifiant} par étape, l'identifiant vide pour une étape sans ressource.
+ *
+ * record() ne rend la main qu'une fois la ligne sur disque. Les fsync sont groupés : un thread
+ * qui force le fichier rend durables toutes les lignes écrites avant lui, les étapes terminées
+ * en même temps partagent donc un seul fsync. Une dernière ligne incomplète (arrêt brutal pendant
+ * l'écriture) est ignorée et tronquée à l'ouverture.
+ */
+public class StateJournal implements AutoCloseable {
+    public static final Path STATE_DIRECTORY = Path.of("vpc-state");
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<String, String> entries;
+    private final Object syncLock = new Object();
+
+    // Numéros de la dernière ligne écrite et de la dernière ligne rendue durable
+    private long written;
+    private long durable;
+
+    private StateJournal(Path file, FileChannel channel, Map<String, String> entries) {
+        this.file = file;
+        this.channel = channel;
+        this.entries = entries;
+    }
+
+    public static StateJournal forEnvironment(String name) throws IOException {
+        return open(STATE_DIRECTORY.resolve(name + ".journal"));
+    }
+
+    public static StateJournal open(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        byte[] content = Files.readAllBytes(file);
+        int lineStart = 0;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] == '\n') {
+                String line = new String(content, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    entries.put(line.substring(0, tab), line.substring(tab + 1));
+                }
+                lineStart = i + 1;
+            }
+        }
+        channel.truncate(lineStart);
+        channel.position(lineStart);
+        return new StateJournal(file, channel, entries);
+    }
+
+    // Étapes terminées et leur identifiant ("" pour une étape sans ressource)
+    public synchronized Map<String, String> entries() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(entries));
+    }
+
+    public void record(String step, String id) throws IOException {
+        String value = id == null ? "" : id;
+        if (step.indexOf('\t') >= 0 || step.indexOf('\n') >= 0 || value.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Entrée de journal invalide: " + step + " = " + value);
+        }
+
+        long sequence;
+        synchronized (this) {
+            ByteBuffer line = ByteBuffer.wrap((step + "\t" + value + "\n").getBytes(StandardCharsets.UTF_8));
+            while (line.hasRemaining()) {
+                channel.write(line);
+            }
+            entries.put(step, value);
+            sequence = ++written;
+        }
+
+        synchronized (syncLock) {
+            if (durable >= sequence) {
+                return;
+            }
+            long covered;
+            synchronized (this) {
+                covered = written;
+            }
+            channel.force(false);
+            durable = covered;
+        }
+    }
+
+    // Ressources supprimées : le journal n'a plus lieu d'être
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
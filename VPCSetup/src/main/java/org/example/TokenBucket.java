@@ -0,0 +1,43 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seau à jetons partagé entre threads : une rafale de 'capacity' appels, puis 'refillPerSecond'
+ * appels par seconde, comme les quotas de l'API EC2.
+ *
+ * acquire() réserve son jeton sous verrou puis dort hors verrou le temps nécessaire : les
+ * appelants sont servis dans l'ordre de réservation sans se bloquer mutuellement.
+ */
+public class TokenBucket {
+    private final double capacity;
+    private final double refillPerNano;
+
+    // Protégés par this ; 'tokens' devient négatif quand des jetons futurs sont réservés
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double capacity, double refillPerSecond) {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Capacité >= 1 et débit > 0 attendus");
+        }
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+            tokens -= 1;
+            waitNanos = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / refillPerNano);
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package org.example;
+
+import software.amazon.awssdk.services.ec2.Ec2Client;
+import software.amazon.awssdk.services.ec2.model.*;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executor;
+
+/**
+ * Rapproche un VpcSpec de l'état réel du VPC : un instantané en une passe (VpcResourceIndex),
+ * un plan des seules différences, puis son application en parallèle par ProvisioningGraph.
+ *
+ * Le VPC est retrouvé par le tag de l'environnement, ou par son CIDR s'il n'est pas tagué ; le
+ * plan est refusé si plusieurs VPC correspondent.
+ *
+ * Chaque élément de la spec est une étape du graphe ; celles déjà conformes sont passées au
+ * graphe comme terminées, avec leur identifiant, et ne font aucun appel. Les routes absentes de
+ * la spec sont supprimées des tables gérées ; les autres ressources non décrites (sous-réseaux,
+ * instances) sont seulement signalées.
+ *
+ * Les ressources créées portent les tags de l'environnement de la spec (EnvironmentTags), comme
+ * celles de CreationVpc : DeleteVpc et GarbageCollector les retrouvent de la même façon.
+ */
+public class VpcReconciler implements AutoCloseable {
+    private static final String LOCAL_GATEWAY = "local";
+
+    public enum Action {
+        CREATE("+"), UPDATE("~"), DELETE("-");
+
+        private final String symbol;
+
+        Action(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    public static final class Change {
+        public final String step;
+        public final Action action;
+        public final String description;
+
+        Change(String step, Action action, String description) {
+            this.step = step;
+            this.action = action;
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return action.symbol + " " + description;
+        }
+    }
+
+    public static final class Plan {
+        private final ProvisioningGraph graph = new ProvisioningGraph();
+        private final Map<String, String> upToDate = new HashMap<>();
+        private final List<Change> changes = new ArrayList<>();
+        private final List<String> unmanaged = new ArrayList<>();
+
+        public List<Change> getChanges() {
+            return Collections.unmodifiableList(changes);
+        }
+
+        public List<String> getUnmanaged() {
+            return Collections.unmodifiableList(unmanaged);
+        }
+
+        public boolean isEmpty() {
+            return changes.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            if (changes.isEmpty()) {
+                text.append("Aucun changement\n");
+            }
+            for (Change change : changes) {
+                text.append(change).append('\n');
+            }
+            for (String resource : unmanaged) {
+                text.append("? ").append(resource).append(" (hors spec, conservé)\n");
+            }
+            return text.toString();
+        }
+
+        // Étape conforme : le graphe la considère terminée, avec son identifiant
+        private void upToDate(String step, String id, ProvisioningGraph.Step action, String... dependsOn) {
+            graph.step(step, action, dependsOn);
+            upToDate.put(step, id == null ? "" : id);
+        }
+
+        private void change(Change change, ProvisioningGraph.Step action, String... dependsOn) {
+            graph.step(change.step, action, dependsOn);
+            changes.add(change);
+        }
+    }
+
+    private final Ec2Client ec2Client;
+    private final VpcSpec spec;
+    private final ResourceWaiter natGatewayWaiter;
+    // Instant de création porté par les tags de toutes les ressources créées par ce rapprochement
+    private final Instant createdAt = Instant.now();
+
+    public VpcReconciler(Ec2Client ec2Client, VpcSpec spec) {
+        this.ec2Client = ec2Client;
+        this.spec = spec;
+        this.natGatewayWaiter = Ec2Waiters.natGatewayAvailable(ec2Client);
+    }
+
+    public Plan plan(Executor executor) throws Exception {
+        String vpcId = findVpcId();
+        VpcResourceIndex live = vpcId == null ? null : VpcResourceIndex.discover(ec2Client, vpcId, executor);
+        Plan plan = new Plan();
+
+        ProvisioningGraph.Step createVpc = r -> ec2Client.createVpc(b -> b
+                .cidrBlock(spec.getVpcCidr())
+                .tagSpecifications(tags(ResourceType.VPC))).vpc().vpcId();
+        if (vpcId != null) {
+            plan.upToDate("vpc", vpcId, createVpc);
+        } else {
+            plan.change(new Change("vpc", Action.CREATE, "VPC " + spec.getVpcCidr()), createVpc);
+        }
+
+        Map<String, Subnet> subnets = planSubnets(plan, live);
+        String internetGatewayId = planInternetGateway(plan, live);
+        NatGateway natGateway = planNatGateway(plan, live, subnets);
+        planRouteTables(plan, live, subnets, internetGatewayId, natGateway);
+        planInstances(plan, live, subnets);
+        return plan;
+    }
+
+    // Applique le plan ; retourne les identifiants de toutes les ressources de la spec
+    public Map<String, String> apply(Plan plan, Executor executor) throws Exception {
+        return plan.graph.execute(executor, plan.upToDate, (step, id) -> {
+        });
+    }
+
+    @Override
+    public void close() {
+        natGatewayWaiter.close();
+    }
+
+    // VPC portant le tag de l'environnement ; à défaut, VPC du même CIDR n'appartenant à aucun
+    // autre environnement (créé avant les tags). Plusieurs candidats : rien n'est planifié
+    private String findVpcId() {
+        List<Vpc> tagged = ec2Client.describeVpcs(b -> b.filters(Filter.builder()
+                .name("tag:" + EnvironmentTags.ENVIRONMENT)
+                .values(spec.getEnvironment())
+                .build())).vpcs();
+        if (!tagged.isEmpty()) {
+            return singleVpc(tagged, "l'environnement " + spec.getEnvironment());
+        }
+
+        List<Vpc> byCidr = new ArrayList<>();
+        for (Vpc vpc : ec2Client.describeVpcs(b -> b.filters(Filter.builder()
+                .name("cidr-block")
+                .values(spec.getVpcCidr())
+                .build())).vpcs()) {
+            if (EnvironmentTags.environmentOf(vpc.tags()) == null) {
+                byCidr.add(vpc);
+            }
+        }
+        return byCidr.isEmpty() ? null : singleVpc(byCidr, "le CIDR " + spec.getVpcCidr());
+    }
+
+    private static String singleVpc(List<Vpc> vpcs, String criterion) {
+        if (vpcs.size() > 1) {
+            List<String> ids = new ArrayList<>();
+            for (Vpc vpc : vpcs) {
+                ids.add(vpc.vpcId());
+            }
+            throw new IllegalStateException("Plusieurs VPC correspondent à " + criterion + " : " + ids
+                    + " ; plan impossible sans ambiguïté");
+        }
+        return vpcs.get(0).vpcId();
+    }
+
+    private Map<String, Subnet> planSubnets(Plan plan, VpcResourceIndex live) {
+        Map<String, Subnet> byCidr = new HashMap<>();
+        if (live != null) {
+            for (Subnet subnet : live.getSubnets()) {
+                byCidr.put(subnet.cidrBlock(), subnet);
+            }
+        }
+
+        Map<String, Subnet> subnets = new HashMap<>();
+        for (VpcSpec.SubnetSpec subnetSpec : spec.getSubnets()) {
+            String step = "subnet:" + subnetSpec.name;
+            Subnet subnet = byCidr.remove(subnetSpec.cidr);
+            ProvisioningGraph.Step create = r -> ec2Client.createSubnet(b -> b
+                    .vpcId(r.get("vpc"))
+                    .cidrBlock(subnetSpec.cidr)
+                    .availabilityZone(subnetSpec.availabilityZone)
+                    .tagSpecifications(tags(ResourceType.SUBNET))).subnet().subnetId();
+            if (subnet != null) {
+                subnets.put(subnetSpec.name, subnet);
+                plan.upToDate(step, subnet.subnetId(), create, "vpc");
+            } else {
+                plan.change(new Change(step, Action.CREATE,
+                        "sous-réseau " + subnetSpec.name + " " + subnetSpec.cidr + " (" + subnetSpec.availabilityZone + ")"),
+                        create, "vpc");
+            }
+
+            // Un nouveau sous-réseau n'attribue pas d'IP publique par défaut
+            String publicIpStep = "subnetPublicIp:" + subnetSpec.name;
+            boolean current = subnet != null && Boolean.TRUE.equals(subnet.mapPublicIpOnLaunch());
+            ProvisioningGraph.Step modify = r -> {
+                ec2Client.modifySubnetAttribute(b -> b
+                        .subnetId(r.get(step))
+                        .mapPublicIpOnLaunch(AttributeBooleanValue.builder().value(subnetSpec.publicIp).build()));
+                return null;
+            };
+            if (current == subnetSpec.publicIp) {
+                plan.upToDate(publicIpStep, null, modify, step);
+            } else {
+                plan.change(new Change(publicIpStep, Action.UPDATE,
+                        "sous-réseau " + subnetSpec.name + " : IP publique au lancement " + current + " -> " + subnetSpec.publicIp),
+                        modify, step);
+            }
+        }
+
+        for (Subnet subnet : byCidr.values()) {
+            plan.unmanaged.add("sous-réseau " + subnet.subnetId() + " " + subnet.cidrBlock());
+        }
+        return subnets;
+    }
+
+    private String planInternetGateway(Plan plan, VpcResourceIndex live) {
+        if (!spec.hasInternetGateway()) {
+            return null;
+        }
+        String internetGatewayId = live == null ? null : live.getInternetGatewayId();
+        ProvisioningGraph.Step create = r -> {
+            String igwId = ec2Client.createInternetGateway(b -> b
+                    .tagSpecifications(tags(ResourceType.INTERNET_GATEWAY))).internetGateway().internetGatewayId();
+            ec2Client.attachInternetGateway(b -> b.internetGatewayId(igwId).vpcId(r.get("vpc")));
+            return igwId;
+        };
+        if (internetGatewayId != null) {
+            plan.upToDate("internetGateway", internetGatewayId, create, "vpc");
+        } else {
+            plan.change(new Change("internetGateway", Action.CREATE, "passerelle Internet"), create, "vpc");
+        }
+        return internetGatewayId;
+    }
+
+    private NatGateway planNatGateway(Plan plan, VpcResourceIndex live, Map<String, Subnet> subnets) {
+        String subnetName = spec.getNatGatewaySubnet();
+        if (subnetName == null) {
+            return null;
+        }
+        String subnetStep = "subnet:" + subnetName;
+        Subnet subnet = subnets.get(subnetName);
+
+        NatGateway natGateway = null;
+        if (live != null && subnet != null) {
+            for (NatGateway candidate : live.getNatGateways()) {
+                if (subnet.subnetId().equals(candidate.subnetId()) && candidate.state() != NatGatewayState.FAILED) {
+                    natGateway = candidate;
+                    break;
+                }
+            }
+        }
+
+        ProvisioningGraph.Step allocate = r -> ec2Client.allocateAddress(b -> b
+                .domain(DomainType.VPC)
+                .tagSpecifications(tags(ResourceType.ELASTIC_IP))).allocationId();
+        ProvisioningGraph.Step create = r -> ec2Client.createNatGateway(b -> b
+                .subnetId(r.get(subnetStep))
+                .allocationId(r.get("elasticIp"))
+                .tagSpecifications(tags(ResourceType.NATGATEWAY))).natGateway().natGatewayId();
+        ProvisioningGraph.Step await = r -> natGatewayWaiter.waitFor(r.get("natGateway"));
+
+        if (natGateway != null) {
+            String allocationId = natGateway.natGatewayAddresses().isEmpty()
+                    ? null
+                    : natGateway.natGatewayAddresses().get(0).allocationId();
+            plan.upToDate("elasticIp", allocationId, allocate);
+            plan.upToDate("natGateway", natGateway.natGatewayId(), create, subnetStep, "elasticIp", "internetGateway");
+        } else {
+            plan.change(new Change("elasticIp", Action.CREATE, "adresse IP Elastic"), allocate);
+            plan.change(new Change("natGateway", Action.CREATE, "passerelle NAT dans " + subnetName),
+                    create, subnetStep, "elasticIp", "internetGateway");
+        }
+
+        // L'attente n'est pas un changement : une passerelle encore en création est attendue sans être listée
+        if (natGateway != null && natGateway.state() == NatGatewayState.AVAILABLE) {
+            plan.upToDate("natGatewayAvailable", null, await, "natGateway");
+        } else {
+            plan.graph.step("natGatewayAvailable", await, "natGateway");
+        }
+        return natGateway;
+    }
+
+    private void planRouteTables(Plan plan, VpcResourceIndex live, Map<String, Subnet> subnets,
+                                 String internetGatewayId, NatGateway natGateway) {
+        Map<String, RouteTable> byId = new HashMap<>();
+        if (live != null) {
+            for (RouteTable routeTable : live.getRouteTables()) {
+                byId.put(routeTable.routeTableId(), routeTable);
+            }
+        }
+
+        for (VpcSpec.RouteTableSpec tableSpec : spec.getRouteTables()) {
+            String step = "routeTable:" + tableSpec.name;
+            String subnetStep = "subnet:" + tableSpec.subnet;
+            Subnet subnet = subnets.get(tableSpec.subnet);
+            RouteTable routeTable = live == null || subnet == null
+                    ? null
+                    : byId.get(live.getRouteTableId(subnet.subnetId()));
+
+            ProvisioningGraph.Step create = r -> {
+                String routeTableId = ec2Client.createRouteTable(b -> b
+                        .vpcId(r.get("vpc"))
+                        .tagSpecifications(tags(ResourceType.ROUTE_TABLE))).routeTable().routeTableId();
+                ec2Client.associateRouteTable(b -> b.subnetId(r.get(subnetStep)).routeTableId(routeTableId));
+                return routeTableId;
+            };
+            if (routeTable != null) {
+                plan.upToDate(step, routeTable.routeTableId(), create, "vpc", subnetStep);
+            } else {
+                plan.change(new Change(step, Action.CREATE,
+                        "table de routage " + tableSpec.name + " associée à " + tableSpec.subnet), create, "vpc", subnetStep);
+            }
+
+            Map<String, Route> liveRoutes = new HashMap<>();
+            if (routeTable != null) {
+                for (Route route : routeTable.routes()) {
+                    if (route.destinationCidrBlock() != null && !LOCAL_GATEWAY.equals(route.gatewayId())) {
+                        liveRoutes.put(route.destinationCidrBlock(), route);
+                    }
+                }
+            }
+
+            for (VpcSpec.RouteSpec routeSpec : spec.getRoutes()) {
+                if (routeSpec.routeTable.equals(tableSpec.name)) {
+                    planRoute(plan, step, routeSpec, liveRoutes.remove(routeSpec.destination), internetGatewayId, natGateway);
+                }
+            }
+
+            // Routes de la table absentes de la spec
+            for (Route route : liveRoutes.values()) {
+                String destination = route.destinationCidrBlock();
+                plan.change(new Change("deleteRoute:" + tableSpec.name + ":" + destination, Action.DELETE,
+                        "route " + tableSpec.name + " " + destination), r -> {
+                    ec2Client.deleteRoute(b -> b.routeTableId(r.get(step)).destinationCidrBlock(destination));
+                    return null;
+                }, step);
+            }
+        }
+    }
+
+    private void planRoute(Plan plan, String tableStep, VpcSpec.RouteSpec routeSpec, Route liveRoute,
+                           String internetGatewayId, NatGateway natGateway) {
+        String step = "route:" + routeSpec.routeTable + ":" + routeSpec.destination;
+        boolean toInternet = routeSpec.target.equals(VpcSpec.INTERNET_GATEWAY);
+        String targetStep = toInternet ? "internetGateway" : "natGatewayAvailable";
+        String liveTarget = toInternet
+                ? internetGatewayId
+                : natGateway == null ? null : natGateway.natGatewayId();
+
+        boolean conforming = liveRoute != null && liveRoute.state() == RouteState.ACTIVE && liveTarget != null
+                && liveTarget.equals(toInternet ? liveRoute.gatewayId() : liveRoute.natGatewayId());
+        if (conforming) {
+            plan.upToDate(step, null, r -> null, tableStep, targetStep);
+            return;
+        }
+
+        String description = "route " + routeSpec.routeTable + " " + routeSpec.destination + " -> " + routeSpec.target;
+        if (liveRoute == null) {
+            plan.change(new Change(step, Action.CREATE, description), r -> {
+                ec2Client.createRoute(CreateRouteRequest.builder()
+                        .routeTableId(r.get(tableStep))
+                        .destinationCidrBlock(routeSpec.destination)
+                        .gatewayId(toInternet ? r.get("internetGateway") : null)
+                        .natGatewayId(toInternet ? null : r.get("natGateway"))
+                        .build());
+                return null;
+            }, tableStep, targetStep);
+        } else {
+            plan.change(new Change(step, Action.UPDATE, description), r -> {
+                ec2Client.replaceRoute(ReplaceRouteRequest.builder()
+                        .routeTableId(r.get(tableStep))
+                        .destinationCidrBlock(routeSpec.destination)
+                        .gatewayId(toInternet ? r.get("internetGateway") : null)
+                        .natGatewayId(toInternet ? null : r.get("natGateway"))
+                        .build());
+                return null;
+            }, tableStep, targetStep);
+        }
+    }
+
+    private void planInstances(Plan plan, VpcResourceIndex live, Map<String, Subnet> subnets) {
+        // Instances identifiées par leur tag Name dans leur sous-réseau
+        Map<String, Instance> byName = new HashMap<>();
+        List<Instance> others = new ArrayList<>();
+        if (live != null) {
+            for (Instance instance : live.getInstances()) {
+                String name = nameTag(instance.tags());
+                if (name != null && !byName.containsKey(name)) {
+                    byName.put(name, instance);
+                } else {
+                    others.add(instance);
+                }
+            }
+        }
+
+        for (VpcSpec.InstanceSpec instanceSpec : spec.getInstances()) {
+            String step = "instance:" + instanceSpec.name;
+            String subnetStep = "subnet:" + instanceSpec.subnet;
+            Subnet subnet = subnets.get(instanceSpec.subnet);
+            Instance instance = byName.remove(instanceSpec.name);
+            if (instance != null && (subnet == null || !subnet.subnetId().equals(instance.subnetId()))) {
+                others.add(instance);
+                instance = null;
+            }
+
+            ProvisioningGraph.Step create = r -> ec2Client.runInstances(b -> b
+                    .imageId(instanceSpec.amiId)
+                    .instanceType(instanceSpec.instanceType)
+                    .minCount(1)
+                    .maxCount(1)
+                    .keyName(instanceSpec.keyName)
+                    .subnetId(r.get(subnetStep))
+                    .tagSpecifications(instanceTags(instanceSpec.name))).instances().get(0).instanceId();
+            // L'attribut d'IP publique doit être posé avant le lancement
+            if (instance != null) {
+                plan.upToDate(step, instance.instanceId(), create, subnetStep, "subnetPublicIp:" + instanceSpec.subnet);
+            } else {
+                plan.change(new Change(step, Action.CREATE, "instance " + instanceSpec.name + " ("
+                                + instanceSpec.instanceType + ", " + instanceSpec.amiId + ") dans " + instanceSpec.subnet),
+                        create, subnetStep, "subnetPublicIp:" + instanceSpec.subnet);
+            }
+        }
+
+        others.addAll(byName.values());
+        for (Instance instance : others) {
+            plan.unmanaged.add("instance " + instance.instanceId() + " dans " + instance.subnetId());
+        }
+    }
+
+    private TagSpecification tags(ResourceType resourceType) {
+        return EnvironmentTags.of(resourceType, spec.getEnvironment(), createdAt);
+    }
+
+    // Tags d'environnement, plus le tag Name qui identifie l'instance dans son sous-réseau
+    private TagSpecification instanceTags(String name) {
+        TagSpecification environment = tags(ResourceType.INSTANCE);
+        List<Tag> tags = new ArrayList<>(environment.tags());
+        tags.add(Tag.builder().key("Name").value(name).build());
+        return environment.toBuilder().tags(tags).build();
+    }
+
+    private static String nameTag(List<Tag> tags) {
+        for (Tag tag : tags) {
+            if ("Name".equals(tag.key())) {
+                return tag.value();
+            }
+        }
+        return null;
+    }
+}
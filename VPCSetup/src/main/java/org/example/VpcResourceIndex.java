@@ -0,0 +1,198 @@
+package org.example;
+
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.ec2.Ec2AsyncClient;
+import software.amazon.awssdk.services.ec2.Ec2Client;
+import software.amazon.awssdk.services.ec2.model.*;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Inventaire en mémoire des ressources d'un VPC, construit en une seule passe de découverte.
+ *
+ * Un appel Describe par type de ressource, filtré sur le VPC et lancé en parallèle, remplace
+ * les appels unitaires par sous-réseau ou par passerelle ; les étapes de suppression lisent
+ * ensuite l'index sans retourner vers l'API.
+ */
+public class VpcResourceIndex {
+    private List<Subnet> subnets;
+    private List<Instance> instances;
+    private List<NatGateway> natGateways;
+    private List<RouteTable> routeTables;
+    private final Map<String, String> subnetsByCidr = new HashMap<>();
+    private final Map<String, String> instancesBySubnet = new HashMap<>();
+    private final Map<String, String> routeTablesBySubnet = new HashMap<>();
+    private final Map<String, String> allocationsByNatGateway = new LinkedHashMap<>();
+    private String internetGatewayId;
+
+    private VpcResourceIndex() {
+    }
+
+    public static VpcResourceIndex discover(Ec2Client ec2Client, String vpcId, Executor executor) throws Exception {
+        Filter vpcFilter = Filter.builder().name("vpc-id").values(vpcId).build();
+
+        CompletableFuture<List<Subnet>> subnets = CompletableFuture.supplyAsync(() ->
+                ec2Client.describeSubnetsPaginator(DescribeSubnetsRequest.builder()
+                        .filters(vpcFilter)
+                        .build()).subnets().stream().toList(), executor);
+
+        // Toute instance non terminée bloque la suppression de son sous-réseau
+        CompletableFuture<List<Instance>> instances = CompletableFuture.supplyAsync(() ->
+                ec2Client.describeInstancesPaginator(DescribeInstancesRequest.builder()
+                        .filters(vpcFilter, Filter.builder()
+                                .name("instance-state-name")
+                                .values("pending", "running", "stopping", "stopped")
+                                .build())
+                        .build()).reservations().stream()
+                        .flatMap(reservation -> reservation.instances().stream())
+                        .toList(), executor);
+
+        CompletableFuture<List<NatGateway>> natGateways = CompletableFuture.supplyAsync(() ->
+                ec2Client.describeNatGatewaysPaginator(DescribeNatGatewaysRequest.builder()
+                        .filter(vpcFilter, Filter.builder()
+                                .name("state")
+                                .values("pending", "available", "failed")
+                                .build())
+                        .build()).natGateways().stream().toList(), executor);
+
+        CompletableFuture<List<InternetGateway>> internetGateways = CompletableFuture.supplyAsync(() ->
+                ec2Client.describeInternetGatewaysPaginator(DescribeInternetGatewaysRequest.builder()
+                        .filters(Filter.builder().name("attachment.vpc-id").values(vpcId).build())
+                        .build()).internetGateways().stream().toList(), executor);
+
+        CompletableFuture<List<RouteTable>> routeTables = CompletableFuture.supplyAsync(() ->
+                ec2Client.describeRouteTablesPaginator(DescribeRouteTablesRequest.builder()
+                        .filters(vpcFilter)
+                        .build()).routeTables().stream().toList(), executor);
+
+        try {
+            CompletableFuture.allOf(subnets, instances, natGateways, internetGateways, routeTables).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+
+        return of(subnets.join(), instances.join(), natGateways.join(), internetGateways.join(), routeTables.join());
+    }
+
+    // Même découverte sur le client asynchrone : les cinq Describe sont en vol ensemble, sans thread
+    public static CompletableFuture<VpcResourceIndex> discover(Ec2AsyncClient ec2Client, String vpcId) {
+        Filter vpcFilter = Filter.builder().name("vpc-id").values(vpcId).build();
+
+        CompletableFuture<List<Subnet>> subnets = collect(ec2Client.describeSubnetsPaginator(
+                DescribeSubnetsRequest.builder()
+                        .filters(vpcFilter)
+                        .build()).subnets());
+
+        CompletableFuture<List<Instance>> instances = collect(ec2Client.describeInstancesPaginator(
+                DescribeInstancesRequest.builder()
+                        .filters(vpcFilter, Filter.builder()
+                                .name("instance-state-name")
+                                .values("pending", "running", "stopping", "stopped")
+                                .build())
+                        .build()).reservations().flatMapIterable(Reservation::instances));
+
+        CompletableFuture<List<NatGateway>> natGateways = collect(ec2Client.describeNatGatewaysPaginator(
+                DescribeNatGatewaysRequest.builder()
+                        .filter(vpcFilter, Filter.builder()
+                                .name("state")
+                                .values("pending", "available", "failed")
+                                .build())
+                        .build()).natGateways());
+
+        CompletableFuture<List<InternetGateway>> internetGateways = collect(ec2Client.describeInternetGatewaysPaginator(
+                DescribeInternetGatewaysRequest.builder()
+                        .filters(Filter.builder().name("attachment.vpc-id").values(vpcId).build())
+                        .build()).internetGateways());
+
+        CompletableFuture<List<RouteTable>> routeTables = collect(ec2Client.describeRouteTablesPaginator(
+                DescribeRouteTablesRequest.builder()
+                        .filters(vpcFilter)
+                        .build()).routeTables());
+
+        return CompletableFuture.allOf(subnets, instances, natGateways, internetGateways, routeTables)
+                .thenApply(ignored -> of(subnets.join(), instances.join(), natGateways.join(),
+                        internetGateways.join(), routeTables.join()));
+    }
+
+    private static <T> CompletableFuture<List<T>> collect(SdkPublisher<T> publisher) {
+        List<T> items = new ArrayList<>();
+        return publisher.subscribe(items::add).thenApply(ignored -> items);
+    }
+
+    private static VpcResourceIndex of(List<Subnet> subnets, List<Instance> instances, List<NatGateway> natGateways,
+                                       List<InternetGateway> internetGateways, List<RouteTable> routeTables) {
+        VpcResourceIndex index = new VpcResourceIndex();
+        index.subnets = subnets;
+        index.instances = instances;
+        index.natGateways = natGateways;
+        index.routeTables = routeTables;
+        for (Subnet subnet : subnets) {
+            index.subnetsByCidr.put(subnet.cidrBlock(), subnet.subnetId());
+        }
+        for (Instance instance : instances) {
+            index.instancesBySubnet.putIfAbsent(instance.subnetId(), instance.instanceId());
+        }
+        for (NatGateway natGateway : natGateways) {
+            String allocationId = natGateway.natGatewayAddresses().isEmpty()
+                    ? null
+                    : natGateway.natGatewayAddresses().get(0).allocationId();
+            index.allocationsByNatGateway.put(natGateway.natGatewayId(), allocationId);
+        }
+        if (!internetGateways.isEmpty()) {
+            index.internetGatewayId = internetGateways.get(0).internetGatewayId();
+        }
+        for (RouteTable routeTable : routeTables) {
+            for (RouteTableAssociation association : routeTable.associations()) {
+                if (association.subnetId() != null) {
+                    index.routeTablesBySubnet.put(association.subnetId(), routeTable.routeTableId());
+                }
+            }
+        }
+        return index;
+    }
+
+    // Réponses brutes, pour les consommateurs qui ont besoin de plus que les identifiants
+
+    public List<Subnet> getSubnets() {
+        return subnets;
+    }
+
+    public List<Instance> getInstances() {
+        return instances;
+    }
+
+    public List<NatGateway> getNatGateways() {
+        return natGateways;
+    }
+
+    public List<RouteTable> getRouteTables() {
+        return routeTables;
+    }
+
+    public String getSubnetId(String cidrBlock) {
+        return subnetsByCidr.get(cidrBlock);
+    }
+
+    public String getInstanceId(String subnetId) {
+        return subnetId == null ? null : instancesBySubnet.get(subnetId);
+    }
+
+    public String getNatGatewayId() {
+        return allocationsByNatGateway.isEmpty() ? null : allocationsByNatGateway.keySet().iterator().next();
+    }
+
+    public String getElasticIpAllocationId(String natGatewayId) {
+        return natGatewayId == null ? null : allocationsByNatGateway.get(natGatewayId);
+    }
+
+    public String getInternetGatewayId() {
+        return internetGatewayId;
+    }
+
+    public String getRouteTableId(String subnetId) {
+        return subnetId == null ? null : routeTablesBySubnet.get(subnetId);
+    }
+}
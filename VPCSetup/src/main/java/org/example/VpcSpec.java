@@ -0,0 +1,339 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Description déclarative d'un VPC : sous-réseaux, passerelles, tables de routage et leurs
+ * routes, instances. VpcReconciler l'applique en ne modifiant que ce qui diffère de l'existant.
+ *
+ * Se construit par builder, depuis un EnvironmentSpec (topologie DMZ/LAN historique) ou depuis
+ * un fichier texte :
+ * <pre>
+ * # environnement propriétaire, porté par les tags de chaque ressource créée (EnvironmentTags)
+ * environment default
+ * region us-east-1
+ * vpc 192.168.0.0/16
+ * # subnet &lt;nom&gt; &lt;cidr&gt; &lt;zone&gt; [public]
+ * subnet dmz 192.168.1.0/24 us-east-1a public
+ * subnet lan 192.168.2.0/24 us-east-1b
+ * internet-gateway
+ * nat-gateway dmz
+ * # route-table &lt;nom&gt; &lt;sous-réseau associé&gt;
+ * route-table public dmz
+ * route-table private lan
+ * # route &lt;table&gt; &lt;destination&gt; internet-gateway|nat-gateway
+ * route public 0.0.0.0/0 internet-gateway
+ * route private 0.0.0.0/0 nat-gateway
+ * # instance &lt;nom&gt; &lt;sous-réseau&gt; &lt;ami&gt; &lt;type&gt; &lt;clé&gt;
+ * instance dmz dmz ami-012967cc5a8c9f891 t2.micro key2
+ * </pre>
+ */
+public class VpcSpec {
+    public static final String INTERNET_GATEWAY = "internet-gateway";
+    public static final String NAT_GATEWAY = "nat-gateway";
+
+    public static final class SubnetSpec {
+        public final String name;
+        public final String cidr;
+        public final String availabilityZone;
+        public final boolean publicIp;
+
+        SubnetSpec(String name, String cidr, String availabilityZone, boolean publicIp) {
+            this.name = name;
+            this.cidr = cidr;
+            this.availabilityZone = availabilityZone;
+            this.publicIp = publicIp;
+        }
+    }
+
+    public static final class RouteTableSpec {
+        public final String name;
+        public final String subnet;
+
+        RouteTableSpec(String name, String subnet) {
+            this.name = name;
+            this.subnet = subnet;
+        }
+    }
+
+    public static final class RouteSpec {
+        public final String routeTable;
+        public final String destination;
+        public final String target;
+
+        RouteSpec(String routeTable, String destination, String target) {
+            this.routeTable = routeTable;
+            this.destination = destination;
+            this.target = target;
+        }
+    }
+
+    public static final class InstanceSpec {
+        public final String name;
+        public final String subnet;
+        public final String amiId;
+        public final String instanceType;
+        public final String keyName;
+
+        InstanceSpec(String name, String subnet, String amiId, String instanceType, String keyName) {
+            this.name = name;
+            this.subnet = subnet;
+            this.amiId = amiId;
+            this.instanceType = instanceType;
+            this.keyName = keyName;
+        }
+    }
+
+    private final String environment;
+    private final String region;
+    private final String vpcCidr;
+    private final List<SubnetSpec> subnets;
+    private final boolean internetGateway;
+    private final String natGatewaySubnet;
+    private final List<RouteTableSpec> routeTables;
+    private final List<RouteSpec> routes;
+    private final List<InstanceSpec> instances;
+
+    private VpcSpec(Builder builder) {
+        this.environment = builder.environment;
+        this.region = builder.region;
+        this.vpcCidr = builder.vpcCidr;
+        this.subnets = Collections.unmodifiableList(new ArrayList<>(builder.subnets));
+        this.internetGateway = builder.internetGateway;
+        this.natGatewaySubnet = builder.natGatewaySubnet;
+        this.routeTables = Collections.unmodifiableList(new ArrayList<>(builder.routeTables));
+        this.routes = Collections.unmodifiableList(new ArrayList<>(builder.routes));
+        this.instances = Collections.unmodifiableList(new ArrayList<>(builder.instances));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // La topologie de CreationVpc : DMZ publique derrière la passerelle Internet, LAN derrière la NAT
+    public static VpcSpec standard(EnvironmentSpec environment) {
+        String region = environment.getRegion();
+        return builder()
+                .environment(environment.getName())
+                .region(region)
+                .vpc(environment.getVpcCidr())
+                .subnet("dmz", environment.getDmzCidr(), region + "a", true)
+                .subnet("lan", environment.getLanCidr(), region + "b", false)
+                .internetGateway()
+                .natGateway("dmz")
+                .routeTable("public", "dmz")
+                .routeTable("private", "lan")
+                .route("public", "0.0.0.0/0", INTERNET_GATEWAY)
+                .route("private", "0.0.0.0/0", NAT_GATEWAY)
+                .instance("dmz", "dmz", environment.getAmiId(), "t2.micro", environment.getKeyName())
+                .instance("lan", "lan", environment.getAmiId(), "t2.micro", environment.getKeyName())
+                .build();
+    }
+
+    public static VpcSpec fromFile(Path spec) throws IOException {
+        Builder builder = builder();
+        try (BufferedReader reader = Files.newBufferedReader(spec, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split("\\s+");
+                try {
+                    switch (fields[0]) {
+                        case "environment" -> builder.environment(field(fields, 1, 2));
+                        case "region" -> builder.region(field(fields, 1, 2));
+                        case "vpc" -> builder.vpc(field(fields, 1, 2));
+                        case "subnet" -> {
+                            boolean publicIp = fields.length == 5 && fields[4].equals("public");
+                            if (fields.length != 4 && !publicIp) {
+                                throw new IllegalArgumentException("subnet <nom> <cidr> <zone> [public]");
+                            }
+                            builder.subnet(fields[1], fields[2], fields[3], publicIp);
+                        }
+                        case INTERNET_GATEWAY -> {
+                            if (fields.length != 1) {
+                                throw new IllegalArgumentException("aucun argument attendu");
+                            }
+                            builder.internetGateway();
+                        }
+                        case NAT_GATEWAY -> builder.natGateway(field(fields, 1, 2));
+                        case "route-table" -> builder.routeTable(field(fields, 1, 3), fields[2]);
+                        case "route" -> builder.route(field(fields, 1, 4), fields[2], fields[3]);
+                        case "instance" -> builder.instance(field(fields, 1, 6), fields[2], fields[3], fields[4], fields[5]);
+                        default -> throw new IllegalArgumentException("mot-clé inconnu");
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(spec + ":" + lineNumber + ": ligne invalide (" + e.getMessage() + ") : " + line);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static String field(String[] fields, int index, int expectedLength) {
+        if (fields.length != expectedLength) {
+            throw new IllegalArgumentException(expectedLength - 1 + " argument(s) attendu(s)");
+        }
+        return fields[index];
+    }
+
+    public String getEnvironment() {
+        return environment;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public String getVpcCidr() {
+        return vpcCidr;
+    }
+
+    public List<SubnetSpec> getSubnets() {
+        return subnets;
+    }
+
+    public boolean hasInternetGateway() {
+        return internetGateway;
+    }
+
+    // Sous-réseau de la passerelle NAT, ou null sans passerelle NAT
+    public String getNatGatewaySubnet() {
+        return natGatewaySubnet;
+    }
+
+    public List<RouteTableSpec> getRouteTables() {
+        return routeTables;
+    }
+
+    public List<RouteSpec> getRoutes() {
+        return routes;
+    }
+
+    public List<InstanceSpec> getInstances() {
+        return instances;
+    }
+
+    public static final class Builder {
+        private String environment;
+        private String region = "us-east-1";
+        private String vpcCidr;
+        private final List<SubnetSpec> subnets = new ArrayList<>();
+        private boolean internetGateway;
+        private String natGatewaySubnet;
+        private final List<RouteTableSpec> routeTables = new ArrayList<>();
+        private final List<RouteSpec> routes = new ArrayList<>();
+        private final List<InstanceSpec> instances = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder environment(String environment) {
+            this.environment = environment;
+            return this;
+        }
+
+        public Builder region(String region) {
+            this.region = region;
+            return this;
+        }
+
+        public Builder vpc(String cidr) {
+            this.vpcCidr = cidr;
+            return this;
+        }
+
+        public Builder subnet(String name, String cidr, String availabilityZone, boolean publicIp) {
+            if (hasSubnet(name)) {
+                throw new IllegalArgumentException("Sous-réseau déjà déclaré: " + name);
+            }
+            subnets.add(new SubnetSpec(name, cidr, availabilityZone, publicIp));
+            return this;
+        }
+
+        public Builder internetGateway() {
+            this.internetGateway = true;
+            return this;
+        }
+
+        public Builder natGateway(String subnet) {
+            requireSubnet(subnet);
+            this.natGatewaySubnet = subnet;
+            return this;
+        }
+
+        public Builder routeTable(String name, String subnet) {
+            requireSubnet(subnet);
+            for (RouteTableSpec routeTable : routeTables) {
+                if (routeTable.name.equals(name) || routeTable.subnet.equals(subnet)) {
+                    throw new IllegalArgumentException("Table de routage en double: " + name + " / " + subnet);
+                }
+            }
+            routeTables.add(new RouteTableSpec(name, subnet));
+            return this;
+        }
+
+        public Builder route(String routeTable, String destination, String target) {
+            if (routeTables.stream().noneMatch(t -> t.name.equals(routeTable))) {
+                throw new IllegalArgumentException("Table de routage inconnue: " + routeTable);
+            }
+            if (!target.equals(INTERNET_GATEWAY) && !target.equals(NAT_GATEWAY)) {
+                throw new IllegalArgumentException("Cible de route inconnue: " + target);
+            }
+            routes.add(new RouteSpec(routeTable, destination, target));
+            return this;
+        }
+
+        public Builder instance(String name, String subnet, String amiId, String instanceType, String keyName) {
+            requireSubnet(subnet);
+            if (instances.stream().anyMatch(i -> i.name.equals(name))) {
+                throw new IllegalArgumentException("Instance déjà déclarée: " + name);
+            }
+            instances.add(new InstanceSpec(name, subnet, amiId, instanceType, keyName));
+            return this;
+        }
+
+        public VpcSpec build() {
+            if (environment == null) {
+                throw new IllegalStateException("Le nom d'environnement est obligatoire");
+            }
+            if (vpcCidr == null) {
+                throw new IllegalStateException("Le CIDR du VPC est obligatoire");
+            }
+            for (RouteSpec route : routes) {
+                if (route.target.equals(INTERNET_GATEWAY) && !internetGateway) {
+                    throw new IllegalStateException("Route vers une passerelle Internet absente: " + route.routeTable);
+                }
+                if (route.target.equals(NAT_GATEWAY) && natGatewaySubnet == null) {
+                    throw new IllegalStateException("Route vers une passerelle NAT absente: " + route.routeTable);
+                }
+            }
+            if (natGatewaySubnet != null && !internetGateway) {
+                throw new IllegalStateException("Une passerelle NAT publique exige une passerelle Internet");
+            }
+            return new VpcSpec(this);
+        }
+
+        private boolean hasSubnet(String name) {
+            return subnets.stream().anyMatch(s -> s.name.equals(name));
+        }
+
+        private void requireSubnet(String name) {
+            if (!hasSubnet(name)) {
+                throw new IllegalArgumentException("Sous-réseau inconnu: " + name);
+            }
+        }
+    }
+}
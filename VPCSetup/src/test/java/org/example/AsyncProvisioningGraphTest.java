@@ -0,0 +1,57 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Listener du journal exécuté hors du thread qui complète les étapes (boucle d'événements).
+ */
+class AsyncProvisioningGraphTest {
+
+    private static ExecutorService named(String name) {
+        return Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, name));
+    }
+
+    @Test
+    void listenerRunsOnItsOwnExecutor() throws Exception {
+        ExecutorService eventLoop = named("event-loop");
+        ExecutorService journal = named("journal");
+        try {
+            Map<String, String> listenerThreads = new ConcurrentHashMap<>();
+            AsyncProvisioningGraph graph = new AsyncProvisioningGraph()
+                    .step("vpc", r -> CompletableFuture.supplyAsync(() -> "vpc-1", eventLoop))
+                    .step("subnet", r -> CompletableFuture.supplyAsync(() -> "subnet-" + r.get("vpc"), eventLoop), "vpc");
+
+            Map<String, String> results = graph.execute(Map.of(),
+                            (step, id) -> listenerThreads.put(step, Thread.currentThread().getName()), journal)
+                    .getResult().get(5, TimeUnit.SECONDS);
+
+            assertEquals(Map.of("vpc", "vpc-1", "subnet", "subnet-vpc-1"), results);
+            assertEquals(Map.of("vpc", "journal", "subnet", "journal"), listenerThreads);
+        } finally {
+            eventLoop.shutdown();
+            journal.shutdown();
+        }
+    }
+
+    @Test
+    void failingListenerFailsTheStep() {
+        AsyncProvisioningGraph graph = new AsyncProvisioningGraph()
+                .step("vpc", r -> CompletableFuture.completedFuture("vpc-1"))
+                .step("subnet", r -> CompletableFuture.completedFuture("subnet-1"), "vpc");
+
+        AsyncProvisioningGraph.Execution execution = graph.execute(Map.of(), (step, id) -> {
+            throw new IOException("disque plein");
+        }, ForkJoinPool.commonPool());
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> execution.getResult().get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause().getMessage().contains("disque plein"), failure.getCause().getMessage());
+        assertTrue(execution.getSteps().get("subnet").isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,50 @@
+package org.example;
+
+import org.example.emulator.Ec2Emulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Suppression interrompue par un échec : le journal est conservé et la suppression suivante reprend.
+ */
+class DeleteVpcTest {
+    private final EnvironmentSpec spec = new EnvironmentSpec("test-" + UUID.randomUUID(), "us-east-1",
+            "10.42.0.0/16", "10.42.1.0/24", "10.42.2.0/24", "ami-1", "key");
+    private final Path journalFile = StateJournal.STATE_DIRECTORY.resolve(spec.getName() + ".journal");
+    private final Ec2Emulator ec2 = new Ec2Emulator();
+
+    // Journal et traces de l'environnement
+    @AfterEach
+    void deleteStateFiles() throws Exception {
+        try (Stream<Path> files = Files.list(StateJournal.STATE_DIRECTORY)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().startsWith(spec.getName())).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void keepsTheJournalUntilEveryStepSucceeded() {
+        assertTrue(new CreationVpc(ec2, spec).setupInfrastructure());
+        String vpcId = ec2.describeVpcs().vpcs().get(0).vpcId();
+        // Sous-réseau créé hors de l'outil : le VPC ne peut pas être supprimé
+        String straySubnetId = ec2.createSubnet(r -> r.vpcId(vpcId).cidrBlock("10.42.9.0/24")).subnet().subnetId();
+
+        assertFalse(new DeleteVpc(ec2, spec).cleanup());
+        assertTrue(Files.exists(journalFile));
+        assertEquals(1, ec2.getResourceCounts().get("vpc"));
+
+        // Reprise : les ressources déjà supprimées ne sont pas des échecs
+        ec2.deleteSubnet(r -> r.subnetId(straySubnetId));
+        assertTrue(new DeleteVpc(ec2, spec).cleanup());
+        assertFalse(Files.exists(journalFile));
+        assertEquals(0, ec2.getResourceCounts().get("vpc"));
+    }
+}
@@ -0,0 +1,93 @@
+package org.example;
+
+import org.example.emulator.Ec2Emulator;
+import org.example.emulator.EmulatorConfig;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.ec2.model.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Attentes EC2 sur l'émulateur : transitions temporisées et échec d'une passerelle NAT sans
+ * passerelle Internet, comme sur EC2.
+ */
+class Ec2WaitersTest {
+    private static final Duration TRANSITION = Duration.ofMillis(300);
+
+    private final Ec2Emulator ec2 = new Ec2Emulator(EmulatorConfig.builder()
+            .natGatewayCreateTime(TRANSITION)
+            .natGatewayDeleteTime(TRANSITION)
+            .instanceLaunchTime(TRANSITION)
+            .instanceTerminateTime(TRANSITION)
+            .build());
+
+    private String subnet(boolean withInternetGateway) {
+        String vpcId = ec2.createVpc(r -> r.cidrBlock("10.0.0.0/16")).vpc().vpcId();
+        if (withInternetGateway) {
+            String igwId = ec2.createInternetGateway(r -> { }).internetGateway().internetGatewayId();
+            ec2.attachInternetGateway(r -> r.vpcId(vpcId).internetGatewayId(igwId));
+        }
+        return ec2.createSubnet(r -> r.vpcId(vpcId).cidrBlock("10.0.1.0/24")).subnet().subnetId();
+    }
+
+    private String natGateway(String subnetId) {
+        String allocationId = ec2.allocateAddress(r -> r.domain(DomainType.VPC)).allocationId();
+        return ec2.createNatGateway(r -> r.subnetId(subnetId).allocationId(allocationId))
+                .natGateway().natGatewayId();
+    }
+
+    @Test
+    void natGatewayBecomesAvailable() throws Exception {
+        String natGatewayId = natGateway(subnet(true));
+
+        try (ResourceWaiter waiter = Ec2Waiters.natGatewayAvailable(ec2)) {
+            assertEquals("available", waiter.waitFor(natGatewayId));
+        }
+    }
+
+    @Test
+    void natGatewayWithoutInternetGatewayFails() {
+        String natGatewayId = natGateway(subnet(false));
+
+        try (ResourceWaiter waiter = Ec2Waiters.natGatewayAvailable(ec2)) {
+            IllegalStateException failure = assertThrows(IllegalStateException.class,
+                    () -> waiter.waitFor(natGatewayId));
+            assertTrue(failure.getMessage().contains("failed"), failure.getMessage());
+        }
+    }
+
+    @Test
+    void deletedNatGatewaysAndTerminatedInstancesAreAwaitedTogether() throws Exception {
+        String subnetId = subnet(true);
+        String natGatewayId = natGateway(subnetId);
+        List<String> instanceIds = ec2.runInstances(r -> r.subnetId(subnetId).imageId("ami-1")
+                        .instanceType(InstanceType.T2_MICRO).minCount(2).maxCount(2))
+                .instances().stream().map(Instance::instanceId).toList();
+
+        ec2.deleteNatGateway(r -> r.natGatewayId(natGatewayId));
+        ec2.terminateInstances(r -> r.instanceIds(instanceIds));
+
+        try (ResourceWaiter natGatewayDeleted = Ec2Waiters.natGatewayDeleted(ec2);
+             ResourceWaiter instanceTerminated = Ec2Waiters.instanceTerminated(ec2)) {
+            CompletableFuture.allOf(
+                    natGatewayDeleted.await(natGatewayId),
+                    instanceTerminated.await(instanceIds.get(0)),
+                    instanceTerminated.await(instanceIds.get(1))
+            ).get(30, TimeUnit.SECONDS);
+        }
+        assertEquals(0, ec2.getResourceCounts().get("natGateway"));
+        assertEquals(0, ec2.getResourceCounts().get("instance"));
+    }
+
+    @Test
+    void unknownNatGatewayCountsAsDeleted() throws Exception {
+        try (ResourceWaiter waiter = Ec2Waiters.natGatewayDeleted(ec2)) {
+            assertEquals("deleted", waiter.waitFor("nat-0123456789abcdef0"));
+        }
+    }
+}
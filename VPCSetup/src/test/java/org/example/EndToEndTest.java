@@ -0,0 +1,146 @@
+package org.example;
+
+import org.example.emulator.Ec2Emulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.ec2.model.RunInstancesRequest;
+import software.amazon.awssdk.services.ec2.model.RunInstancesResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Parcours complets sur l'émulateur : création puis suppression, reprise depuis le journal,
+ * ramasse-miettes et plan/apply. Chaque test laisse la région vide.
+ */
+class EndToEndTest {
+    private final String prefix = "test-" + UUID.randomUUID();
+
+    // Lancement d'instances refusé tant que 'interrupted' est vrai, comme un processus tué en cours de création
+    private static final class InterruptibleEmulator extends Ec2Emulator {
+        volatile boolean interrupted;
+
+        @Override
+        public RunInstancesResponse runInstances(RunInstancesRequest request) {
+            if (interrupted) {
+                throw SdkClientException.create("Connexion interrompue");
+            }
+            return super.runInstances(request);
+        }
+    }
+
+    private final InterruptibleEmulator ec2 = new InterruptibleEmulator();
+
+    private EnvironmentSpec environment(int index) {
+        return new EnvironmentSpec(prefix + "-" + index, "us-east-1",
+                "10." + index + ".0.0/16", "10." + index + ".1.0/24", "10." + index + ".2.0/24", "ami-1", "key");
+    }
+
+    private static Path journalOf(EnvironmentSpec spec) {
+        return StateJournal.STATE_DIRECTORY.resolve(spec.getName() + ".journal");
+    }
+
+    private void assertRegionEmpty() {
+        ec2.getResourceCounts().forEach((type, count) -> assertEquals(0, count, type));
+    }
+
+    // Journaux et traces des environnements du test
+    @AfterEach
+    void deleteStateFiles() throws Exception {
+        try (Stream<Path> files = Files.list(StateJournal.STATE_DIRECTORY)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().startsWith(prefix)).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void createThenDelete() {
+        EnvironmentSpec spec = environment(1);
+
+        assertTrue(new CreationVpc(ec2, spec).setupInfrastructure());
+        assertEquals(Map.of("address", 1, "instance", 2, "internetGateway", 1, "natGateway", 1,
+                "routeTable", 2, "subnet", 2, "vpc", 1), ec2.getResourceCounts());
+        assertTrue(Files.exists(journalOf(spec)));
+
+        assertTrue(new DeleteVpc(ec2, spec).cleanup());
+        assertRegionEmpty();
+        assertFalse(Files.exists(journalOf(spec)));
+    }
+
+    @Test
+    void interruptedCreationResumesFromTheJournal() {
+        EnvironmentSpec spec = environment(2);
+
+        ec2.interrupted = true;
+        assertFalse(new CreationVpc(ec2, spec).setupInfrastructure());
+        Map<String, Integer> partial = ec2.getResourceCounts();
+        assertEquals(0, partial.get("instance"));
+        assertEquals(1, partial.get("vpc"));
+        assertTrue(Files.exists(journalOf(spec)));
+
+        // Les étapes journalisées ne sont pas rejouées : aucun doublon
+        ec2.interrupted = false;
+        assertTrue(new CreationVpc(ec2, spec).setupInfrastructure());
+        assertEquals(Map.of("address", 1, "instance", 2, "internetGateway", 1, "natGateway", 1,
+                "routeTable", 2, "subnet", 2, "vpc", 1), ec2.getResourceCounts());
+
+        assertTrue(new DeleteVpc(ec2, spec).cleanup());
+        assertRegionEmpty();
+    }
+
+    @Test
+    void garbageCollectorSweepsOnlyOrphans() throws Exception {
+        EnvironmentSpec live = environment(3);
+        EnvironmentSpec orphan = environment(4);
+        assertTrue(new CreationVpc(ec2, live).setupInfrastructure());
+        assertTrue(new CreationVpc(ec2, orphan).setupInfrastructure());
+
+        GarbageCollector collector = new GarbageCollector(ec2, Set.of(live.getName()), Duration.ZERO);
+        List<GarbageCollector.Leftovers> orphans = collector.findOrphans();
+        assertEquals(List.of(orphan.getName()), orphans.stream().map(GarbageCollector.Leftovers::getEnvironment).toList());
+
+        assertEquals(Map.of(orphan.getName(), true), collector.sweep(orphans, 2));
+        assertFalse(Files.exists(journalOf(orphan)));
+        assertEquals(1, ec2.getResourceCounts().get("vpc"));
+        assertEquals(2, ec2.getResourceCounts().get("instance"));
+
+        assertTrue(new DeleteVpc(ec2, live).cleanup());
+        assertRegionEmpty();
+    }
+
+    @Test
+    void applyConvergesToAnEmptyPlan() throws Exception {
+        EnvironmentSpec spec = environment(5);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (VpcReconciler reconciler = new VpcReconciler(ec2, VpcSpec.standard(spec))) {
+            VpcReconciler.Plan plan = reconciler.plan(executor);
+            assertFalse(plan.isEmpty());
+            reconciler.apply(plan, executor);
+            assertEquals(Map.of("address", 1, "instance", 2, "internetGateway", 1, "natGateway", 1,
+                    "routeTable", 2, "subnet", 2, "vpc", 1), ec2.getResourceCounts());
+
+            // Toutes les ressources créées portent les tags de l'environnement
+            List<GarbageCollector.Leftovers> tagged = new GarbageCollector(ec2, Set.of(), Duration.ZERO).findOrphans();
+            assertEquals(List.of(spec.getName() + ": 1 VPC, 2 sous-réseau(x), 2 instance(s), 1 passerelle(s) NAT, "
+                    + "1 IP Elastic, 1 passerelle(s) Internet, 2 table(s) de routage"), tagged.stream().map(Object::toString).toList());
+
+            // Une seconde passe ne trouve plus rien à changer
+            assertTrue(reconciler.plan(executor).isEmpty(), () -> "plan non vide");
+        } finally {
+            executor.shutdown();
+        }
+
+        // Sans journal, la suppression retrouve les ressources par découverte
+        assertTrue(new DeleteVpc(ec2, spec).cleanup());
+        assertRegionEmpty();
+    }
+}
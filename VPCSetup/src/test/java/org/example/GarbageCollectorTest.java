@@ -0,0 +1,71 @@
+package org.example;
+
+import org.example.emulator.Ec2Emulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.ec2.model.ResourceType;
+import software.amazon.awssdk.services.ec2.model.Tag;
+import software.amazon.awssdk.services.ec2.model.TagSpecification;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Délai de grâce des environnements sans date de création, et journal conservé après un échec.
+ */
+class GarbageCollectorTest {
+    private final String environment = "test-" + UUID.randomUUID();
+    private final Path journalFile = StateJournal.STATE_DIRECTORY.resolve(environment + ".journal");
+    private final Ec2Emulator ec2 = new Ec2Emulator();
+
+    @AfterEach
+    void deleteJournal() throws Exception {
+        Files.deleteIfExists(journalFile);
+    }
+
+    private String vpc(TagSpecification tags) {
+        return ec2.createVpc(r -> r.cidrBlock("10.42.0.0/16").tagSpecifications(tags)).vpc().vpcId();
+    }
+
+    @Test
+    void undatedEnvironmentsAreKeptUnlessExplicitlyIncluded() throws Exception {
+        vpc(TagSpecification.builder()
+                .resourceType(ResourceType.VPC)
+                .tags(Tag.builder().key(EnvironmentTags.ENVIRONMENT).value(environment).build())
+                .build());
+
+        assertTrue(new GarbageCollector(ec2, Set.of(), Duration.ofHours(1)).findOrphans().isEmpty());
+
+        GarbageCollector collector = new GarbageCollector(ec2, Set.of(), Duration.ofHours(1), true);
+        List<GarbageCollector.Leftovers> orphans = collector.findOrphans();
+        assertEquals(1, orphans.size());
+        assertEquals(Map.of(environment, true), collector.sweep(orphans, 1));
+        assertEquals(0, ec2.getResourceCounts().get("vpc"));
+    }
+
+    @Test
+    void failedSweepKeepsTheJournal() throws Exception {
+        String vpcId = vpc(EnvironmentTags.of(ResourceType.VPC, environment, Instant.now().minus(Duration.ofHours(2))));
+        try (StateJournal journal = StateJournal.forEnvironment(environment)) {
+            journal.record("vpc", vpcId);
+        }
+        // Sous-réseau sans tag : invisible du ramasse-miettes, il empêche la suppression du VPC
+        String straySubnetId = ec2.createSubnet(r -> r.vpcId(vpcId).cidrBlock("10.42.9.0/24")).subnet().subnetId();
+
+        GarbageCollector collector = new GarbageCollector(ec2, Set.of(), Duration.ofHours(1));
+        assertEquals(Map.of(environment, false), collector.sweep(collector.findOrphans(), 1));
+        assertTrue(Files.exists(journalFile));
+
+        ec2.deleteSubnet(r -> r.subnetId(straySubnetId));
+        assertEquals(Map.of(environment, true), collector.sweep(collector.findOrphans(), 1));
+        assertFalse(Files.exists(journalFile));
+    }
+}
@@ -0,0 +1,76 @@
+package org.example;
+
+import org.example.emulator.Ec2Emulator;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ec2.Ec2Client;
+import software.amazon.awssdk.services.ec2.Ec2ServiceClientConfiguration;
+import software.amazon.awssdk.services.ec2.model.InstanceType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitedEc2ClientTest {
+
+    // Émulateur qui, comme le client du SDK, implémente serviceClientConfiguration()
+    private static final class ConfiguredEmulator extends Ec2Emulator {
+        final Ec2ServiceClientConfiguration configuration = Ec2ServiceClientConfiguration.builder()
+                .region(Region.EU_WEST_3)
+                .build();
+
+        @Override
+        public Ec2ServiceClientConfiguration serviceClientConfiguration() {
+            return configuration;
+        }
+    }
+
+    @Test
+    void nonApiDefaultMethodsGoToTheDelegate() {
+        ConfiguredEmulator emulator = new ConfiguredEmulator();
+        Ec2Client client = RateLimitedEc2Client.wrap(emulator);
+
+        assertSame(emulator.configuration, client.serviceClientConfiguration());
+    }
+
+    @Test
+    void consumerAndNoArgumentOverloadsGoThroughTheLimiter() {
+        Ec2Client client = RateLimitedEc2Client.wrap(new Ec2Emulator());
+
+        client.createVpc(b -> b.cidrBlock("10.0.0.0/16"));
+        client.describeVpcs();
+        client.describeVpcsPaginator().vpcs().forEach(vpc -> { });
+
+        assertEquals(1, RateLimitedEc2Client.statsOf(client).get("createVpc").getCalls());
+        assertEquals(2, RateLimitedEc2Client.statsOf(client).get("describeVpcs").getCalls());
+    }
+
+    @Test
+    void clientTokensAreStableAcrossResumesAndDistinctAcrossInputs() {
+        String token = RateLimitedEc2Client.clientToken("env", "dmzInstance", "subnet-1");
+
+        assertEquals(token, RateLimitedEc2Client.clientToken("env", "dmzInstance", "subnet-1"));
+        assertNotEquals(token, RateLimitedEc2Client.clientToken("env", "lanInstance", "subnet-1"));
+        assertNotEquals(token, RateLimitedEc2Client.clientToken("env", "dmzInstance", "subnet-2"));
+        assertNotEquals(token, RateLimitedEc2Client.clientToken("other", "dmzInstance", "subnet-1"));
+        assertTrue(token.length() <= 64);
+    }
+
+    @Test
+    void resumedLaunchWithTheSameTokenReturnsTheSameInstance() {
+        Ec2Emulator emulator = new Ec2Emulator();
+        Ec2Client client = RateLimitedEc2Client.wrap(emulator);
+        String vpcId = client.createVpc(b -> b.cidrBlock("10.0.0.0/16")).vpc().vpcId();
+        String subnetId = client.createSubnet(b -> b.vpcId(vpcId).cidrBlock("10.0.1.0/24")).subnet().subnetId();
+        String token = RateLimitedEc2Client.clientToken("env", "dmzInstance", subnetId);
+
+        // Deux processus successifs : le second reprend l'étape interrompue
+        String first = client.runInstances(b -> b.subnetId(subnetId).imageId("ami-1")
+                .instanceType(InstanceType.T2_MICRO).minCount(1).maxCount(1).clientToken(token))
+                .instances().get(0).instanceId();
+        String resumed = RateLimitedEc2Client.wrap(emulator).runInstances(b -> b.subnetId(subnetId).imageId("ami-1")
+                .instanceType(InstanceType.T2_MICRO).minCount(1).maxCount(1).clientToken(token))
+                .instances().get(0).instanceId();
+
+        assertEquals(first, resumed);
+        assertEquals(1, emulator.getResourceCounts().get("instance"));
+    }
+}
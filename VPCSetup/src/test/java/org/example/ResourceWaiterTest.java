@@ -0,0 +1,158 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ResourceWaiter contre une sonde dont les états changent selon un calendrier : chaque ressource
+ * passe par une suite d'états, chacun atteint à une date donnée après le début du test.
+ */
+class ResourceWaiterTest {
+    private static final Backoff FAST_BACKOFF = new Backoff(Duration.ofMillis(10), Duration.ofMillis(40), 1.5, 0.0);
+
+    // États à dates fixes (millisecondes depuis la création de la sonde), et appels reçus
+    private static final class ScheduledProbe implements ResourceWaiter.Probe {
+        private final long start = System.nanoTime();
+        private final Map<String, NavigableMap<Long, String>> schedules = new HashMap<>();
+        final List<List<String>> calls = new CopyOnWriteArrayList<>();
+
+        ScheduledProbe at(String id, long millis, String state) {
+            schedules.computeIfAbsent(id, i -> new TreeMap<>()).put(millis, state);
+            return this;
+        }
+
+        @Override
+        public Map<String, String> describe(Collection<String> ids) {
+            calls.add(new ArrayList<>(ids));
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Map<String, String> states = new HashMap<>();
+            for (String id : ids) {
+                NavigableMap<Long, String> schedule = schedules.get(id);
+                Map.Entry<Long, String> current = schedule == null ? null : schedule.floorEntry(elapsed);
+                if (current != null) {
+                    states.put(id, current.getValue());
+                }
+            }
+            return states;
+        }
+    }
+
+    private static ResourceWaiter natGatewayWaiter(ResourceWaiter.Probe probe, Duration timeout) {
+        return new ResourceWaiter("Passerelle NAT", probe, Set.of("available"), Set.of("failed"),
+                FAST_BACKOFF, timeout);
+    }
+
+    @Test
+    void resolvesOnceTheResourceIsReady() throws Exception {
+        ScheduledProbe probe = new ScheduledProbe()
+                .at("nat-1", 0, "pending")
+                .at("nat-1", 150, "available");
+
+        try (ResourceWaiter waiter = natGatewayWaiter(probe, Duration.ofSeconds(5))) {
+            long start = System.nanoTime();
+            assertEquals("available", waiter.waitFor("nat-1"));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // Détectée au plus un délai maximal (40 ms) après la transition, à l'ordonnancement près
+            assertTrue(elapsedMillis >= 150, "résolue avant la transition : " + elapsedMillis + " ms");
+            assertTrue(elapsedMillis < 1000, "résolue trop tard : " + elapsedMillis + " ms");
+            assertTrue(probe.calls.size() > 1);
+        }
+    }
+
+    @Test
+    void failsOnTerminalState() {
+        ScheduledProbe probe = new ScheduledProbe()
+                .at("nat-1", 0, "pending")
+                .at("nat-1", 50, "failed");
+
+        try (ResourceWaiter waiter = natGatewayWaiter(probe, Duration.ofSeconds(30))) {
+            long start = System.nanoTime();
+            IllegalStateException failure = assertThrows(IllegalStateException.class, () -> waiter.waitFor("nat-1"));
+            assertTrue(failure.getMessage().contains("nat-1"), failure.getMessage());
+            assertTrue(failure.getMessage().contains("failed"), failure.getMessage());
+            // Sans attendre l'échéance
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        }
+    }
+
+    @Test
+    void timesOutAtTheDeadlineWithTheLastObservedState() {
+        ScheduledProbe probe = new ScheduledProbe().at("nat-1", 0, "pending");
+
+        try (ResourceWaiter waiter = natGatewayWaiter(probe, Duration.ofMillis(200))) {
+            long start = System.nanoTime();
+            TimeoutException timeout = assertThrows(TimeoutException.class, () -> waiter.waitFor("nat-1"));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(timeout.getMessage().contains("pending"), timeout.getMessage());
+            assertTrue(elapsedMillis >= 200, "expirée avant l'échéance : " + elapsedMillis + " ms");
+            assertTrue(elapsedMillis < 2000, "expirée trop tard : " + elapsedMillis + " ms");
+        }
+    }
+
+    @Test
+    void keepsProbeErrorsAsTheCauseOfTheTimeout() {
+        ResourceWaiter.Probe failingProbe = ids -> {
+            throw new IllegalStateException("RequestLimitExceeded");
+        };
+
+        try (ResourceWaiter waiter = natGatewayWaiter(failingProbe, Duration.ofMillis(100))) {
+            TimeoutException timeout = assertThrows(TimeoutException.class, () -> waiter.waitFor("nat-1"));
+            assertNotNull(timeout.getCause());
+            assertEquals("RequestLimitExceeded", timeout.getCause().getMessage());
+        }
+    }
+
+    @Test
+    void pollsPendingResourcesInOneCall() throws Exception {
+        ScheduledProbe probe = new ScheduledProbe();
+        List<String> ids = List.of("nat-1", "nat-2", "nat-3", "nat-4", "nat-5");
+        probe.at("nat-1", 0, "available");
+        for (String id : ids.subList(1, ids.size())) {
+            probe.at(id, 0, "pending").at(id, 100, "available");
+        }
+
+        try (ResourceWaiter waiter = natGatewayWaiter(probe, Duration.ofSeconds(5))) {
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            // Enregistrées sous le verrou de l'attente : la première interrogation les voit toutes
+            synchronized (waiter) {
+                for (String id : ids) {
+                    results.add(waiter.await(id));
+                }
+            }
+            for (CompletableFuture<String> result : results) {
+                assertEquals("available", result.get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        // Une seule interrogation par réveil pour tout le lot ; une ressource résolue n'est plus demandée
+        assertEquals(ids, probe.calls.get(0));
+        for (List<String> call : probe.calls.subList(1, probe.calls.size())) {
+            assertEquals(ids.subList(1, ids.size()), call);
+        }
+        assertTrue(probe.calls.size() < 20, "trop d'interrogations : " + probe.calls.size());
+    }
+
+    @Test
+    void sharesTheWaitForTheSameResource() throws Exception {
+        ScheduledProbe probe = new ScheduledProbe().at("nat-1", 0, "available");
+
+        try (ResourceWaiter waiter = natGatewayWaiter(probe, Duration.ofSeconds(5))) {
+            CompletableFuture<String> first;
+            CompletableFuture<String> second;
+            synchronized (waiter) {
+                first = waiter.await("nat-1");
+                second = waiter.await("nat-1");
+            }
+            assertSame(first, second);
+            assertEquals("available", first.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, probe.calls.size());
+    }
+}
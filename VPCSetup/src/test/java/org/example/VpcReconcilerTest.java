@@ -0,0 +1,133 @@
+package org.example;
+
+import org.example.emulator.Ec2Emulator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.ec2.model.InstanceType;
+import software.amazon.awssdk.services.ec2.model.ResourceType;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Plans minimaux sur un environnement déjà appliqué : seule la différence introduite est planifiée,
+ * et son application ne fait aucun autre appel mutant.
+ */
+class VpcReconcilerTest {
+    private final EnvironmentSpec environment = new EnvironmentSpec("test-" + UUID.randomUUID(), "us-east-1",
+            "10.42.0.0/16", "10.42.1.0/24", "10.42.2.0/24", "ami-1", "key");
+    private final VpcSpec spec = VpcSpec.standard(environment);
+    private final Ec2Emulator ec2 = new Ec2Emulator();
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private VpcReconciler reconciler;
+    // Identifiants des ressources de la spec après la première application
+    private Map<String, String> ids;
+
+    @BeforeEach
+    void applyStandardSpec() throws Exception {
+        reconciler = new VpcReconciler(ec2, spec);
+        ids = reconciler.apply(reconciler.plan(executor), executor);
+    }
+
+    @AfterEach
+    void shutdown() {
+        reconciler.close();
+        executor.shutdown();
+    }
+
+    // Appels hors Describe* reçus par l'émulateur depuis 'before'
+    private Map<String, Long> mutatingCallsSince(Map<String, Long> before) {
+        Map<String, Long> calls = new TreeMap<>();
+        ec2.getCallCounts().forEach((action, count) -> {
+            long delta = count - before.getOrDefault(action, 0L);
+            if (!action.startsWith("describe") && delta > 0) {
+                calls.put(action, delta);
+            }
+        });
+        return calls;
+    }
+
+    @Test
+    void changedRouteTargetIsASingleUpdate() throws Exception {
+        // La route privée contourne la NAT
+        ec2.replaceRoute(r -> r.routeTableId(ids.get("routeTable:private"))
+                .destinationCidrBlock("0.0.0.0/0")
+                .gatewayId(ids.get("internetGateway")));
+
+        VpcReconciler.Plan plan = reconciler.plan(executor);
+        assertEquals(1, plan.getChanges().size(), plan::toString);
+        assertEquals("route:private:0.0.0.0/0", plan.getChanges().get(0).step);
+        assertEquals(VpcReconciler.Action.UPDATE, plan.getChanges().get(0).action);
+
+        Map<String, Long> before = ec2.getCallCounts();
+        reconciler.apply(plan, executor);
+        assertEquals(Map.of("replaceRoute", 1L), mutatingCallsSince(before));
+        assertTrue(reconciler.plan(executor).isEmpty());
+    }
+
+    @Test
+    void routeOutsideTheSpecIsASingleDelete() throws Exception {
+        ec2.createRoute(r -> r.routeTableId(ids.get("routeTable:public"))
+                .destinationCidrBlock("10.99.0.0/16")
+                .gatewayId(ids.get("internetGateway")));
+
+        VpcReconciler.Plan plan = reconciler.plan(executor);
+        assertEquals(1, plan.getChanges().size(), plan::toString);
+        assertEquals("deleteRoute:public:10.99.0.0/16", plan.getChanges().get(0).step);
+        assertEquals(VpcReconciler.Action.DELETE, plan.getChanges().get(0).action);
+
+        Map<String, Long> before = ec2.getCallCounts();
+        reconciler.apply(plan, executor);
+        assertEquals(Map.of("deleteRoute", 1L), mutatingCallsSince(before));
+        assertTrue(reconciler.plan(executor).isEmpty());
+    }
+
+    @Test
+    void straySubnetAndInstanceAreReportedAndKept() throws Exception {
+        String straySubnetId = ec2.createSubnet(r -> r.vpcId(ids.get("vpc")).cidrBlock("10.42.9.0/24"))
+                .subnet().subnetId();
+        String strayInstanceId = ec2.runInstances(r -> r.subnetId(straySubnetId).imageId("ami-1")
+                .instanceType(InstanceType.T2_MICRO).minCount(1).maxCount(1)).instances().get(0).instanceId();
+
+        VpcReconciler.Plan plan = reconciler.plan(executor);
+        assertTrue(plan.isEmpty(), plan::toString);
+        assertEquals(List.of("sous-réseau " + straySubnetId + " 10.42.9.0/24",
+                "instance " + strayInstanceId + " dans " + straySubnetId), plan.getUnmanaged());
+
+        Map<String, Long> before = ec2.getCallCounts();
+        reconciler.apply(plan, executor);
+        assertEquals(Map.of(), mutatingCallsSince(before));
+        assertEquals(3, ec2.getResourceCounts().get("subnet"));
+        assertEquals(3, ec2.getResourceCounts().get("instance"));
+    }
+
+    @Test
+    void ambiguousVpcIsRefused() {
+        // Second VPC revendiquant le même environnement
+        ec2.createVpc(r -> r.cidrBlock("10.43.0.0/16")
+                .tagSpecifications(EnvironmentTags.of(ResourceType.VPC, environment.getName(), Instant.now())));
+
+        IllegalStateException failure = assertThrows(IllegalStateException.class, () -> reconciler.plan(executor));
+        assertTrue(failure.getMessage().contains(ids.get("vpc")), failure.getMessage());
+    }
+
+    @Test
+    void vpcOfAnotherEnvironmentIsNotAdopted() throws Exception {
+        // Même CIDR, autre environnement : la spec crée son propre VPC
+        VpcSpec other = VpcSpec.standard(new EnvironmentSpec("test-" + UUID.randomUUID(), "us-east-1",
+                "10.42.0.0/16", "10.42.1.0/24", "10.42.2.0/24", "ami-1", "key"));
+        try (VpcReconciler otherReconciler = new VpcReconciler(ec2, other)) {
+            VpcReconciler.Plan plan = otherReconciler.plan(executor);
+            assertEquals(VpcReconciler.Action.CREATE, plan.getChanges().get(0).action);
+            assertEquals("vpc", plan.getChanges().get(0).step);
+        }
+    }
+}
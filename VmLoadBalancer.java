@@ -0,0 +1,119 @@
+package org.cloudbus.cloudsim.examples;
+
+import org.cloudbus.cloudsim.Vm;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Politique de choix de la VM pour chaque cloudlet, appelée par StreamingDatacenterBroker à
+ * l'arrivée du cloudlet, avec la charge en cours de chaque VM.
+ */
+public interface VmLoadBalancer {
+
+    // Charge d'une VM : cloudlets envoyés et pas encore revenus
+    final class VmLoad {
+        int outstanding;
+        long outstandingMi;
+
+        public int getOutstanding() {
+            return outstanding;
+        }
+
+        public long getOutstandingMi() {
+            return outstandingMi;
+        }
+    }
+
+    Vm select(List<Vm> vms, Map<Integer, VmLoad> loads);
+
+    static VmLoadBalancer forName(String name, Random random) {
+        switch (name) {
+            case "round-robin":
+                return new RoundRobin();
+            case "least-work":
+                return new LeastOutstandingWork();
+            case "p2c":
+                return new PowerOfTwoChoices(random);
+            case "jsq":
+                return new JoinShortestQueue();
+            default:
+                throw new IllegalArgumentException("Politique de répartition inconnue : " + name);
+        }
+    }
+
+    // Comportement de DatacenterBroker : une VM après l'autre, sans regarder la charge
+    class RoundRobin implements VmLoadBalancer {
+        private int next;
+
+        @Override
+        public Vm select(List<Vm> vms, Map<Integer, VmLoad> loads) {
+            Vm vm = vms.get(next % vms.size());
+            next = (next + 1) % vms.size();
+            return vm;
+        }
+    }
+
+    // Moins de travail restant rapporté à la capacité : la VM qui se videra le plus tôt
+    class LeastOutstandingWork implements VmLoadBalancer {
+        @Override
+        public Vm select(List<Vm> vms, Map<Integer, VmLoad> loads) {
+            Vm best = null;
+            double bestDrainTime = Double.MAX_VALUE;
+            for (Vm vm : vms) {
+                double drainTime = loads.get(vm.getId()).outstandingMi / (vm.getMips() * vm.getNumberOfPes());
+                if (drainTime < bestDrainTime) {
+                    best = vm;
+                    bestDrainTime = drainTime;
+                }
+            }
+            return best;
+        }
+    }
+
+    // Deux VMs tirées au hasard, on garde la moins chargée
+    class PowerOfTwoChoices implements VmLoadBalancer {
+        private final Random random;
+
+        PowerOfTwoChoices(Random random) {
+            this.random = random;
+        }
+
+        @Override
+        public Vm select(List<Vm> vms, Map<Integer, VmLoad> loads) {
+            if (vms.size() == 1) {
+                return vms.get(0);
+            }
+            int first = random.nextInt(vms.size());
+            int second = random.nextInt(vms.size() - 1);
+            if (second >= first) {
+                second++;
+            }
+            Vm a = vms.get(first);
+            Vm b = vms.get(second);
+            return loads.get(a.getId()).outstanding <= loads.get(b.getId()).outstanding ? a : b;
+        }
+    }
+
+    // File la plus courte ; les égalités tournent pour ne pas toujours favoriser la première VM
+    class JoinShortestQueue implements VmLoadBalancer {
+        private int start;
+
+        @Override
+        public Vm select(List<Vm> vms, Map<Integer, VmLoad> loads) {
+            Vm best = null;
+            int bestOutstanding = Integer.MAX_VALUE;
+            for (int i = 0; i < vms.size(); i++) {
+                Vm vm = vms.get((start + i) % vms.size());
+                int outstanding = loads.get(vm.getId()).outstanding;
+                if (outstanding < bestOutstanding) {
+                    best = vm;
+                    bestOutstanding = outstanding;
+                }
+            }
+            start = (start + 1) % vms.size();
+            return best;
+        }
+    }
+}
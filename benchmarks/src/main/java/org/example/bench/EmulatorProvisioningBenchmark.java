@@ -0,0 +1,61 @@
+package org.example.bench;
+
+import org.example.CreationVpc;
+import org.example.DeleteVpc;
+import org.example.EnvironmentSpec;
+import org.example.RateLimitedEc2Client;
+import org.example.StateJournal;
+import org.example.emulator.Ec2Emulator;
+import org.example.emulator.EmulatorConfig;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.ec2.Ec2Client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aller-retour setupInfrastructure puis cleanup contre l'émulateur EC2, derrière
+ * RateLimitedEc2Client. 'instant' mesure le surcoût client avec un état réaliste (dépendances,
+ * transitions) ; 'realistic' rejoue latences, attentes NAT et quotas d'EC2, accélérés 100 fois.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmulatorProvisioningBenchmark {
+    private static final double SPEEDUP = 100;
+
+    @Param({"instant", "realistic"})
+    public String profile;
+
+    private Ec2Client ec2Client;
+    private PrintStream stdout;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        EmulatorConfig config = profile.equals("instant")
+                ? EmulatorConfig.instant()
+                : EmulatorConfig.realistic().scaled(SPEEDUP);
+        ec2Client = RateLimitedEc2Client.wrap(new Ec2Emulator(config));
+        Files.deleteIfExists(StateJournal.STATE_DIRECTORY.resolve(EnvironmentSpec.defaults().getName() + ".journal"));
+
+        // Les messages de progression ne doivent pas entrer dans la mesure
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public boolean roundTrip() {
+        return new CreationVpc(ec2Client).setupInfrastructure() & new DeleteVpc(ec2Client).cleanup();
+    }
+}
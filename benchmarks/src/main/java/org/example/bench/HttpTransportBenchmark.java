@@ -0,0 +1,114 @@
+package org.example.bench;
+
+import com.sun.net.httpserver.HttpServer;
+import org.example.Ec2ClientFactory;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.services.ec2.Ec2Client;
+import software.amazon.awssdk.services.ec2.model.DescribeVpcsResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût d'un appel DescribeVpcs selon le transport HTTP d'Ec2ClientFactory, contre un point
+ * d'accès HTTP local qui répond une réponse fixe : seul le côté client est mesuré (signature,
+ * sérialisation, pool de connexions).
+ * <ul>
+ *     <li>warm : fabrique partagée, connexions réutilisées ;</li>
+ *     <li>warmContended : idem sur 16 threads, le pool est sollicité ;</li>
+ *     <li>cold : fabrique créée et fermée à chaque appel, comme un client par environnement.</li>
+ * </ul>
+ * Le bouchon est en HTTP clair : le coût d'une poignée de main TLS évitée par la réutilisation
+ * s'ajoute en production à l'écart entre warm et cold.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HttpTransportBenchmark {
+    private static final String REGION = "eu-west-3";
+    private static final byte[] DESCRIBE_VPCS_RESPONSE = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<DescribeVpcsResponse xmlns=\"http://ec2.amazonaws.com/doc/2016-11-15/\">"
+            + "<requestId>00000000-0000-0000-0000-000000000000</requestId>"
+            + "<vpcSet><item><vpcId>vpc-00000000000000001</vpcId><state>available</state>"
+            + "<cidrBlock>10.0.0.0/16</cidrBlock></item></vpcSet>"
+            + "</DescribeVpcsResponse>").getBytes(StandardCharsets.UTF_8);
+
+    @Param({"APACHE", "URL_CONNECTION", "CRT"})
+    public Ec2ClientFactory.Transport transport;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private URI endpoint;
+    private Ec2ClientFactory factory;
+    private Ec2Client ec2Client;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Sans TCP_NODELAY, Nagle et l'ACK retardé ajoutent ~40 ms à chaque réponse du bouchon
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+        server.createContext("/", exchange -> {
+            // Corps lu en entier, sans quoi la connexion ne peut pas être réutilisée
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/xml;charset=UTF-8");
+            exchange.sendResponseHeaders(200, DESCRIBE_VPCS_RESPONSE.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(DESCRIBE_VPCS_RESPONSE);
+            }
+        });
+        serverExecutor = Executors.newFixedThreadPool(16);
+        server.setExecutor(serverExecutor);
+        server.start();
+        endpoint = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+
+        factory = newFactory();
+        ec2Client = factory.sdkClient(REGION);
+    }
+
+    @TearDown
+    public void tearDown() {
+        factory.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public DescribeVpcsResponse warm() {
+        return ec2Client.describeVpcs();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public DescribeVpcsResponse warmContended() {
+        return ec2Client.describeVpcs();
+    }
+
+    @Benchmark
+    public DescribeVpcsResponse cold() {
+        try (Ec2ClientFactory coldFactory = newFactory()) {
+            return coldFactory.sdkClient(REGION).describeVpcs();
+        }
+    }
+
+    private Ec2ClientFactory newFactory() {
+        return Ec2ClientFactory.builder()
+                .transport(transport)
+                .endpointOverride(endpoint)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("AKIDEXAMPLE", "secret")))
+                .build();
+    }
+}
@@ -0,0 +1,261 @@
+package org.example.bench;
+
+import software.amazon.awssdk.services.ec2.Ec2Client;
+import software.amazon.awssdk.services.ec2.model.*;
+
+import java.time.Duration;
+
+/**
+ * Bouchon local d'Ec2Client : réponses préconstruites, sans réseau. Seuls les états de la
+ * passerelle NAT et des instances évoluent, selon un calendrier : chaque transition (création,
+ * suppression, terminaison) aboutit après le délai de stabilisation. Avec un délai nul, les
+ * attentes de CreationVpc et DeleteVpc se terminent immédiatement.
+ */
+public class StubEc2Client implements Ec2Client {
+    private static final String VPC_ID = "vpc-0000000000000001";
+    private static final String SUBNET_ID = "subnet-0000000000000001";
+    private static final String LAN_SUBNET_ID = "subnet-0000000000000002";
+    private static final String IGW_ID = "igw-0000000000000001";
+    private static final String ROUTE_TABLE_ID = "rtb-0000000000000001";
+    private static final String INSTANCE_ID = "i-0000000000000001";
+    private static final String LAN_INSTANCE_ID = "i-0000000000000002";
+    private static final String ALLOCATION_ID = "eipalloc-0000000000000001";
+    private static final String NAT_GATEWAY_ID = "nat-0000000000000001";
+
+    private final CreateVpcResponse createVpc = CreateVpcResponse.builder()
+            .vpc(Vpc.builder().vpcId(VPC_ID).build()).build();
+    private final CreateSubnetResponse createSubnet = CreateSubnetResponse.builder()
+            .subnet(Subnet.builder().subnetId(SUBNET_ID).build()).build();
+    private final CreateInternetGatewayResponse createInternetGateway = CreateInternetGatewayResponse.builder()
+            .internetGateway(InternetGateway.builder().internetGatewayId(IGW_ID).build()).build();
+    private final CreateRouteTableResponse createRouteTable = CreateRouteTableResponse.builder()
+            .routeTable(RouteTable.builder().routeTableId(ROUTE_TABLE_ID).build()).build();
+    private final RunInstancesResponse runInstances = RunInstancesResponse.builder()
+            .instances(Instance.builder().instanceId(INSTANCE_ID).build()).build();
+    private final AllocateAddressResponse allocateAddress = AllocateAddressResponse.builder()
+            .allocationId(ALLOCATION_ID).build();
+    private final NatGateway natGateway = NatGateway.builder()
+            .natGatewayId(NAT_GATEWAY_ID)
+            .state(NatGatewayState.AVAILABLE)
+            .natGatewayAddresses(NatGatewayAddress.builder().allocationId(ALLOCATION_ID).build())
+            .build();
+    private final CreateNatGatewayResponse createNatGateway = CreateNatGatewayResponse.builder()
+            .natGateway(natGateway).build();
+    private final DescribeNatGatewaysResponse describeNatGateways = natGatewaysResponse(NatGatewayState.AVAILABLE);
+    private final DescribeNatGatewaysResponse describePendingNatGateways = natGatewaysResponse(NatGatewayState.PENDING);
+    private final DescribeNatGatewaysResponse describeDeletingNatGateways = natGatewaysResponse(NatGatewayState.DELETING);
+    private final DescribeNatGatewaysResponse describeDeletedNatGateways = natGatewaysResponse(NatGatewayState.DELETED);
+    private final DescribeVpcsResponse describeVpcs = DescribeVpcsResponse.builder()
+            .vpcs(Vpc.builder().vpcId(VPC_ID).build()).build();
+    private final DescribeSubnetsResponse describeSubnets = DescribeSubnetsResponse.builder()
+            .subnets(Subnet.builder().subnetId(SUBNET_ID).cidrBlock("192.168.1.0/24").build(),
+                    Subnet.builder().subnetId(LAN_SUBNET_ID).cidrBlock("192.168.2.0/24").build())
+            .build();
+    private final DescribeInstancesResponse describeRunningInstances = instancesResponse(InstanceStateName.RUNNING);
+    private final DescribeInstancesResponse describeShuttingDownInstances = instancesResponse(InstanceStateName.SHUTTING_DOWN);
+    private final DescribeInstancesResponse describeTerminatedInstances = instancesResponse(InstanceStateName.TERMINATED);
+    private final DescribeInternetGatewaysResponse describeInternetGateways = DescribeInternetGatewaysResponse.builder()
+            .internetGateways(InternetGateway.builder().internetGatewayId(IGW_ID).build()).build();
+    private final DescribeRouteTablesResponse describeRouteTables = DescribeRouteTablesResponse.builder()
+            .routeTables(RouteTable.builder()
+                    .routeTableId(ROUTE_TABLE_ID)
+                    .associations(RouteTableAssociation.builder().subnetId(SUBNET_ID).build(),
+                            RouteTableAssociation.builder().subnetId(LAN_SUBNET_ID).build())
+                    .build())
+            .build();
+
+    private final long settleNanos;
+
+    // Date (System.nanoTime) de la dernière transition demandée
+    private volatile long natGatewayCreatedAt;
+    private volatile long natGatewayDeletedAt;
+    private volatile long instancesTerminatedAt;
+    private volatile boolean natGatewayDeleted;
+    private volatile boolean instancesTerminated;
+
+    public StubEc2Client() {
+        this(Duration.ZERO);
+    }
+
+    public StubEc2Client(Duration settleDelay) {
+        this.settleNanos = settleDelay.toNanos();
+        // Ressources préexistantes déjà stables
+        long settledAt = System.nanoTime() - settleNanos;
+        this.natGatewayCreatedAt = settledAt;
+        this.natGatewayDeletedAt = settledAt;
+        this.instancesTerminatedAt = settledAt;
+    }
+
+    private DescribeNatGatewaysResponse natGatewaysResponse(NatGatewayState state) {
+        return DescribeNatGatewaysResponse.builder()
+                .natGateways(natGateway.toBuilder().state(state).build()).build();
+    }
+
+    private static DescribeInstancesResponse instancesResponse(InstanceStateName state) {
+        return DescribeInstancesResponse.builder()
+                .reservations(Reservation.builder().instances(
+                        instance(INSTANCE_ID, SUBNET_ID, state),
+                        instance(LAN_INSTANCE_ID, LAN_SUBNET_ID, state)
+                ).build())
+                .build();
+    }
+
+    private static Instance instance(String instanceId, String subnetId, InstanceStateName state) {
+        return Instance.builder()
+                .instanceId(instanceId)
+                .subnetId(subnetId)
+                .state(InstanceState.builder().name(state).build())
+                .build();
+    }
+
+    private boolean settled(long since) {
+        return System.nanoTime() - since >= settleNanos;
+    }
+
+    @Override
+    public CreateVpcResponse createVpc(CreateVpcRequest request) {
+        return createVpc;
+    }
+
+    @Override
+    public CreateSubnetResponse createSubnet(CreateSubnetRequest request) {
+        return createSubnet;
+    }
+
+    @Override
+    public CreateInternetGatewayResponse createInternetGateway(CreateInternetGatewayRequest request) {
+        return createInternetGateway;
+    }
+
+    @Override
+    public AttachInternetGatewayResponse attachInternetGateway(AttachInternetGatewayRequest request) {
+        return AttachInternetGatewayResponse.builder().build();
+    }
+
+    @Override
+    public CreateRouteTableResponse createRouteTable(CreateRouteTableRequest request) {
+        return createRouteTable;
+    }
+
+    @Override
+    public CreateRouteResponse createRoute(CreateRouteRequest request) {
+        return CreateRouteResponse.builder().returnValue(true).build();
+    }
+
+    @Override
+    public AssociateRouteTableResponse associateRouteTable(AssociateRouteTableRequest request) {
+        return AssociateRouteTableResponse.builder().build();
+    }
+
+    @Override
+    public ModifySubnetAttributeResponse modifySubnetAttribute(ModifySubnetAttributeRequest request) {
+        return ModifySubnetAttributeResponse.builder().build();
+    }
+
+    @Override
+    public RunInstancesResponse runInstances(RunInstancesRequest request) {
+        instancesTerminated = false;
+        return runInstances;
+    }
+
+    @Override
+    public AllocateAddressResponse allocateAddress(AllocateAddressRequest request) {
+        return allocateAddress;
+    }
+
+    @Override
+    public CreateNatGatewayResponse createNatGateway(CreateNatGatewayRequest request) {
+        natGatewayCreatedAt = System.nanoTime();
+        natGatewayDeleted = false;
+        return createNatGateway;
+    }
+
+    @Override
+    public DescribeNatGatewaysResponse describeNatGateways(DescribeNatGatewaysRequest request) {
+        if (natGatewayDeleted) {
+            return settled(natGatewayDeletedAt) ? describeDeletedNatGateways : describeDeletingNatGateways;
+        }
+        return settled(natGatewayCreatedAt) ? describeNatGateways : describePendingNatGateways;
+    }
+
+    @Override
+    public DescribeVpcsResponse describeVpcs(DescribeVpcsRequest request) {
+        return describeVpcs;
+    }
+
+    @Override
+    public DescribeSubnetsResponse describeSubnets(DescribeSubnetsRequest request) {
+        return describeSubnets;
+    }
+
+    @Override
+    public DescribeInstancesResponse describeInstances(DescribeInstancesRequest request) {
+        if (instancesTerminated) {
+            return settled(instancesTerminatedAt) ? describeTerminatedInstances : describeShuttingDownInstances;
+        }
+        return describeRunningInstances;
+    }
+
+    @Override
+    public DescribeInternetGatewaysResponse describeInternetGateways(DescribeInternetGatewaysRequest request) {
+        return describeInternetGateways;
+    }
+
+    @Override
+    public DescribeRouteTablesResponse describeRouteTables(DescribeRouteTablesRequest request) {
+        return describeRouteTables;
+    }
+
+    @Override
+    public TerminateInstancesResponse terminateInstances(TerminateInstancesRequest request) {
+        instancesTerminatedAt = System.nanoTime();
+        instancesTerminated = true;
+        return TerminateInstancesResponse.builder().build();
+    }
+
+    @Override
+    public DeleteNatGatewayResponse deleteNatGateway(DeleteNatGatewayRequest request) {
+        natGatewayDeletedAt = System.nanoTime();
+        natGatewayDeleted = true;
+        return DeleteNatGatewayResponse.builder().natGatewayId(NAT_GATEWAY_ID).build();
+    }
+
+    @Override
+    public ReleaseAddressResponse releaseAddress(ReleaseAddressRequest request) {
+        return ReleaseAddressResponse.builder().build();
+    }
+
+    @Override
+    public DeleteSubnetResponse deleteSubnet(DeleteSubnetRequest request) {
+        return DeleteSubnetResponse.builder().build();
+    }
+
+    @Override
+    public DeleteRouteTableResponse deleteRouteTable(DeleteRouteTableRequest request) {
+        return DeleteRouteTableResponse.builder().build();
+    }
+
+    @Override
+    public DetachInternetGatewayResponse detachInternetGateway(DetachInternetGatewayRequest request) {
+        return DetachInternetGatewayResponse.builder().build();
+    }
+
+    @Override
+    public DeleteInternetGatewayResponse deleteInternetGateway(DeleteInternetGatewayRequest request) {
+        return DeleteInternetGatewayResponse.builder().build();
+    }
+
+    @Override
+    public DeleteVpcResponse deleteVpc(DeleteVpcRequest request) {
+        return DeleteVpcResponse.builder().build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.bench;
+
+import org.example.CreationVpc;
+import org.example.DeleteVpc;
+import org.example.EnvironmentSpec;
+import org.example.StateJournal;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Surcoût côté client de setupInfrastructure et cleanup : construction des requêtes et
+ * enchaînement des appels, contre un Ec2Client bouchon qui répond immédiatement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VpcProvisioningBenchmark {
+    private CreationVpc creationVpc;
+    private DeleteVpc deleteVpc;
+    private PrintStream stdout;
+
+    @Setup
+    public void setUp() {
+        StubEc2Client ec2Client = new StubEc2Client();
+        creationVpc = new CreationVpc(ec2Client);
+        deleteVpc = new DeleteVpc(ec2Client);
+
+        // Les messages de progression ne doivent pas entrer dans la mesure
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    // Sans journal, chaque appel refait le provisioning complet au lieu de reprendre
+    @Setup(Level.Invocation)
+    public void resetJournal() throws IOException {
+        Files.deleteIfExists(StateJournal.STATE_DIRECTORY.resolve(EnvironmentSpec.defaults().getName() + ".journal"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public void setupInfrastructure() {
+        creationVpc.setupInfrastructure();
+    }
+
+    @Benchmark
+    public void cleanup() {
+        deleteVpc.cleanup();
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.bench;
+
+import org.example.Ec2Waiters;
+import org.example.ResourceWaiter;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.ec2.model.CreateNatGatewayRequest;
+import software.amazon.awssdk.services.ec2.model.DeleteNatGatewayRequest;
+import software.amazon.awssdk.services.ec2.model.TerminateInstancesRequest;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Délai de détection des attentes : temps entre la demande d'une transition et son observation,
+ * contre un bouchon dont l'état aboutit après settleMillis. L'écart avec settleMillis est le
+ * temps perdu à dormir après que la ressource est prête.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class WaiterBenchmark {
+
+    @Param({"0", "500", "3000"})
+    public long settleMillis;
+
+    private StubEc2Client ec2Client;
+    private ResourceWaiter natGatewayAvailable;
+    private ResourceWaiter natGatewayDeleted;
+    private ResourceWaiter instanceTerminated;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        ec2Client = new StubEc2Client(Duration.ofMillis(settleMillis));
+        natGatewayAvailable = Ec2Waiters.natGatewayAvailable(ec2Client);
+        natGatewayDeleted = Ec2Waiters.natGatewayDeleted(ec2Client);
+        instanceTerminated = Ec2Waiters.instanceTerminated(ec2Client);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        natGatewayAvailable.close();
+        natGatewayDeleted.close();
+        instanceTerminated.close();
+    }
+
+    @Benchmark
+    public String natGatewayAvailable() throws Exception {
+        String natGatewayId = ec2Client.createNatGateway(CreateNatGatewayRequest.builder().build())
+                .natGateway().natGatewayId();
+        return natGatewayAvailable.waitFor(natGatewayId);
+    }
+
+    // Suppression de la NAT et terminaison de l'instance attendues en parallèle
+    @Benchmark
+    public Object teardown() {
+        String natGatewayId = ec2Client.deleteNatGateway(DeleteNatGatewayRequest.builder().build()).natGatewayId();
+        ec2Client.terminateInstances(TerminateInstancesRequest.builder().build());
+        return CompletableFuture.allOf(
+                natGatewayDeleted.await(natGatewayId),
+                instanceTerminated.await("i-0000000000000001")
+        ).join();
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.bench.simulation;
+
+import org.cloudbus.cloudsim.examples.LatencyRecorder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût du calcul des métriques : enregistrement d'un temps de réponse et lecture des percentiles.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MetricsBenchmark {
+    private static final int SAMPLES = 1 << 16;
+
+    private final double[] responseTimes = new double[SAMPLES];
+    private LatencyRecorder recorder;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        recorder = new LatencyRecorder();
+        for (int i = 0; i < SAMPLES; i++) {
+            responseTimes[i] = -Math.log(1.0 - random.nextDouble()) * 2.0;
+            recorder.recordSeconds(responseTimes[i]);
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        recorder.recordSeconds(responseTimes[next]);
+        next = (next + 1) & (SAMPLES - 1);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double p99() {
+        return recorder.getPercentileSeconds(99);
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.bench.simulation;
+
+import org.cloudbus.cloudsim.examples.ResponseTimeSimulation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Débit de la simulation en cloudlets simulés par seconde réelle, par taille de charge, par
+ * politique de répartition du broker et par discipline d'ordonnancement des VMs.
+ *
+ * Le processus d'arrivée est fixé à poisson pour garder une matrice de 60 exécutions ; les autres
+ * se mesurent avec -p arrival=batch,poisson.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SimulationBenchmark {
+
+    @Param({"200", "2000", "20000"})
+    public int workload;
+
+    @Param({"round-robin", "least-work", "p2c", "jsq"})
+    public String broker;
+
+    @Param({"time-shared", "fifo", "sjf", "ps-cap", "priority"})
+    public String scheduler;
+
+    @Param({"poisson"})
+    public String arrival;
+
+    private Properties scenario;
+
+    // Compteur rapporté par JMH en opérations/s : ici, des cloudlets simulés
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Cloudlets {
+        public long cloudlets;
+    }
+
+    @Setup
+    public void setUp() {
+        scenario = new Properties();
+        scenario.setProperty("workload", String.valueOf(workload));
+        scenario.setProperty("broker", broker);
+        scenario.setProperty("scheduler", scheduler);
+        scenario.setProperty("arrival", arrival);
+    }
+
+    @Benchmark
+    public double[] simulate(Cloudlets counter) throws Exception {
+        double[] metrics = ResponseTimeSimulation.runIsolated(scenario);
+        counter.cloudlets += workload;
+        return metrics;
+    }
+}
@@ -0,0 +1,89 @@
+package org.cloudbus.cloudsim.examples;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Percentiles de LatencyRecorder contre les percentiles exacts (rang ceil(p/100 * n) des valeurs
+ * triées), à l'erreur relative annoncée près : 10^-3 pour 3 chiffres significatifs.
+ */
+class LatencyRecorderTest {
+    private static final double[] PERCENTILES = {50, 95, 99, 99.9};
+    private static final double RELATIVE_ERROR = 1e-3;
+
+    private static double exactPercentile(double[] sorted, double percentile) {
+        int rank = (int) Math.max(1, Math.ceil(percentile / 100.0 * sorted.length));
+        return sorted[rank - 1];
+    }
+
+    private static void assertPercentiles(double[] values) {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (double value : values) {
+            recorder.recordSeconds(value);
+        }
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        for (double percentile : PERCENTILES) {
+            double exact = exactPercentile(sorted, percentile);
+            double recorded = recorder.getPercentileSeconds(percentile);
+            assertEquals(exact, recorded, exact * RELATIVE_ERROR, "p" + percentile);
+        }
+        assertEquals(values.length, recorder.getTotalCount());
+        assertEquals(sorted[sorted.length - 1], recorder.getMaxSeconds(), 1e-6);
+        assertEquals(Arrays.stream(values).average().orElseThrow(), recorder.getMeanSeconds(), 1e-9);
+    }
+
+    @Test
+    void uniformFromOneToHundredSeconds() {
+        double[] values = new double[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i + 1;
+        }
+        assertPercentiles(values);
+
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (double value : values) {
+            recorder.recordSeconds(value);
+        }
+        assertEquals(50.0, recorder.getPercentileSeconds(50), 50 * RELATIVE_ERROR);
+        assertEquals(99.0, recorder.getPercentileSeconds(99), 99 * RELATIVE_ERROR);
+        assertEquals(100.0, recorder.getPercentileSeconds(99.9), 1e-6);
+        assertEquals(100.0, recorder.getMaxSeconds(), 1e-6);
+    }
+
+    @Test
+    void singleValueIsEveryPercentile() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        recorder.recordSeconds(0.25);
+
+        for (double percentile : PERCENTILES) {
+            assertEquals(0.25, recorder.getPercentileSeconds(percentile), 1e-6);
+        }
+        assertEquals(1, recorder.getTotalCount());
+        assertEquals(0.25, recorder.getMaxSeconds(), 1e-6);
+    }
+
+    @Test
+    void exponentialOverSeveralOrdersOfMagnitude() {
+        Random random = new Random(42);
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = -Math.log(1 - random.nextDouble()) * 0.2;
+        }
+        assertPercentiles(values);
+    }
+
+    @Test
+    void emptyRecorderReportsZero() {
+        LatencyRecorder recorder = new LatencyRecorder();
+
+        assertEquals(0, recorder.getTotalCount());
+        assertEquals(0.0, recorder.getPercentileSeconds(99));
+        assertEquals(0.0, recorder.getMaxSeconds());
+    }
+}
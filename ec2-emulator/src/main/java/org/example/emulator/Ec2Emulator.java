@@ -0,0 +1,1164 @@
+package org.example.emulator;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.services.ec2.Ec2Client;
+import software.amazon.awssdk.services.ec2.model.*;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Émulateur EC2 en mémoire : implémente les opérations utilisées par CreationVpc, DeleteVpc,
+ * VpcReconciler, GarbageCollector et les attentes, avec l'état et les règles d'EC2 qui comptent
+ * pour eux.
+ * <ul>
+ *     <li>Transitions d'état temporisées : passerelle NAT pending puis available (failed sans
+ *     passerelle Internet attachée au VPC), deleting puis deleted ; instance pending puis
+ *     running, shutting-down puis terminated.</li>
+ *     <li>Dépendances vérifiées à la suppression (DependencyViolation), comme l'ordre de
+ *     suppression l'exige sur EC2.</li>
+ *     <li>Filtres Describe*, identifiants, tags et pagination ; un filtre inconnu est refusé
+ *     (InvalidParameterValue), une faute de frappe ne passe donc pas inaperçue.</li>
+ *     <li>Idempotence par ClientToken de runInstances et createNatGateway.</li>
+ *     <li>Latence, quotas (RequestLimitExceeded) et erreurs serveur injectés selon
+ *     EmulatorConfig.</li>
+ * </ul>
+ * Les autres opérations de l'interface lèvent UnsupportedOperationException. L'état est protégé
+ * par un seul verrou ; la latence simulée est subie hors verrou, les appels concurrents se
+ * recouvrent donc comme sur le service réel.
+ */
+public class Ec2Emulator implements Ec2Client {
+
+    private abstract static class Resource {
+        final String id;
+        final Map<String, String> tags = new LinkedHashMap<>();
+
+        Resource(String id) {
+            this.id = id;
+        }
+
+        List<Tag> sdkTags() {
+            List<Tag> result = new ArrayList<>();
+            tags.forEach((key, value) -> result.add(Tag.builder().key(key).value(value).build()));
+            return result;
+        }
+    }
+
+    private static final class VpcRecord extends Resource {
+        final String cidr;
+
+        VpcRecord(String id, String cidr) {
+            super(id);
+            this.cidr = cidr;
+        }
+    }
+
+    private static final class SubnetRecord extends Resource {
+        final String vpcId;
+        final String cidr;
+        final String availabilityZone;
+        boolean mapPublicIpOnLaunch;
+
+        SubnetRecord(String id, String vpcId, String cidr, String availabilityZone) {
+            super(id);
+            this.vpcId = vpcId;
+            this.cidr = cidr;
+            this.availabilityZone = availabilityZone;
+        }
+    }
+
+    private static final class InternetGatewayRecord extends Resource {
+        String attachedVpcId;
+
+        InternetGatewayRecord(String id) {
+            super(id);
+        }
+    }
+
+    private static final class RouteRecord {
+        final String destination;
+        String gatewayId;
+        String natGatewayId;
+
+        RouteRecord(String destination, String gatewayId, String natGatewayId) {
+            this.destination = destination;
+            this.gatewayId = gatewayId;
+            this.natGatewayId = natGatewayId;
+        }
+    }
+
+    private static final class RouteTableRecord extends Resource {
+        final String vpcId;
+        final boolean main;
+        final Map<String, RouteRecord> routes = new LinkedHashMap<>();
+        // Association -> sous-réseau
+        final Map<String, String> associations = new LinkedHashMap<>();
+
+        RouteTableRecord(String id, String vpcId, boolean main) {
+            super(id);
+            this.vpcId = vpcId;
+            this.main = main;
+        }
+    }
+
+    private static final class NatGatewayRecord extends Resource {
+        final String subnetId;
+        final String vpcId;
+        final String allocationId;
+        final Instant createTime = Instant.now();
+        String state = "pending";
+        // État atteint à 'transitionAt' (nanoTime)
+        String nextState;
+        long transitionAt;
+
+        NatGatewayRecord(String id, String subnetId, String vpcId, String allocationId) {
+            super(id);
+            this.subnetId = subnetId;
+            this.vpcId = vpcId;
+            this.allocationId = allocationId;
+        }
+    }
+
+    private static final class AddressRecord extends Resource {
+        final String publicIp;
+        String natGatewayId;
+
+        AddressRecord(String id, String publicIp) {
+            super(id);
+            this.publicIp = publicIp;
+        }
+    }
+
+    private static final class InstanceRecord extends Resource {
+        final String reservationId;
+        final String subnetId;
+        final String vpcId;
+        final String imageId;
+        final String instanceType;
+        final String keyName;
+        final Instant launchTime = Instant.now();
+        String state = "pending";
+        String nextState;
+        long transitionAt;
+
+        InstanceRecord(String id, String reservationId, SubnetRecord subnet, RunInstancesRequest request) {
+            super(id);
+            this.reservationId = reservationId;
+            this.subnetId = subnet.id;
+            this.vpcId = subnet.vpcId;
+            this.imageId = request.imageId();
+            this.instanceType = request.instanceTypeAsString();
+            this.keyName = request.keyName();
+        }
+    }
+
+    // Seau à jetons non bloquant : un appel sans jeton est rejeté, pas retardé
+    private static final class Quota {
+        private final int capacity;
+        private final double refillPerNano;
+        private double tokens;
+        private long last = System.nanoTime();
+
+        Quota(int capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerNano = refillPerSecond / 1_000_000_000.0;
+            this.tokens = capacity;
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - last) * refillPerNano);
+            last = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+
+    private final EmulatorConfig config;
+    private final Random random;
+    private final Quota nonMutating;
+    private final Quota mutating;
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    // Protégés par this
+    private final Map<String, Long> idCounters = new HashMap<>();
+    private final Map<String, VpcRecord> vpcs = new LinkedHashMap<>();
+    private final Map<String, SubnetRecord> subnets = new LinkedHashMap<>();
+    private final Map<String, InternetGatewayRecord> internetGateways = new LinkedHashMap<>();
+    private final Map<String, RouteTableRecord> routeTables = new LinkedHashMap<>();
+    private final Map<String, NatGatewayRecord> natGateways = new LinkedHashMap<>();
+    private final Map<String, AddressRecord> addresses = new LinkedHashMap<>();
+    private final Map<String, InstanceRecord> instances = new LinkedHashMap<>();
+    private final Map<String, Object> clientTokens = new HashMap<>();
+
+    public Ec2Emulator() {
+        this(EmulatorConfig.instant());
+    }
+
+    public Ec2Emulator(EmulatorConfig config) {
+        this.config = config;
+        this.random = new Random(config.getSeed());
+        this.nonMutating = config.getNonMutatingCapacity() > 0
+                ? new Quota(config.getNonMutatingCapacity(), config.getNonMutatingRefill())
+                : null;
+        this.mutating = config.getMutatingCapacity() > 0
+                ? new Quota(config.getMutatingCapacity(), config.getMutatingRefill())
+                : null;
+    }
+
+    // Appels reçus par action, y compris ceux rejetés
+    public Map<String, Long> getCallCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        calls.forEach((action, count) -> counts.put(action, count.sum()));
+        return counts;
+    }
+
+    public long getThrottledCalls() {
+        return throttled.sum();
+    }
+
+    public long getFailedCalls() {
+        return failed.sum();
+    }
+
+    // Ressources existantes (non supprimées) par type, pour vérifier qu'un nettoyage est complet
+    public synchronized Map<String, Integer> getResourceCounts() {
+        refresh(System.nanoTime());
+        Map<String, Integer> counts = new TreeMap<>();
+        counts.put("vpc", vpcs.size());
+        counts.put("subnet", subnets.size());
+        counts.put("internetGateway", internetGateways.size());
+        counts.put("routeTable", (int) routeTables.values().stream().filter(t -> !t.main).count());
+        counts.put("natGateway", (int) natGateways.values().stream().filter(n -> !n.state.equals("deleted")).count());
+        counts.put("address", addresses.size());
+        counts.put("instance", (int) instances.values().stream().filter(i -> !i.state.equals("terminated")).count());
+        return counts;
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    // --- VPC et sous-réseaux ---
+
+    @Override
+    public CreateVpcResponse createVpc(CreateVpcRequest request) {
+        return call("createVpc", false, () -> {
+            long[] range = cidr(request.cidrBlock(), "InvalidVpc.Range");
+            if (range[1] > 1L << 16 || range[1] < 1L << 4) {
+                throw error(400, "InvalidVpc.Range", "The CIDR '" + request.cidrBlock() + "' is invalid.");
+            }
+            VpcRecord vpc = new VpcRecord(nextId("vpc"), request.cidrBlock());
+            tag(vpc, request.tagSpecifications(), ResourceType.VPC);
+            vpcs.put(vpc.id, vpc);
+
+            // Table principale implicite, supprimée avec le VPC
+            RouteTableRecord main = new RouteTableRecord(nextId("rtb"), vpc.id, true);
+            main.routes.put(vpc.cidr, new RouteRecord(vpc.cidr, "local", null));
+            main.associations.put(nextId("rtbassoc"), null);
+            routeTables.put(main.id, main);
+            return CreateVpcResponse.builder().vpc(toSdk(vpc)).build();
+        });
+    }
+
+    @Override
+    public CreateSubnetResponse createSubnet(CreateSubnetRequest request) {
+        return call("createSubnet", false, () -> {
+            VpcRecord vpc = find(vpcs, request.vpcId(), "InvalidVpcID.NotFound");
+            long[] range = cidr(request.cidrBlock(), "InvalidSubnet.Range");
+            long[] vpcRange = cidr(vpc.cidr, "InvalidSubnet.Range");
+            if (range[0] < vpcRange[0] || range[0] + range[1] > vpcRange[0] + vpcRange[1]) {
+                throw error(400, "InvalidSubnet.Range", "The CIDR '" + request.cidrBlock() + "' is invalid.");
+            }
+            for (SubnetRecord other : subnets.values()) {
+                long[] otherRange = cidr(other.cidr, "InvalidSubnet.Range");
+                if (other.vpcId.equals(vpc.id)
+                        && range[0] < otherRange[0] + otherRange[1] && otherRange[0] < range[0] + range[1]) {
+                    throw error(400, "InvalidSubnet.Conflict",
+                            "The CIDR '" + request.cidrBlock() + "' conflicts with another subnet");
+                }
+            }
+            SubnetRecord subnet = new SubnetRecord(nextId("subnet"), vpc.id, request.cidrBlock(), request.availabilityZone());
+            tag(subnet, request.tagSpecifications(), ResourceType.SUBNET);
+            subnets.put(subnet.id, subnet);
+            return CreateSubnetResponse.builder().subnet(toSdk(subnet)).build();
+        });
+    }
+
+    @Override
+    public ModifySubnetAttributeResponse modifySubnetAttribute(ModifySubnetAttributeRequest request) {
+        return call("modifySubnetAttribute", false, () -> {
+            SubnetRecord subnet = find(subnets, request.subnetId(), "InvalidSubnetID.NotFound");
+            if (request.mapPublicIpOnLaunch() != null) {
+                subnet.mapPublicIpOnLaunch = Boolean.TRUE.equals(request.mapPublicIpOnLaunch().value());
+            }
+            return ModifySubnetAttributeResponse.builder().build();
+        });
+    }
+
+    @Override
+    public DeleteSubnetResponse deleteSubnet(DeleteSubnetRequest request) {
+        return call("deleteSubnet", false, () -> {
+            SubnetRecord subnet = find(subnets, request.subnetId(), "InvalidSubnetID.NotFound");
+            boolean inUse = instances.values().stream()
+                    .anyMatch(i -> i.subnetId.equals(subnet.id) && !i.state.equals("terminated"))
+                    || natGateways.values().stream()
+                    .anyMatch(n -> n.subnetId.equals(subnet.id) && !n.state.equals("deleted"));
+            if (inUse) {
+                throw dependencyViolation("subnet", subnet.id);
+            }
+            subnets.remove(subnet.id);
+            for (RouteTableRecord routeTable : routeTables.values()) {
+                routeTable.associations.values().removeIf(subnet.id::equals);
+            }
+            return DeleteSubnetResponse.builder().build();
+        });
+    }
+
+    @Override
+    public DeleteVpcResponse deleteVpc(DeleteVpcRequest request) {
+        return call("deleteVpc", false, () -> {
+            VpcRecord vpc = find(vpcs, request.vpcId(), "InvalidVpcID.NotFound");
+            boolean inUse = subnets.values().stream().anyMatch(s -> s.vpcId.equals(vpc.id))
+                    || internetGateways.values().stream().anyMatch(g -> vpc.id.equals(g.attachedVpcId))
+                    || routeTables.values().stream().anyMatch(t -> t.vpcId.equals(vpc.id) && !t.main);
+            if (inUse) {
+                throw dependencyViolation("vpc", vpc.id);
+            }
+            vpcs.remove(vpc.id);
+            routeTables.values().removeIf(t -> t.vpcId.equals(vpc.id));
+            return DeleteVpcResponse.builder().build();
+        });
+    }
+
+    @Override
+    public DescribeVpcsResponse describeVpcs(DescribeVpcsRequest request) {
+        return call("describeVpcs", true, () -> {
+            List<Vpc> matching = new ArrayList<>();
+            for (VpcRecord vpc : selected(vpcs, request.vpcIds(), "InvalidVpcID.NotFound")) {
+                if (matches(request.filters(), vpc, Map.of(
+                        "vpc-id", vpc.id,
+                        "cidr-block", vpc.cidr,
+                        "cidr", vpc.cidr,
+                        "state", "available"))) {
+                    matching.add(toSdk(vpc));
+                }
+            }
+            int end = pageEnd(matching, request.nextToken(), request.maxResults());
+            return DescribeVpcsResponse.builder()
+                    .vpcs(matching.subList(pageStart(request.nextToken()), end))
+                    .nextToken(nextToken(matching, end))
+                    .build();
+        });
+    }
+
+    @Override
+    public DescribeSubnetsResponse describeSubnets(DescribeSubnetsRequest request) {
+        return call("describeSubnets", true, () -> {
+            List<Subnet> matching = new ArrayList<>();
+            for (SubnetRecord subnet : selected(subnets, request.subnetIds(), "InvalidSubnetID.NotFound")) {
+                if (matches(request.filters(), subnet, Map.of(
+                        "subnet-id", subnet.id,
+                        "vpc-id", subnet.vpcId,
+                        "cidr-block", subnet.cidr,
+                        "cidrBlock", subnet.cidr,
+                        "cidr", subnet.cidr,
+                        "availability-zone", String.valueOf(subnet.availabilityZone),
+                        "state", "available"))) {
+                    matching.add(toSdk(subnet));
+                }
+            }
+            int end = pageEnd(matching, request.nextToken(), request.maxResults());
+            return DescribeSubnetsResponse.builder()
+                    .subnets(matching.subList(pageStart(request.nextToken()), end))
+                    .nextToken(nextToken(matching, end))
+                    .build();
+        });
+    }
+
+    // --- Passerelles Internet ---
+
+    @Override
+    public CreateInternetGatewayResponse createInternetGateway(CreateInternetGatewayRequest request) {
+        return call("createInternetGateway", false, () -> {
+            InternetGatewayRecord gateway = new InternetGatewayRecord(nextId("igw"));
+            tag(gateway, request.tagSpecifications(), ResourceType.INTERNET_GATEWAY);
+            internetGateways.put(gateway.id, gateway);
+            return CreateInternetGatewayResponse.builder().internetGateway(toSdk(gateway)).build();
+        });
+    }
+
+    @Override
+    public AttachInternetGatewayResponse attachInternetGateway(AttachInternetGatewayRequest request) {
+        return call("attachInternetGateway", false, () -> {
+            InternetGatewayRecord gateway = find(internetGateways, request.internetGatewayId(), "InvalidInternetGatewayID.NotFound");
+            VpcRecord vpc = find(vpcs, request.vpcId(), "InvalidVpcID.NotFound");
+            if (gateway.attachedVpcId != null
+                    || internetGateways.values().stream().anyMatch(g -> vpc.id.equals(g.attachedVpcId))) {
+                throw error(400, "Resource.AlreadyAssociated",
+                        "resource " + gateway.id + " is already attached to network " + gateway.attachedVpcId);
+            }
+            gateway.attachedVpcId = vpc.id;
+            return AttachInternetGatewayResponse.builder().build();
+        });
+    }
+
+    @Override
+    public DetachInternetGatewayResponse detachInternetGateway(DetachInternetGatewayRequest request) {
+        return call("detachInternetGateway", false, () -> {
+            InternetGatewayRecord gateway = find(internetGateways, request.internetGatewayId(), "InvalidInternetGatewayID.NotFound");
+            if (!Objects.equals(gateway.attachedVpcId, request.vpcId())) {
+                throw error(400, "Gateway.NotAttached",
+                        "resource " + gateway.id + " is not attached to network " + request.vpcId());
+            }
+            if (hasMappedPublicAddresses(request.vpcId())) {
+                throw error(400, "DependencyViolation", "Network " + request.vpcId()
+                        + " has some mapped public address(es). Please unmap those public address(es) before detaching the gateway.");
+            }
+            gateway.attachedVpcId = null;
+            return DetachInternetGatewayResponse.builder().build();
+        });
+    }
+
+    @Override
+    public DeleteInternetGatewayResponse deleteInternetGateway(DeleteInternetGatewayRequest request) {
+        return call("deleteInternetGateway", false, () -> {
+            InternetGatewayRecord gateway = find(internetGateways, request.internetGatewayId(), "InvalidInternetGatewayID.NotFound");
+            if (gateway.attachedVpcId != null) {
+                throw dependencyViolation("internetGateway", gateway.id);
+            }
+            internetGateways.remove(gateway.id);
+            return DeleteInternetGatewayResponse.builder().build();
+        });
+    }
+
+    @Override
+    public DescribeInternetGatewaysResponse describeInternetGateways(DescribeInternetGatewaysRequest request) {
+        return call("describeInternetGateways", true, () -> {
+            List<InternetGateway> matching = new ArrayList<>();
+            for (InternetGatewayRecord gateway : selected(internetGateways, request.internetGatewayIds(),
+                    "InvalidInternetGatewayID.NotFound")) {
+                Map<String, String> attributes = new HashMap<>();
+                attributes.put("internet-gateway-id", gateway.id);
+                attributes.put("attachment.vpc-id", String.valueOf(gateway.attachedVpcId));
+                attributes.put("attachment.state", gateway.attachedVpcId == null ? "detached" : "available");
+                if (matches(request.filters(), gateway, attributes)) {
+                    matching.add(toSdk(gateway));
+                }
+            }
+            int end = pageEnd(matching, request.nextToken(), request.maxResults());
+            return DescribeInternetGatewaysResponse.builder()
+                    .internetGateways(matching.subList(pageStart(request.nextToken()), end))
+                    .nextToken(nextToken(matching, end))
+                    .build();
+        });
+    }
+
+    // --- Tables de routage ---
+
+    @Override
+    public CreateRouteTableResponse createRouteTable(CreateRouteTableRequest request) {
+        return call("createRouteTable", false, () -> {
+            VpcRecord vpc = find(vpcs, request.vpcId(), "InvalidVpcID.NotFound");
+            RouteTableRecord routeTable = new RouteTableRecord(nextId("rtb"), vpc.id, false);
+            routeTable.routes.put(vpc.cidr, new RouteRecord(vpc.cidr, "local", null));
+            tag(routeTable, request.tagSpecifications(), ResourceType.ROUTE_TABLE);
+            routeTables.put(routeTable.id, routeTable);
+            return CreateRouteTableResponse.builder().routeTable(toSdk(routeTable)).build();
+        });
+    }
+
+    @Override
+    public AssociateRouteTableResponse associateRouteTable(AssociateRouteTableRequest request) {
+        return call("associateRouteTable", false, () -> {
+            RouteTableRecord routeTable = find(routeTables, request.routeTableId(), "InvalidRouteTableID.NotFound");
+            SubnetRecord subnet = find(subnets, request.subnetId(), "InvalidSubnetID.NotFound");
+            if (!subnet.vpcId.equals(routeTable.vpcId)) {
+                throw error(400, "InvalidParameterValue",
+                        "Route table " + routeTable.id + " and subnet " + subnet.id + " belong to different networks");
+            }
+            if (routeTables.values().stream().anyMatch(t -> t.associations.containsValue(subnet.id))) {
+                throw error(400, "Resource.AlreadyAssociated", "the specified association for route table "
+                        + routeTable.id + " conflicts with an existing association");
+            }
+            String associationId = nextId("rtbassoc");
+            routeTable.associations.put(associationId, subnet.id);
+            return AssociateRouteTableResponse.builder().associationId(associationId).build();
+        });
+    }
+
+    @Override
+    public CreateRouteResponse createRoute(CreateRouteRequest request) {
+        return call("createRoute", false, () -> {
+            RouteTableRecord routeTable = find(routeTables, request.routeTableId(), "InvalidRouteTableID.NotFound");
+            if (routeTable.routes.containsKey(request.destinationCidrBlock())) {
+                throw error(400, "RouteAlreadyExists", "The route identified by " + request.destinationCidrBlock()
+                        + " already exists.");
+            }
+            routeTable.routes.put(request.destinationCidrBlock(), route(request.destinationCidrBlock(),
+                    request.gatewayId(), request.natGatewayId()));
+            return CreateRouteResponse.builder().returnValue(true).build();
+        });
+    }
+
+    @Override
+    public ReplaceRouteResponse replaceRoute(ReplaceRouteRequest request) {
+        return call("replaceRoute", false, () -> {
+            RouteTableRecord routeTable = find(routeTables, request.routeTableId(), "InvalidRouteTableID.NotFound");
+            RouteRecord existing = routeTable.routes.get(request.destinationCidrBlock());
+            if (existing == null || "local".equals(existing.gatewayId)) {
+                throw error(400, "InvalidParameterValue", "There is no route defined for '"
+                        + request.destinationCidrBlock() + "' in the route table.");
+            }
+            routeTable.routes.put(request.destinationCidrBlock(), route(request.destinationCidrBlock(),
+                    request.gatewayId(), request.natGatewayId()));
+            return ReplaceRouteResponse.builder().build();
+        });
+    }
+
+    @Override
+    public DeleteRouteResponse deleteRoute(DeleteRouteRequest request) {
+        return call("deleteRoute", false, () -> {
+            RouteTableRecord routeTable = find(routeTables, request.routeTableId(), "InvalidRouteTableID.NotFound");
+            RouteRecord existing = routeTable.routes.get(request.destinationCidrBlock());
+            if (existing == null) {
+                throw error(400, "InvalidRoute.NotFound", "No route with destination-cidr-block "
+                        + request.destinationCidrBlock() + " in route table " + routeTable.id);
+            }
+            if ("local".equals(existing.gatewayId)) {
+                throw error(400, "InvalidParameterValue", "cannot remove local route "
+                        + request.destinationCidrBlock() + " in route table " + routeTable.id);
+            }
+            routeTable.routes.remove(request.destinationCidrBlock());
+            return DeleteRouteResponse.builder().build();
+        });
+    }
+
+    @Override
+    public DeleteRouteTableResponse deleteRouteTable(DeleteRouteTableRequest request) {
+        return call("deleteRouteTable", false, () -> {
+            RouteTableRecord routeTable = find(routeTables, request.routeTableId(), "InvalidRouteTableID.NotFound");
+            if (routeTable.main || !routeTable.associations.isEmpty()) {
+                throw dependencyViolation("routeTable", routeTable.id);
+            }
+            routeTables.remove(routeTable.id);
+            return DeleteRouteTableResponse.builder().build();
+        });
+    }
+
+    @Override
+    public DescribeRouteTablesResponse describeRouteTables(DescribeRouteTablesRequest request) {
+        return call("describeRouteTables", true, () -> {
+            List<RouteTable> matching = new ArrayList<>();
+            for (RouteTableRecord routeTable : selected(routeTables, request.routeTableIds(), "InvalidRouteTableID.NotFound")) {
+                Map<String, String> attributes = new HashMap<>();
+                attributes.put("route-table-id", routeTable.id);
+                attributes.put("vpc-id", routeTable.vpcId);
+                attributes.put("association.main", String.valueOf(routeTable.main));
+                if (matchesAssociations(request.filters(), routeTable) && matches(withoutAssociations(request.filters()),
+                        routeTable, attributes)) {
+                    matching.add(toSdk(routeTable));
+                }
+            }
+            int end = pageEnd(matching, request.nextToken(), request.maxResults());
+            return DescribeRouteTablesResponse.builder()
+                    .routeTables(matching.subList(pageStart(request.nextToken()), end))
+                    .nextToken(nextToken(matching, end))
+                    .build();
+        });
+    }
+
+    // --- Adresses IP Elastic et passerelles NAT ---
+
+    @Override
+    public AllocateAddressResponse allocateAddress(AllocateAddressRequest request) {
+        return call("allocateAddress", false, () -> {
+            long n = idCounters.merge("ip", 1L, Long::sum);
+            AddressRecord address = new AddressRecord(nextId("eipalloc"), "198.18." + (n / 256 % 256) + "." + (n % 256));
+            tag(address, request.tagSpecifications(), ResourceType.ELASTIC_IP);
+            addresses.put(address.id, address);
+            return AllocateAddressResponse.builder()
+                    .allocationId(address.id)
+                    .publicIp(address.publicIp)
+                    .domain(DomainType.VPC)
+                    .build();
+        });
+    }
+
+    @Override
+    public ReleaseAddressResponse releaseAddress(ReleaseAddressRequest request) {
+        return call("releaseAddress", false, () -> {
+            AddressRecord address = find(addresses, request.allocationId(), "InvalidAllocationID.NotFound");
+            if (address.natGatewayId != null) {
+                throw error(400, "InvalidIPAddress.InUse", "Address " + address.publicIp + " is in use.");
+            }
+            addresses.remove(address.id);
+            return ReleaseAddressResponse.builder().build();
+        });
+    }
+
+    @Override
+    public DescribeAddressesResponse describeAddresses(DescribeAddressesRequest request) {
+        return call("describeAddresses", true, () -> {
+            List<Address> matching = new ArrayList<>();
+            for (AddressRecord address : selected(addresses, request.allocationIds(), "InvalidAllocationID.NotFound")) {
+                Map<String, String> attributes = new HashMap<>();
+                attributes.put("allocation-id", address.id);
+                attributes.put("public-ip", address.publicIp);
+                attributes.put("domain", "vpc");
+                if (matches(request.filters(), address, attributes)) {
+                    matching.add(toSdk(address));
+                }
+            }
+            // DescribeAddresses n'est pas paginé
+            return DescribeAddressesResponse.builder().addresses(matching).build();
+        });
+    }
+
+    @Override
+    public CreateNatGatewayResponse createNatGateway(CreateNatGatewayRequest request) {
+        return call("createNatGateway", false, () -> idempotent("createNatGateway", request.clientToken(), () -> {
+            SubnetRecord subnet = find(subnets, request.subnetId(), "InvalidSubnetID.NotFound");
+            AddressRecord address = find(addresses, request.allocationId(), "InvalidAllocationID.NotFound");
+            if (address.natGatewayId != null) {
+                throw error(400, "Resource.AlreadyAssociated", "Elastic IP address [" + address.id
+                        + "] is already associated");
+            }
+            NatGatewayRecord natGateway = new NatGatewayRecord(nextId("nat"), subnet.id, subnet.vpcId, address.id);
+            tag(natGateway, request.tagSpecifications(), ResourceType.NATGATEWAY);
+            address.natGatewayId = natGateway.id;
+            // Une passerelle NAT publique sans passerelle Internet finit en échec
+            boolean routable = internetGateways.values().stream().anyMatch(g -> subnet.vpcId.equals(g.attachedVpcId));
+            natGateway.nextState = routable ? "available" : "failed";
+            natGateway.transitionAt = System.nanoTime() + config.getNatGatewayCreateTime().toNanos();
+            natGateways.put(natGateway.id, natGateway);
+            refresh(System.nanoTime());
+            return CreateNatGatewayResponse.builder()
+                    .natGateway(toSdk(natGateway))
+                    .clientToken(request.clientToken())
+                    .build();
+        }));
+    }
+
+    @Override
+    public DeleteNatGatewayResponse deleteNatGateway(DeleteNatGatewayRequest request) {
+        return call("deleteNatGateway", false, () -> {
+            NatGatewayRecord natGateway = find(natGateways, request.natGatewayId(), "NatGatewayNotFound");
+            if (natGateway.state.equals("pending") || natGateway.state.equals("available")
+                    || natGateway.state.equals("failed")) {
+                natGateway.state = "deleting";
+                natGateway.nextState = "deleted";
+                natGateway.transitionAt = System.nanoTime() + config.getNatGatewayDeleteTime().toNanos();
+                refresh(System.nanoTime());
+            }
+            return DeleteNatGatewayResponse.builder().natGatewayId(natGateway.id).build();
+        });
+    }
+
+    @Override
+    public DescribeNatGatewaysResponse describeNatGateways(DescribeNatGatewaysRequest request) {
+        return call("describeNatGateways", true, () -> {
+            List<NatGateway> matching = new ArrayList<>();
+            for (NatGatewayRecord natGateway : selected(natGateways, request.natGatewayIds(), "NatGatewayNotFound")) {
+                if (matches(request.filter(), natGateway, Map.of(
+                        "nat-gateway-id", natGateway.id,
+                        "state", natGateway.state,
+                        "subnet-id", natGateway.subnetId,
+                        "vpc-id", natGateway.vpcId))) {
+                    matching.add(toSdk(natGateway));
+                }
+            }
+            int end = pageEnd(matching, request.nextToken(), request.maxResults());
+            return DescribeNatGatewaysResponse.builder()
+                    .natGateways(matching.subList(pageStart(request.nextToken()), end))
+                    .nextToken(nextToken(matching, end))
+                    .build();
+        });
+    }
+
+    // --- Instances ---
+
+    @Override
+    public RunInstancesResponse runInstances(RunInstancesRequest request) {
+        return call("runInstances", false, () -> idempotent("runInstances", request.clientToken(), () -> {
+            if (request.subnetId() == null) {
+                throw error(400, "MissingInput", "No subnets found for the default VPC. Please specify a subnet.");
+            }
+            SubnetRecord subnet = find(subnets, request.subnetId(), "InvalidSubnetID.NotFound");
+            String reservationId = nextId("r");
+            int count = request.maxCount() == null ? 1 : request.maxCount();
+            List<Instance> launched = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                InstanceRecord instance = new InstanceRecord(nextId("i"), reservationId, subnet, request);
+                tag(instance, request.tagSpecifications(), ResourceType.INSTANCE);
+                instance.nextState = "running";
+                instance.transitionAt = System.nanoTime() + config.getInstanceLaunchTime().toNanos();
+                instances.put(instance.id, instance);
+                launched.add(toSdk(instance));
+            }
+            return RunInstancesResponse.builder().reservationId(reservationId).instances(launched).build();
+        }));
+    }
+
+    @Override
+    public TerminateInstancesResponse terminateInstances(TerminateInstancesRequest request) {
+        return call("terminateInstances", false, () -> {
+            List<InstanceRecord> targets = new ArrayList<>();
+            for (String id : request.instanceIds()) {
+                targets.add(find(instances, id, "InvalidInstanceID.NotFound"));
+            }
+            List<InstanceStateChange> changes = new ArrayList<>();
+            for (InstanceRecord instance : targets) {
+                InstanceState previous = state(instance.state);
+                if (!instance.state.equals("shutting-down") && !instance.state.equals("terminated")) {
+                    instance.state = "shutting-down";
+                    instance.nextState = "terminated";
+                    instance.transitionAt = System.nanoTime() + config.getInstanceTerminateTime().toNanos();
+                }
+                changes.add(InstanceStateChange.builder()
+                        .instanceId(instance.id)
+                        .previousState(previous)
+                        .currentState(state(instance.state))
+                        .build());
+            }
+            refresh(System.nanoTime());
+            return TerminateInstancesResponse.builder().terminatingInstances(changes).build();
+        });
+    }
+
+    @Override
+    public DescribeInstancesResponse describeInstances(DescribeInstancesRequest request) {
+        return call("describeInstances", true, () -> {
+            // Une réservation par appel runInstances
+            Map<String, List<Instance>> reservations = new LinkedHashMap<>();
+            for (InstanceRecord instance : selected(instances, request.instanceIds(), "InvalidInstanceID.NotFound")) {
+                if (matches(request.filters(), instance, Map.of(
+                        "instance-id", instance.id,
+                        "instance-state-name", instance.state,
+                        "subnet-id", instance.subnetId,
+                        "vpc-id", instance.vpcId,
+                        "image-id", String.valueOf(instance.imageId),
+                        "instance-type", String.valueOf(instance.instanceType),
+                        "key-name", String.valueOf(instance.keyName),
+                        "reservation-id", instance.reservationId))) {
+                    reservations.computeIfAbsent(instance.reservationId, r -> new ArrayList<>()).add(toSdk(instance));
+                }
+            }
+            List<Reservation> matching = new ArrayList<>();
+            reservations.forEach((id, members) -> matching.add(Reservation.builder()
+                    .reservationId(id)
+                    .instances(members)
+                    .build()));
+            int end = pageEnd(matching, request.nextToken(), request.maxResults());
+            return DescribeInstancesResponse.builder()
+                    .reservations(matching.subList(pageStart(request.nextToken()), end))
+                    .nextToken(nextToken(matching, end))
+                    .build();
+        });
+    }
+
+    // --- Tags ---
+
+    @Override
+    public CreateTagsResponse createTags(CreateTagsRequest request) {
+        return call("createTags", false, () -> {
+            List<Resource> targets = new ArrayList<>();
+            for (String id : request.resources()) {
+                Resource resource = anyResource(id);
+                if (resource == null) {
+                    throw error(400, "InvalidID", "The ID '" + id + "' is not valid");
+                }
+                targets.add(resource);
+            }
+            for (Resource resource : targets) {
+                for (Tag tag : request.tags()) {
+                    resource.tags.put(tag.key(), tag.value());
+                }
+            }
+            return CreateTagsResponse.builder().build();
+        });
+    }
+
+    // --- Mécanique commune ---
+
+    // Latence, quota et erreur injectée hors verrou, puis l'opération sous verrou
+    private <T> T call(String action, boolean describe, Supplier<T> operation) {
+        calls.computeIfAbsent(action, a -> new LongAdder()).increment();
+        simulateLatency(action);
+
+        Quota quota = describe ? nonMutating : mutating;
+        if (quota != null && !quota.tryAcquire()) {
+            throttled.increment();
+            throw error(503, "RequestLimitExceeded", "Request limit exceeded.");
+        }
+        if (config.getErrorRate() > 0 && random.nextDouble() < config.getErrorRate()) {
+            failed.increment();
+            throw error(500, "InternalError", "An internal error has occurred");
+        }
+
+        synchronized (this) {
+            refresh(System.nanoTime());
+            return operation.get();
+        }
+    }
+
+    private void simulateLatency(String action) {
+        long latency = config.getApiLatency().toNanos();
+        if (latency == 0) {
+            return;
+        }
+        double jitter = config.getApiLatencyJitter();
+        long nanos = (long) (latency * (1 - jitter + 2 * jitter * random.nextDouble()));
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw AbortedException.create("Appel " + action + " interrompu", e);
+        }
+    }
+
+    // Transitions d'état échues
+    private void refresh(long now) {
+        for (NatGatewayRecord natGateway : natGateways.values()) {
+            if (natGateway.nextState != null && now - natGateway.transitionAt >= 0) {
+                natGateway.state = natGateway.nextState;
+                natGateway.nextState = null;
+                // Adresse rendue quand la passerelle disparaît ou échoue
+                if (natGateway.state.equals("deleted") || natGateway.state.equals("failed")) {
+                    AddressRecord address = addresses.get(natGateway.allocationId);
+                    if (address != null && natGateway.id.equals(address.natGatewayId)) {
+                        address.natGatewayId = null;
+                    }
+                }
+            }
+        }
+        for (InstanceRecord instance : instances.values()) {
+            if (instance.nextState != null && now - instance.transitionAt >= 0) {
+                instance.state = instance.nextState;
+                instance.nextState = null;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T idempotent(String action, String clientToken, Supplier<T> operation) {
+        if (clientToken == null) {
+            return operation.get();
+        }
+        String key = action + "/" + clientToken;
+        Object previous = clientTokens.get(key);
+        if (previous != null) {
+            return (T) previous;
+        }
+        T response = operation.get();
+        clientTokens.put(key, response);
+        return response;
+    }
+
+    private String nextId(String prefix) {
+        long n = idCounters.merge(prefix, 1L, Long::sum);
+        return String.format("%s-%017x", prefix, n);
+    }
+
+    private static void tag(Resource resource, List<TagSpecification> specifications, ResourceType resourceType) {
+        for (TagSpecification specification : specifications) {
+            if (specification.resourceType() == resourceType) {
+                for (Tag tag : specification.tags()) {
+                    resource.tags.put(tag.key(), tag.value());
+                }
+            }
+        }
+    }
+
+    private static <R extends Resource> R find(Map<String, R> resources, String id, String notFoundCode) {
+        R resource = id == null ? null : resources.get(id);
+        if (resource == null) {
+            throw error(400, notFoundCode, "The ID '" + id + "' does not exist");
+        }
+        return resource;
+    }
+
+    // Ressources désignées par identifiant (toutes inconnues rejetées), ou toutes sans identifiant
+    private static <R extends Resource> Collection<R> selected(Map<String, R> resources, List<String> ids,
+                                                               String notFoundCode) {
+        if (ids.isEmpty()) {
+            return resources.values();
+        }
+        List<R> result = new ArrayList<>();
+        for (String id : ids) {
+            result.add(find(resources, id, notFoundCode));
+        }
+        return result;
+    }
+
+    private Resource anyResource(String id) {
+        for (Map<String, ? extends Resource> resources : List.of(vpcs, subnets, internetGateways, routeTables,
+                natGateways, addresses, instances)) {
+            if (resources.containsKey(id)) {
+                return resources.get(id);
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(List<Filter> filters, Resource resource, Map<String, String> attributes) {
+        for (Filter filter : filters) {
+            String name = filter.name();
+            boolean match;
+            if (name.equals("tag-key")) {
+                match = filter.values().stream().anyMatch(resource.tags::containsKey);
+            } else if (name.startsWith("tag:")) {
+                match = filter.values().contains(resource.tags.get(name.substring(4)));
+            } else if (attributes.containsKey(name)) {
+                match = filter.values().contains(attributes.get(name));
+            } else {
+                throw error(400, "InvalidParameterValue", "The filter '" + name + "' is invalid");
+            }
+            if (!match) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Filtres sur les associations : vrais si une association de la table les satisfait
+    private static boolean matchesAssociations(List<Filter> filters, RouteTableRecord routeTable) {
+        for (Filter filter : filters) {
+            if (filter.name().equals("association.subnet-id")) {
+                if (routeTable.associations.values().stream().noneMatch(filter.values()::contains)) {
+                    return false;
+                }
+            } else if (filter.name().equals("association.route-table-association-id")) {
+                if (routeTable.associations.keySet().stream().noneMatch(filter.values()::contains)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static List<Filter> withoutAssociations(List<Filter> filters) {
+        return filters.stream()
+                .filter(f -> !f.name().equals("association.subnet-id")
+                        && !f.name().equals("association.route-table-association-id"))
+                .toList();
+    }
+
+    private boolean hasMappedPublicAddresses(String vpcId) {
+        return natGateways.values().stream().anyMatch(n -> n.vpcId.equals(vpcId) && !n.state.equals("deleted")
+                && !n.state.equals("failed"))
+                || instances.values().stream().anyMatch(i -> i.vpcId.equals(vpcId) && !i.state.equals("terminated")
+                && subnets.containsKey(i.subnetId) && subnets.get(i.subnetId).mapPublicIpOnLaunch);
+    }
+
+    private RouteRecord route(String destination, String gatewayId, String natGatewayId) {
+        if (gatewayId != null) {
+            find(internetGateways, gatewayId, "InvalidGatewayID.NotFound");
+        } else if (natGatewayId != null) {
+            find(natGateways, natGatewayId, "InvalidNatGatewayID.NotFound");
+        } else {
+            throw error(400, "InvalidParameterCombination", "No route target specified");
+        }
+        return new RouteRecord(destination, gatewayId, natGatewayId);
+    }
+
+    private int pageStart(String nextToken) {
+        if (nextToken == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(nextToken);
+        } catch (NumberFormatException e) {
+            throw error(400, "InvalidNextToken", "The specified token is invalid");
+        }
+    }
+
+    private int pageEnd(List<?> items, String nextToken, Integer maxResults) {
+        int size = maxResults == null ? config.getPageSize() : Math.min(maxResults, config.getPageSize());
+        return Math.min(items.size(), pageStart(nextToken) + size);
+    }
+
+    private static String nextToken(List<?> items, int end) {
+        return end < items.size() ? String.valueOf(end) : null;
+    }
+
+    // Adresse réseau et taille d'un bloc IPv4
+    private static long[] cidr(String cidr, String errorCode) {
+        try {
+            String[] parts = cidr.split("/");
+            int prefix = Integer.parseInt(parts[1]);
+            String[] octets = parts[0].split("\\.");
+            if (octets.length != 4 || prefix < 0 || prefix > 32) {
+                throw new IllegalArgumentException(cidr);
+            }
+            long address = 0;
+            for (String octet : octets) {
+                int value = Integer.parseInt(octet);
+                if (value < 0 || value > 255) {
+                    throw new IllegalArgumentException(cidr);
+                }
+                address = address << 8 | value;
+            }
+            long size = 1L << (32 - prefix);
+            return new long[]{address & ~(size - 1), size};
+        } catch (RuntimeException e) {
+            throw error(400, errorCode, "The CIDR '" + cidr + "' is invalid.");
+        }
+    }
+
+    private static Ec2Exception dependencyViolation(String type, String id) {
+        return error(400, "DependencyViolation", "The " + type + " '" + id + "' has dependencies and cannot be deleted.");
+    }
+
+    private static Ec2Exception error(int status, String code, String message) {
+        return (Ec2Exception) Ec2Exception.builder()
+                .statusCode(status)
+                .message(message)
+                .awsErrorDetails(AwsErrorDetails.builder()
+                        .serviceName("Ec2")
+                        .errorCode(code)
+                        .errorMessage(message)
+                        .build())
+                .build();
+    }
+
+    // --- Conversion vers le modèle du SDK ---
+
+    private static Vpc toSdk(VpcRecord vpc) {
+        return Vpc.builder()
+                .vpcId(vpc.id)
+                .cidrBlock(vpc.cidr)
+                .state(software.amazon.awssdk.services.ec2.model.VpcState.AVAILABLE)
+                .tags(vpc.sdkTags())
+                .build();
+    }
+
+    private static Subnet toSdk(SubnetRecord subnet) {
+        return Subnet.builder()
+                .subnetId(subnet.id)
+                .vpcId(subnet.vpcId)
+                .cidrBlock(subnet.cidr)
+                .availabilityZone(subnet.availabilityZone)
+                .mapPublicIpOnLaunch(subnet.mapPublicIpOnLaunch)
+                .state(SubnetState.AVAILABLE)
+                .tags(subnet.sdkTags())
+                .build();
+    }
+
+    private static InternetGateway toSdk(InternetGatewayRecord gateway) {
+        InternetGateway.Builder builder = InternetGateway.builder()
+                .internetGatewayId(gateway.id)
+                .tags(gateway.sdkTags());
+        if (gateway.attachedVpcId != null) {
+            builder.attachments(InternetGatewayAttachment.builder()
+                    .vpcId(gateway.attachedVpcId)
+                    .state(AttachmentStatus.ATTACHED)
+                    .build());
+        }
+        return builder.build();
+    }
+
+    private RouteTable toSdk(RouteTableRecord routeTable) {
+        List<Route> routes = new ArrayList<>();
+        for (RouteRecord route : routeTable.routes.values()) {
+            // Route vers une passerelle disparue : blackhole, comme sur EC2
+            boolean active = route.gatewayId != null
+                    ? route.gatewayId.equals("local") || internetGateways.containsKey(route.gatewayId)
+                    : natGateways.containsKey(route.natGatewayId)
+                    && natGateways.get(route.natGatewayId).state.equals("available");
+            routes.add(Route.builder()
+                    .destinationCidrBlock(route.destination)
+                    .gatewayId(route.gatewayId)
+                    .natGatewayId(route.natGatewayId)
+                    .state(active ? RouteState.ACTIVE : RouteState.BLACKHOLE)
+                    .origin(route.gatewayId != null && route.gatewayId.equals("local")
+                            ? RouteOrigin.CREATE_ROUTE_TABLE
+                            : RouteOrigin.CREATE_ROUTE)
+                    .build());
+        }
+        List<RouteTableAssociation> associations = new ArrayList<>();
+        routeTable.associations.forEach((associationId, subnetId) -> associations.add(RouteTableAssociation.builder()
+                .routeTableAssociationId(associationId)
+                .routeTableId(routeTable.id)
+                .subnetId(subnetId)
+                .main(subnetId == null)
+                .build()));
+        return RouteTable.builder()
+                .routeTableId(routeTable.id)
+                .vpcId(routeTable.vpcId)
+                .routes(routes)
+                .associations(associations)
+                .tags(routeTable.sdkTags())
+                .build();
+    }
+
+    private NatGateway toSdk(NatGatewayRecord natGateway) {
+        AddressRecord address = addresses.get(natGateway.allocationId);
+        NatGateway.Builder builder = NatGateway.builder()
+                .natGatewayId(natGateway.id)
+                .subnetId(natGateway.subnetId)
+                .vpcId(natGateway.vpcId)
+                .state(natGateway.state)
+                .createTime(natGateway.createTime)
+                .tags(natGateway.sdkTags())
+                .natGatewayAddresses(NatGatewayAddress.builder()
+                        .allocationId(natGateway.allocationId)
+                        .publicIp(address == null ? null : address.publicIp)
+                        .build());
+        if (natGateway.state.equals("failed")) {
+            builder.failureCode("InvalidSubnetID.NotFound")
+                    .failureMessage("Network " + natGateway.vpcId + " has no Internet gateway attached");
+        }
+        return builder.build();
+    }
+
+    private static Address toSdk(AddressRecord address) {
+        return Address.builder()
+                .allocationId(address.id)
+                .publicIp(address.publicIp)
+                .domain(DomainType.VPC)
+                .associationId(address.natGatewayId == null ? null : "eipassoc-" + address.natGatewayId.substring(4))
+                .tags(address.sdkTags())
+                .build();
+    }
+
+    private static Instance toSdk(InstanceRecord instance) {
+        return Instance.builder()
+                .instanceId(instance.id)
+                .imageId(instance.imageId)
+                .instanceType(instance.instanceType)
+                .keyName(instance.keyName)
+                .subnetId(instance.subnetId)
+                .vpcId(instance.vpcId)
+                .launchTime(instance.launchTime)
+                .state(state(instance.state))
+                .tags(instance.sdkTags())
+                .build();
+    }
+
+    private static InstanceState state(String name) {
+        int code = switch (name) {
+            case "pending" -> 0;
+            case "running" -> 16;
+            case "shutting-down" -> 32;
+            case "terminated" -> 48;
+            default -> -1;
+        };
+        return InstanceState.builder().name(name).code(code).build();
+    }
+}
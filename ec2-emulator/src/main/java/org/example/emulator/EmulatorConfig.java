@@ -0,0 +1,238 @@
+package org.example.emulator;
+
+import java.time.Duration;
+
+/**
+ * Paramètres de l'émulateur : latence des appels, durée des transitions d'état, quotas et
+ * injection d'erreurs. Toutes les valeurs aléatoires dérivent de 'seed', une exécution est donc
+ * reproductible à configuration égale (à l'ordre d'arrivée des appels concurrents près).
+ */
+public class EmulatorConfig {
+    private final Duration apiLatency;
+    private final double apiLatencyJitter;
+    private final Duration natGatewayCreateTime;
+    private final Duration natGatewayDeleteTime;
+    private final Duration instanceLaunchTime;
+    private final Duration instanceTerminateTime;
+    private final int nonMutatingCapacity;
+    private final double nonMutatingRefill;
+    private final int mutatingCapacity;
+    private final double mutatingRefill;
+    private final double errorRate;
+    private final int pageSize;
+    private final long seed;
+
+    private EmulatorConfig(Builder builder) {
+        this.apiLatency = builder.apiLatency;
+        this.apiLatencyJitter = builder.apiLatencyJitter;
+        this.natGatewayCreateTime = builder.natGatewayCreateTime;
+        this.natGatewayDeleteTime = builder.natGatewayDeleteTime;
+        this.instanceLaunchTime = builder.instanceLaunchTime;
+        this.instanceTerminateTime = builder.instanceTerminateTime;
+        this.nonMutatingCapacity = builder.nonMutatingCapacity;
+        this.nonMutatingRefill = builder.nonMutatingRefill;
+        this.mutatingCapacity = builder.mutatingCapacity;
+        this.mutatingRefill = builder.mutatingRefill;
+        this.errorRate = builder.errorRate;
+        this.pageSize = builder.pageSize;
+        this.seed = builder.seed;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Aucune latence, transitions immédiates, ni quota ni erreur : pour les tests
+    public static EmulatorConfig instant() {
+        return builder().build();
+    }
+
+    // Ordres de grandeur observés sur EC2, quotas par défaut d'un compte
+    public static EmulatorConfig realistic() {
+        return builder()
+                .apiLatency(Duration.ofMillis(80), 0.5)
+                .natGatewayCreateTime(Duration.ofSeconds(90))
+                .natGatewayDeleteTime(Duration.ofSeconds(60))
+                .instanceLaunchTime(Duration.ofSeconds(15))
+                .instanceTerminateTime(Duration.ofSeconds(40))
+                .nonMutatingQuota(100, 20)
+                .mutatingQuota(50, 5)
+                .build();
+    }
+
+    // Mêmes proportions, temps divisés par 'factor' et débits multipliés d'autant
+    public EmulatorConfig scaled(double factor) {
+        if (factor <= 0) {
+            throw new IllegalArgumentException("Facteur > 0 attendu: " + factor);
+        }
+        return toBuilder()
+                .apiLatency(divide(apiLatency, factor), apiLatencyJitter)
+                .natGatewayCreateTime(divide(natGatewayCreateTime, factor))
+                .natGatewayDeleteTime(divide(natGatewayDeleteTime, factor))
+                .instanceLaunchTime(divide(instanceLaunchTime, factor))
+                .instanceTerminateTime(divide(instanceTerminateTime, factor))
+                .nonMutatingQuota(nonMutatingCapacity, nonMutatingRefill * factor)
+                .mutatingQuota(mutatingCapacity, mutatingRefill * factor)
+                .build();
+    }
+
+    public Builder toBuilder() {
+        return builder()
+                .apiLatency(apiLatency, apiLatencyJitter)
+                .natGatewayCreateTime(natGatewayCreateTime)
+                .natGatewayDeleteTime(natGatewayDeleteTime)
+                .instanceLaunchTime(instanceLaunchTime)
+                .instanceTerminateTime(instanceTerminateTime)
+                .nonMutatingQuota(nonMutatingCapacity, nonMutatingRefill)
+                .mutatingQuota(mutatingCapacity, mutatingRefill)
+                .errorRate(errorRate)
+                .pageSize(pageSize)
+                .seed(seed);
+    }
+
+    private static Duration divide(Duration duration, double factor) {
+        return Duration.ofNanos((long) (duration.toNanos() / factor));
+    }
+
+    public Duration getApiLatency() {
+        return apiLatency;
+    }
+
+    public double getApiLatencyJitter() {
+        return apiLatencyJitter;
+    }
+
+    public Duration getNatGatewayCreateTime() {
+        return natGatewayCreateTime;
+    }
+
+    public Duration getNatGatewayDeleteTime() {
+        return natGatewayDeleteTime;
+    }
+
+    public Duration getInstanceLaunchTime() {
+        return instanceLaunchTime;
+    }
+
+    public Duration getInstanceTerminateTime() {
+        return instanceTerminateTime;
+    }
+
+    // Capacité 0 : pas de quota
+    public int getNonMutatingCapacity() {
+        return nonMutatingCapacity;
+    }
+
+    public double getNonMutatingRefill() {
+        return nonMutatingRefill;
+    }
+
+    public int getMutatingCapacity() {
+        return mutatingCapacity;
+    }
+
+    public double getMutatingRefill() {
+        return mutatingRefill;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public static final class Builder {
+        private Duration apiLatency = Duration.ZERO;
+        private double apiLatencyJitter;
+        private Duration natGatewayCreateTime = Duration.ZERO;
+        private Duration natGatewayDeleteTime = Duration.ZERO;
+        private Duration instanceLaunchTime = Duration.ZERO;
+        private Duration instanceTerminateTime = Duration.ZERO;
+        private int nonMutatingCapacity;
+        private double nonMutatingRefill;
+        private int mutatingCapacity;
+        private double mutatingRefill;
+        private double errorRate;
+        private int pageSize = 1000;
+        private long seed = 42;
+
+        private Builder() {
+        }
+
+        // Latence de chaque appel, tirée uniformément dans latence * [1 - jitter, 1 + jitter]
+        public Builder apiLatency(Duration latency, double jitter) {
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("Gigue entre 0 et 1 attendue: " + jitter);
+            }
+            this.apiLatency = latency;
+            this.apiLatencyJitter = jitter;
+            return this;
+        }
+
+        public Builder natGatewayCreateTime(Duration duration) {
+            this.natGatewayCreateTime = duration;
+            return this;
+        }
+
+        public Builder natGatewayDeleteTime(Duration duration) {
+            this.natGatewayDeleteTime = duration;
+            return this;
+        }
+
+        public Builder instanceLaunchTime(Duration duration) {
+            this.instanceLaunchTime = duration;
+            return this;
+        }
+
+        public Builder instanceTerminateTime(Duration duration) {
+            this.instanceTerminateTime = duration;
+            return this;
+        }
+
+        // Seaux à jetons des Describe* et des autres appels ; au-delà, RequestLimitExceeded
+        public Builder nonMutatingQuota(int capacity, double refillPerSecond) {
+            this.nonMutatingCapacity = capacity;
+            this.nonMutatingRefill = refillPerSecond;
+            return this;
+        }
+
+        public Builder mutatingQuota(int capacity, double refillPerSecond) {
+            this.mutatingCapacity = capacity;
+            this.mutatingRefill = refillPerSecond;
+            return this;
+        }
+
+        // Part des appels rejetés par une erreur serveur (500 InternalError), avant tout effet
+        public Builder errorRate(double errorRate) {
+            if (errorRate < 0 || errorRate >= 1) {
+                throw new IllegalArgumentException("Taux d'erreur dans [0, 1) attendu: " + errorRate);
+            }
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        // Taille maximale des pages Describe*, pour exercer les paginateurs
+        public Builder pageSize(int pageSize) {
+            if (pageSize < 1) {
+                throw new IllegalArgumentException("Taille de page >= 1 attendue: " + pageSize);
+            }
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public EmulatorConfig build() {
+            return new EmulatorConfig(this);
+        }
+    }
+}